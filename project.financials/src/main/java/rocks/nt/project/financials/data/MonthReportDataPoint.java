@@ -86,6 +86,20 @@ public class MonthReportDataPoint {
 		return dataPoint;
 	}
 
+	public static MonthReportDataPoint getActual(String yearMonth, double expenses, double costs, double revenue,
+			double utilization) {
+		MonthReportDataPoint dataPoint = new MonthReportDataPoint();
+		dataPoint.yearMonth = yearMonth;
+		dataPoint.expenses = expenses;
+		dataPoint.costs = costs;
+		dataPoint.revenue = revenue;
+		dataPoint.profit = revenue - costs;
+		dataPoint.utilization = utilization;
+		dataPoint.retrunOnSales = revenue == 0.0 ? Double.MIN_VALUE : dataPoint.profit / revenue;
+		dataPoint.type = Type.ACTUAL;
+		return dataPoint;
+	}
+
 	public static enum Type {
 		ESTIMATED, ACTUAL;
 
@@ -172,6 +172,38 @@ public class ProjectAssignment {
 		return skipEvents;
 	}
 
+	/**
+	 * Encodes the given days of week as a bit mask. Monday is the lowest bit.
+	 * 
+	 * @param daysOfWeek
+	 *            days of week
+	 * @return bit mask
+	 */
+	public static int toDaysOfWeekMask(Set<DayOfWeek> daysOfWeek) {
+		int mask = 0;
+		for (DayOfWeek dayOfWeek : daysOfWeek) {
+			mask |= 1 << (dayOfWeek.getValue() - 1);
+		}
+		return mask;
+	}
+
+	/**
+	 * Decodes a days of week bit mask.
+	 * 
+	 * @param mask
+	 *            bit mask as created by {@link #toDaysOfWeekMask(Set)}
+	 * @return days of week
+	 */
+	public static Set<DayOfWeek> fromDaysOfWeekMask(int mask) {
+		Set<DayOfWeek> daysOfWeek = new HashSet<DayOfWeek>();
+		for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+			if ((mask & (1 << (dayOfWeek.getValue() - 1))) != 0) {
+				daysOfWeek.add(dayOfWeek);
+			}
+		}
+		return daysOfWeek;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
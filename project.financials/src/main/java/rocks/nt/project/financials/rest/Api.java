@@ -1,37 +1,250 @@
 package rocks.nt.project.financials.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
+import rocks.nt.project.financials.data.MonthReportDataPoint;
+import rocks.nt.project.financials.services.CatalogCache;
+import rocks.nt.project.financials.services.ExecutorRegistry;
 import rocks.nt.project.financials.services.InfluxService;
+import rocks.nt.project.financials.services.PropertiesService;
+import rocks.nt.project.financials.services.QueryTemplate;
 
 @Path("/projects")
 public class Api {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Api.class);
 
+	private static final Gson GSON = new Gson();
+
 	// This method is called if HTML is request
 	@POST
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Path("/delete")
 	public void deleteProject(String json) {
 		LOGGER.info("REST API called for project deletion");
-		Gson gson = new Gson();
-		ProjectDeleteRequest request = gson.fromJson(json, ProjectDeleteRequest.class);
+		ProjectDeleteRequest request = GSON.fromJson(json, ProjectDeleteRequest.class);
 
 		boolean isNumericEmployeeName = request.getEmployee().chars().allMatch( Character::isDigit );
 		if(isNumericEmployeeName) {
-			InfluxService.getInstance().deleteUnassignedProject(request);	
+			awaitWrite(InfluxService.getInstance().deleteUnassignedProject(request));
 		}else {
-			InfluxService.getInstance().deleteProject(request);	
+			awaitWrite(InfluxService.getInstance().deleteProject(request));
 		}
 		
 	}
+
+	@POST
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Path("/delete/batch")
+	public void deleteProjects(String json) {
+		ProjectDeleteRequest[] requests = GSON.fromJson(json, ProjectDeleteRequest[].class);
+		LOGGER.info("REST API called for deletion of " + requests.length + " projects");
+
+		List<ProjectDeleteRequest> unassigned = new ArrayList<>();
+		List<CompletableFuture<Void>> deletions = new ArrayList<>();
+		for (ProjectDeleteRequest request : requests) {
+			if (request.getEmployee().chars().allMatch(Character::isDigit)) {
+				unassigned.add(request);
+			} else {
+				deletions.add(InfluxService.getInstance().deleteProject(request));
+			}
+		}
+		deletions.add(InfluxService.getInstance().deleteUnassignedProjects(unassigned));
+		awaitWrite(CompletableFuture.allOf(deletions.toArray(new CompletableFuture<?>[deletions.size()])));
+	}
+
+	@POST
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/assignments")
+	public Response assignProjects(InputStream body) {
+		AssignmentJob job;
+		try {
+			job = AssignmentIngestion.getInstance()
+					.submit(new InputStreamReader(body, StandardCharsets.UTF_8), GSON);
+		} catch (IOException | JsonParseException | IllegalStateException e) {
+			throw new BadRequestException(e.getMessage(), e);
+		} catch (RejectedExecutionException e) {
+			// validation queue full or executors shut down
+			throw new ServiceUnavailableException("Assignments are not accepted right now: " + e.getMessage(), null,
+					e);
+		}
+		return Response.accepted(GSON.toJson(job.toStatus())).build();
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/assignments/jobs/{id}")
+	public String getAssignmentJob(@PathParam("id") String id) {
+		AssignmentJob job = AssignmentIngestion.getInstance().getJob(id);
+		if (null == job) {
+			throw new NotFoundException("Unknown assignment job " + id);
+		}
+		return GSON.toJson(job.toStatus());
+	}
+
+	@POST
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Path("/reports")
+	public void enterMonthReports(String json) {
+		MonthReportDataPoint[] dataPoints;
+		try {
+			dataPoints = GSON.fromJson(json, MonthReportDataPoint[].class);
+		} catch (JsonParseException e) {
+			throw new BadRequestException(e.getMessage(), e);
+		}
+		if (null == dataPoints) {
+			throw new BadRequestException("Missing report data");
+		}
+		List<MonthReportDataPoint> actuals = new ArrayList<>(dataPoints.length);
+		for (MonthReportDataPoint dataPoint : dataPoints) {
+			actuals.add(MonthReportDataPoint.getActual(toYearMonth(dataPoint.getYearMonth()), dataPoint.getExpenses(),
+					dataPoint.getCosts(), dataPoint.getRevenue(), dataPoint.getUtilization()));
+		}
+		enterMonthReports(actuals);
+	}
+
+	@POST
+	@Consumes("text/csv")
+	@Path("/reports")
+	public void enterMonthReportsCsv(String csv) {
+		try {
+			enterMonthReports(MonthReportCsv.parse(csv));
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException(e.getMessage(), e);
+		}
+	}
+
+	private void enterMonthReports(List<MonthReportDataPoint> actuals) {
+		LOGGER.info("REST API called for report data of " + actuals.size() + " months");
+		awaitWrite(InfluxService.getInstance().enterMonthReportData(actuals));
+	}
+
+	/**
+	 * Waits for the asynchronous write of a REST call. Writes that are not done
+	 * within the configured timeout are answered with 503, the writer keeps
+	 * retrying them in the background.
+	 * 
+	 * @param write
+	 *            the pending write
+	 */
+	private static void awaitWrite(CompletableFuture<?> write) {
+		long timeoutSeconds = Long.parseLong(
+				PropertiesService.getInstance().getProperty(PropertiesService.REST_WRITE_TIMEOUT_SECONDS_KEY));
+		try {
+			write.get(timeoutSeconds, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new ServiceUnavailableException(
+					"Write not completed within " + timeoutSeconds + " seconds, it is still pending", null, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceUnavailableException("Interrupted while waiting for the write", null, e);
+		} catch (ExecutionException e) {
+			throw new InternalServerErrorException("Write failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private static String toYearMonth(String yearMonth) {
+		try {
+			return MonthReportCsv.normalizeYearMonth(yearMonth);
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException(e.getMessage(), e);
+		}
+	}
+
+	@POST
+	@Path("/schema/reload")
+	public void reloadSchema() {
+		LOGGER.info("REST API called for schema reload");
+		InfluxService.getInstance().reloadSchema();
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/stats/queries")
+	public String getQueryStatistics() {
+		List<Map<String, Object>> stats = InfluxService.getInstance().getQueryStatistics().stream()
+				.map(Api::toStatistics).collect(Collectors.toList());
+		return GSON.toJson(stats);
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/stats/catalogs")
+	public String getCatalogStatistics() {
+		List<Map<String, Object>> stats = InfluxService.getInstance().getCatalogStatistics().stream()
+				.map(Api::toStatistics).collect(Collectors.toList());
+		return GSON.toJson(stats);
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/stats/executors")
+	public String getExecutorStatistics() {
+		List<Map<String, Object>> stats = ExecutorRegistry.getInstance().getStatistics().stream()
+				.map(Api::toStatistics).collect(Collectors.toList());
+		return GSON.toJson(stats);
+	}
+
+	private static Map<String, Object> toStatistics(QueryTemplate template) {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("query", template.getName());
+		stats.put("executions", template.getExecutions());
+		stats.put("meanMillis", template.getMeanMillis());
+		stats.put("maxMillis", template.getMaxMillis());
+		return stats;
+	}
+
+	private static Map<String, Object> toStatistics(CatalogCache catalog) {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("catalog", catalog.getName());
+		stats.put("hits", catalog.getHits());
+		stats.put("misses", catalog.getMisses());
+		return stats;
+	}
+
+	private static Map<String, Object> toStatistics(ExecutorRegistry.MeteredExecutor executor) {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("executor", executor.getName());
+		stats.put("threads", executor.getPoolSize());
+		stats.put("active", executor.getActiveCount());
+		stats.put("queueDepth", executor.getQueueDepth());
+		stats.put("tasks", executor.getTasks());
+		stats.put("meanWaitMillis", executor.getMeanWaitMillis());
+		stats.put("maxWaitMillis", executor.getMaxWaitMillis());
+		stats.put("meanRunMillis", executor.getMeanRunMillis());
+		return stats;
+	}
 }
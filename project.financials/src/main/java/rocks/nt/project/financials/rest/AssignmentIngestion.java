@@ -0,0 +1,316 @@
+package rocks.nt.project.financials.rest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+import rocks.nt.project.financials.data.ProjectAssignment.ProjectAssignmentBuilder;
+import rocks.nt.project.financials.services.ExecutorRegistry;
+import rocks.nt.project.financials.services.InfluxSchema;
+import rocks.nt.project.financials.services.InfluxService;
+import rocks.nt.project.financials.services.PropertiesService;
+
+/**
+ * Ingests bulk project assignments. The request body is parsed as a stream of
+ * assignments, chunks of assignments are validated in parallel while parsing
+ * goes on, and the valid assignments are written chunk by chunk in the
+ * background once the whole body has been parsed. Malformed bodies are
+ * rejected before anything is written. Running jobs are kept for polling until
+ * they have finished.
+ */
+public class AssignmentIngestion {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AssignmentIngestion.class);
+
+	/**
+	 * Number of jobs kept for polling. Finished jobs are evicted beyond it,
+	 * oldest first, running jobs are never evicted.
+	 */
+	private static final int MAX_JOBS = 100;
+
+	/**
+	 * Days of week of assignments that do not specify them, the same as the
+	 * defaults of the assignment form.
+	 */
+	private static final Set<DayOfWeek> DEFAULT_DAYS_OF_WEEK = Collections.unmodifiableSet(
+			EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY));
+
+	/**
+	 * Singleton instance.
+	 */
+	private static AssignmentIngestion instance;
+
+	/**
+	 * Get singleton.
+	 *
+	 * @return singleton instance.
+	 */
+	public synchronized static AssignmentIngestion getInstance() {
+		if (null == instance) {
+			instance = new AssignmentIngestion();
+		}
+		return instance;
+	}
+
+	/**
+	 * Validates the chunks.
+	 */
+	private final ExecutorService validationExecutor;
+
+	/**
+	 * Number of assignments validated and written together.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Latest jobs by id.
+	 */
+	private final Map<String, AssignmentJob> jobs = Collections
+			.synchronizedMap(new LinkedHashMap<String, AssignmentJob>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, AssignmentJob> eldest) {
+					if (size() > MAX_JOBS) {
+						for (Iterator<AssignmentJob> oldest = values().iterator(); oldest.hasNext();) {
+							if (oldest.next().getState() != AssignmentJob.State.RUNNING) {
+								oldest.remove();
+								break;
+							}
+						}
+					}
+					// evicted above, if at all
+					return false;
+				}
+			});
+
+	/**
+	 * Constructor.
+	 */
+	private AssignmentIngestion() {
+		int threads = Runtime.getRuntime().availableProcessors();
+		validationExecutor = ExecutorRegistry.getInstance().register("assignment-validation", threads,
+				Integer.parseInt(
+						PropertiesService.getInstance().getProperty(PropertiesService.EXECUTORS_QUEUE_CAPACITY_KEY)),
+				false);
+		chunkSize = Integer.parseInt(
+				PropertiesService.getInstance().getProperty(PropertiesService.ASSIGNMENTS_CHUNK_SIZE_KEY));
+	}
+
+	/**
+	 * Parses the JSON array of assignments from the given body and starts a job
+	 * writing the valid ones.
+	 *
+	 * @param body
+	 *            request body
+	 * @param gson
+	 *            gson to bind the assignments with
+	 * @return started job
+	 * @throws IOException
+	 *             if the body is not a valid JSON array of assignments
+	 */
+	public AssignmentJob submit(Reader body, Gson gson) throws IOException {
+		AssignmentJob job = new AssignmentJob(UUID.randomUUID().toString());
+		List<CompletableFuture<List<ProjectAssignment>>> chunks = new ArrayList<>();
+		List<AssignmentRequest> chunk = new ArrayList<>(chunkSize);
+		int count = 0;
+
+		JsonReader reader = new JsonReader(body);
+		reader.beginArray();
+		while (reader.hasNext()) {
+			chunk.add(gson.fromJson(reader, AssignmentRequest.class));
+			count++;
+			if (chunk.size() == chunkSize) {
+				chunks.add(validate(job, count - chunk.size(), chunk));
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		reader.endArray();
+		if (!chunk.isEmpty()) {
+			chunks.add(validate(job, count - chunk.size(), chunk));
+		}
+
+		job.received(count);
+		jobs.put(job.getId(), job);
+		write(job, chunks);
+		LOGGER.info("Started assignment job " + job.getId() + " for " + count + " assignments");
+		return job;
+	}
+
+	/**
+	 * Returns the job with the given id.
+	 *
+	 * @param id
+	 *            job id
+	 * @return job or null if unknown or expired
+	 */
+	public AssignmentJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Validates a chunk of assignments in the background.
+	 *
+	 * @param job
+	 *            job to record rejections on
+	 * @param firstIndex
+	 *            position of the first assignment of the chunk in the request
+	 * @param chunk
+	 *            assignments to validate
+	 * @return future of the valid assignments
+	 */
+	private CompletableFuture<List<ProjectAssignment>> validate(AssignmentJob job, int firstIndex,
+			List<AssignmentRequest> chunk) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<ProjectAssignment> assignments = new ArrayList<>(chunk.size());
+			for (int i = 0; i < chunk.size(); i++) {
+				try {
+					assignments.add(toProjectAssignment(chunk.get(i)));
+				} catch (IllegalArgumentException | DateTimeParseException e) {
+					job.reject(firstIndex + i, e.getMessage());
+				}
+			}
+			return assignments;
+		}, validationExecutor);
+	}
+
+	/**
+	 * Writes the valid assignments chunk by chunk in the order of the request.
+	 * Each chunk is expanded in parallel and written in batches by
+	 * {@link InfluxService#assignProjects(ProjectAssignment...)} once the
+	 * previous chunk has been written. No thread waits for a chunk, the next one
+	 * is started on the I/O executor.
+	 *
+	 * @param job
+	 *            job to report progress on
+	 * @param chunks
+	 *            validated chunks
+	 */
+	private void write(AssignmentJob job, List<CompletableFuture<List<ProjectAssignment>>> chunks) {
+		ExecutorService io = ExecutorRegistry.getInstance().get(ExecutorRegistry.INFLUX_IO);
+		CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+		for (CompletableFuture<List<ProjectAssignment>> chunk : chunks) {
+			written = written.thenCompose(previous -> chunk).thenComposeAsync(assignments -> {
+				if (assignments.isEmpty()) {
+					return CompletableFuture.completedFuture(null);
+				}
+				return InfluxService.getInstance()
+						.assignProjects(assignments.toArray(new ProjectAssignment[assignments.size()]))
+						.thenRun(() -> job.written(assignments.size()));
+			}, io);
+		}
+		written.whenComplete((result, throwable) -> {
+			if (null == throwable) {
+				job.complete();
+			} else {
+				Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+				LOGGER.error("Assignment job " + job.getId() + " failed.", cause);
+				job.fail(cause.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Validates an assignment request and converts it the same way the
+	 * assignment form does.
+	 *
+	 * @param request
+	 *            assignment request
+	 * @return project assignment
+	 * @throws IllegalArgumentException
+	 *             if the request is invalid
+	 */
+	private ProjectAssignment toProjectAssignment(AssignmentRequest request) {
+		if (null == request) {
+			throw new IllegalArgumentException("Missing assignment");
+		}
+		final InfluxSchema schema = InfluxSchema.get();
+		String employee = require(request.getEmployee(), "employee");
+		String project = require(request.getProject(), "project");
+		LocalDate from = LocalDate.parse(require(request.getFrom(), "from"));
+		LocalDate to = LocalDate.parse(require(request.getTo(), "to"));
+		if (to.isBefore(from)) {
+			throw new IllegalArgumentException("to " + to + " is before from " + from);
+		}
+		double rate = null == request.getRate() ? 0.0 : request.getRate();
+		double expenses = null == request.getExpenses() ? 0.0 : request.getExpenses();
+		if (rate < 0.0 || expenses < 0.0) {
+			throw new IllegalArgumentException("Negative rate or expenses");
+		}
+		String notes = null == request.getNotes() ? "" : request.getNotes().trim();
+		if (expenses > 0.0) {
+			if (!notes.isEmpty()) {
+				notes += " - ";
+			}
+			notes += "Expected Daily Expenses: €" + String.valueOf(expenses);
+		}
+
+		String status = request.getStatus();
+		String color;
+		if (project.equals(schema.getProjectRemovedValue())) {
+			status = schema.getProjectRemovedValue();
+			rate = 0.0;
+			expenses = 0.0;
+			notes = "";
+			color = schema.getDefaultColor();
+		} else if (schema.getRequestValue().equals(status)) {
+			color = schema.getRequestColor();
+		} else if (schema.getSoftBookedValue().equals(status)) {
+			color = schema.getSoftBookedColor();
+		} else if (schema.getHardBookedValue().equals(status)) {
+			color = schema.getHardBookedColor();
+		} else {
+			throw new IllegalArgumentException("Invalid status " + status);
+		}
+
+		Set<DayOfWeek> daysOfWeek = DEFAULT_DAYS_OF_WEEK;
+		if (null != request.getDaysOfWeek()) {
+			daysOfWeek = EnumSet.noneOf(DayOfWeek.class);
+			for (String day : request.getDaysOfWeek()) {
+				daysOfWeek.add(DayOfWeek.valueOf(require(day, "day of week").toUpperCase(Locale.ROOT)));
+			}
+		}
+
+		ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
+		builder.employee(employee).project(project).status(status).rate(rate).from(from).to(to)
+				.daysOfWeek(daysOfWeek)
+				.skipHolidays(null == request.getSkipHolidays() || request.getSkipHolidays())
+				.skipEvents(null == request.getSkipEvents() || request.getSkipEvents()).color(color).notes(notes)
+				.expenses(expenses);
+		return builder.build();
+	}
+
+	/**
+	 * @return the trimmed value
+	 * @throws IllegalArgumentException
+	 *             if the value is missing or blank
+	 */
+	private static String require(String value, String name) {
+		if (null == value || value.trim().isEmpty()) {
+			throw new IllegalArgumentException("Missing " + name);
+		}
+		return value.trim();
+	}
+}
@@ -0,0 +1,126 @@
+package rocks.nt.project.financials.rest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status of a bulk assignment job that callers can poll.
+ */
+public class AssignmentJob {
+
+	/**
+	 * Maximum number of rejections reported with their reason.
+	 */
+	private static final int MAX_REPORTED_ERRORS = 100;
+
+	/**
+	 * State of a job.
+	 */
+	public static enum State {
+		RUNNING, COMPLETED, FAILED
+	}
+
+	private final String id;
+	private State state = State.RUNNING;
+	private int received;
+	private int rejected;
+	private int written;
+	private String message;
+	private final List<String> errors = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param id
+	 *            job id
+	 */
+	public AssignmentJob(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return job id
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Sets the number of assignments in the request.
+	 *
+	 * @param received
+	 *            number of assignments
+	 */
+	public synchronized void received(int received) {
+		this.received = received;
+	}
+
+	/**
+	 * Records an assignment that failed validation.
+	 *
+	 * @param index
+	 *            position of the assignment in the request
+	 * @param reason
+	 *            validation error
+	 */
+	public synchronized void reject(int index, String reason) {
+		rejected++;
+		if (errors.size() < MAX_REPORTED_ERRORS) {
+			errors.add(index + ": " + reason);
+		}
+	}
+
+	/**
+	 * Records written assignments.
+	 *
+	 * @param count
+	 *            number of written assignments
+	 */
+	public synchronized void written(int count) {
+		written += count;
+	}
+
+	/**
+	 * Marks the job as completed.
+	 */
+	public synchronized void complete() {
+		state = State.COMPLETED;
+	}
+
+	/**
+	 * Marks the job as failed.
+	 *
+	 * @param message
+	 *            failure message
+	 */
+	public synchronized void fail(String message) {
+		state = State.FAILED;
+		this.message = message;
+	}
+
+	/**
+	 * @return snapshot of the status for the REST response
+	 */
+	public synchronized Map<String, Object> toStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("id", id);
+		status.put("state", state);
+		status.put("received", received);
+		status.put("rejected", rejected);
+		status.put("written", written);
+		if (null != message) {
+			status.put("message", message);
+		}
+		status.put("errors", new ArrayList<>(errors));
+		return status;
+	}
+}
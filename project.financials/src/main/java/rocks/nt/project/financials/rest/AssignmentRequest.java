@@ -0,0 +1,105 @@
+package rocks.nt.project.financials.rest;
+
+import java.util.List;
+
+public class AssignmentRequest {
+	private String employee;
+	private String project;
+	private String status;
+	private Double rate;
+	private Double expenses;
+	private String from;
+	private String to;
+	private List<String> daysOfWeek;
+	private Boolean skipHolidays;
+	private Boolean skipEvents;
+	private String notes;
+
+	public String getEmployee() {
+		return employee;
+	}
+
+	public void setEmployee(String employee) {
+		this.employee = employee;
+	}
+
+	public String getProject() {
+		return project;
+	}
+
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public Double getRate() {
+		return rate;
+	}
+
+	public void setRate(Double rate) {
+		this.rate = rate;
+	}
+
+	public Double getExpenses() {
+		return expenses;
+	}
+
+	public void setExpenses(Double expenses) {
+		this.expenses = expenses;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	public String getTo() {
+		return to;
+	}
+
+	public void setTo(String to) {
+		this.to = to;
+	}
+
+	public List<String> getDaysOfWeek() {
+		return daysOfWeek;
+	}
+
+	public void setDaysOfWeek(List<String> daysOfWeek) {
+		this.daysOfWeek = daysOfWeek;
+	}
+
+	public Boolean getSkipHolidays() {
+		return skipHolidays;
+	}
+
+	public void setSkipHolidays(Boolean skipHolidays) {
+		this.skipHolidays = skipHolidays;
+	}
+
+	public Boolean getSkipEvents() {
+		return skipEvents;
+	}
+
+	public void setSkipEvents(Boolean skipEvents) {
+		this.skipEvents = skipEvents;
+	}
+
+	public String getNotes() {
+		return notes;
+	}
+
+	public void setNotes(String notes) {
+		this.notes = notes;
+	}
+}
@@ -0,0 +1,118 @@
+package rocks.nt.project.financials.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import rocks.nt.project.financials.data.MonthReportDataPoint;
+
+/**
+ * Parses actual month report data from CSV exports. The first line names the
+ * columns yearMonth, expenses, costs, revenue and utilization in any order,
+ * further columns are ignored. Values are separated by commas or, if the header
+ * contains semicolons, by semicolons with decimal commas.
+ */
+public class MonthReportCsv {
+
+	private static final String[] COLUMNS = { "yearmonth", "expenses", "costs", "revenue", "utilization" };
+
+	private MonthReportCsv() {
+	}
+
+	/**
+	 * Parses the given CSV content.
+	 *
+	 * @param csv
+	 *            CSV content including the header line
+	 * @return actual data points in the order of the lines
+	 * @throws IllegalArgumentException
+	 *             if a column is missing or a line cannot be parsed
+	 */
+	public static List<MonthReportDataPoint> parse(String csv) {
+		String[] lines = csv.split("\r?\n");
+		if (lines.length == 0 || lines[0].trim().isEmpty()) {
+			throw new IllegalArgumentException("Missing header line");
+		}
+		boolean semicolons = lines[0].contains(";");
+		Pattern separator = Pattern.compile(semicolons ? ";" : ",");
+
+		List<String> header = new ArrayList<>();
+		for (String column : separator.split(lines[0], -1)) {
+			header.add(unquote(column).toLowerCase(Locale.ROOT));
+		}
+		int[] indexes = new int[COLUMNS.length];
+		for (int i = 0; i < COLUMNS.length; i++) {
+			indexes[i] = header.indexOf(COLUMNS[i]);
+			if (indexes[i] < 0) {
+				throw new IllegalArgumentException("Missing column " + COLUMNS[i] + " in header " + header);
+			}
+		}
+
+		List<MonthReportDataPoint> dataPoints = new ArrayList<>(lines.length - 1);
+		for (int line = 1; line < lines.length; line++) {
+			if (lines[line].trim().isEmpty()) {
+				continue;
+			}
+			String[] values = separator.split(lines[line], -1);
+			try {
+				double[] numbers = new double[COLUMNS.length];
+				for (int i = 1; i < COLUMNS.length; i++) {
+					numbers[i] = parseNumber(values[indexes[i]], semicolons);
+				}
+				dataPoints.add(MonthReportDataPoint.getActual(normalizeYearMonth(unquote(values[indexes[0]])),
+						numbers[1], numbers[2], numbers[3], numbers[4]));
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException(
+						"Invalid line " + (line + 1) + ": " + Arrays.toString(values) + " (" + e.getMessage() + ")", e);
+			}
+		}
+		return dataPoints;
+	}
+
+	/**
+	 * Normalizes year-months like 2017-03 to the format YYYY-M of the
+	 * year-month tag.
+	 *
+	 * @param yearMonth
+	 *            year-month
+	 * @return normalized year-month
+	 * @throws IllegalArgumentException
+	 *             if the year-month is invalid
+	 */
+	public static String normalizeYearMonth(String yearMonth) {
+		String[] ymArray = null == yearMonth ? new String[0] : yearMonth.trim().split("-");
+		if (ymArray.length != 2) {
+			throw new IllegalArgumentException("Invalid year-month " + yearMonth);
+		}
+		int year = Integer.parseInt(ymArray[0]);
+		int month = Integer.parseInt(ymArray[1]);
+		if (month < 1 || month > 12) {
+			throw new IllegalArgumentException("Invalid year-month " + yearMonth);
+		}
+		return year + "-" + month;
+	}
+
+	/**
+	 * Parses a money or percentage value.
+	 */
+	private static double parseNumber(String value, boolean decimalComma) {
+		String number = unquote(value).replace("€", "").replace("%", "").trim();
+		if (decimalComma) {
+			number = number.replace(".", "").replace(',', '.');
+		}
+		return Double.parseDouble(number);
+	}
+
+	/**
+	 * Removes surrounding whitespace and quotes.
+	 */
+	private static String unquote(String value) {
+		String trimmed = value.trim();
+		if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+			trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+		}
+		return trimmed;
+	}
+}
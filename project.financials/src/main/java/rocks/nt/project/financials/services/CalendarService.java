@@ -0,0 +1,124 @@
+package rocks.nt.project.financials.services;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentracing.ActiveSpan;
+
+/**
+ * Keeps the weekend, public holiday and calendar entries of all known
+ * employees written up to a rolling horizon ahead of today. Assignments
+ * reaching beyond the horizon request a longer calendar for their employee.
+ * Extensions run in the background and only write the days that have not
+ * been written yet.
+ */
+public class CalendarService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CalendarService.class);
+
+	/**
+	 * Service writing the entries.
+	 */
+	private final InfluxService influxService;
+
+	/**
+	 * Number of months the calendar is kept ahead of today or of a requested
+	 * day.
+	 */
+	private final int horizonMonths;
+
+	/**
+	 * Runs the extensions.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Last requested days by employee.
+	 */
+	private final Map<String, LocalDate> requestedDays = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether an extension has been triggered but not started yet.
+	 */
+	private final AtomicBoolean extensionPending = new AtomicBoolean();
+
+	/**
+	 * Constructor. Schedules the periodic extension.
+	 *
+	 * @param influxService
+	 *            service writing the entries
+	 * @param horizonMonths
+	 *            number of months the calendar is kept ahead
+	 * @param intervalMinutes
+	 *            interval of the periodic extension in minutes
+	 */
+	public CalendarService(InfluxService influxService, int horizonMonths, long intervalMinutes) {
+		this.influxService = influxService;
+		this.horizonMonths = horizonMonths;
+		scheduler = ExecutorRegistry.getInstance().scheduler("calendar-extender");
+		scheduler.scheduleWithFixedDelay(this::extend, 0, intervalMinutes, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Requests the calendar of the given employee to be written up to the
+	 * horizon after the given day. Returns right away, the calendar is
+	 * extended in the background.
+	 *
+	 * @param employee
+	 *            employee
+	 * @param day
+	 *            last day that needs to be covered
+	 */
+	public void request(String employee, LocalDate day) {
+		if (null == employee || null == day) {
+			return;
+		}
+		requestedDays.merge(employee, day, (a, b) -> a.isAfter(b) ? a : b);
+		if (extensionPending.compareAndSet(false, true)) {
+			scheduler.execute(this::extend);
+		}
+	}
+
+	/**
+	 * Extends the calendar of all known and requested employees.
+	 */
+	private void extend() {
+		extensionPending.set(false);
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".extend");
+		try {
+			// Logic
+			LocalDate today = LocalDate.now();
+			Set<String> employees = new TreeSet<>(influxService.getKnownEmployees());
+			employees.addAll(requestedDays.keySet());
+			for (String employee : employees) {
+				LocalDate requested = requestedDays.get(employee);
+				LocalDate until = (null != requested && requested.isAfter(today) ? requested : today)
+						.plusMonths(horizonMonths);
+				try {
+					influxService.extendCalendar(employee, until);
+				} catch (RuntimeException e) {
+					// the other employees are extended nevertheless
+					LOGGER.error("Failed extending the calendar of " + employee + ".", e);
+					s_this.log("Error: " + employee + ": " + e.getMessage());
+				}
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed extending the calendar.", e);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+}
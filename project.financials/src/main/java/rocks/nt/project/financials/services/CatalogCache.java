@@ -0,0 +1,138 @@
+package rocks.nt.project.financials.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of a sorted catalog of names, such as the known employees or projects.
+ * The catalog is reloaded once its time to live has expired. Names written in
+ * the meantime are added right away, so a reload is only needed for changes
+ * made outside of this application.
+ */
+public class CatalogCache {
+
+	/**
+	 * Catalog name used for statistics.
+	 */
+	private final String name;
+
+	/**
+	 * Time to live of a loaded catalog in nano seconds.
+	 */
+	private final long ttlNanos;
+
+	/**
+	 * Loads the catalog.
+	 */
+	private final Supplier<Collection<String>> loader;
+
+	/**
+	 * Current catalog, replaced on every change.
+	 */
+	private volatile NavigableSet<String> entries;
+
+	/**
+	 * Time the current catalog has been loaded at.
+	 */
+	private volatile long loadedAt;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 *            catalog name used for statistics
+	 * @param ttlMillis
+	 *            time to live of a loaded catalog in milli seconds
+	 * @param loader
+	 *            loads the catalog
+	 */
+	public CatalogCache(String name, long ttlMillis, Supplier<Collection<String>> loader) {
+		this.name = name;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the catalog, loading it if it is missing or expired.
+	 *
+	 * @return sorted copy of the catalog
+	 */
+	public List<String> get() {
+		NavigableSet<String> current = entries;
+		if (null != current && System.nanoTime() - loadedAt < ttlNanos) {
+			hits.increment();
+			return new ArrayList<>(current);
+		}
+		synchronized (this) {
+			current = entries;
+			if (null != current && System.nanoTime() - loadedAt < ttlNanos) {
+				hits.increment();
+				return new ArrayList<>(current);
+			}
+			misses.increment();
+			current = Collections.unmodifiableNavigableSet(new TreeSet<>(loader.get()));
+			entries = current;
+			loadedAt = System.nanoTime();
+			return new ArrayList<>(current);
+		}
+	}
+
+	/**
+	 * Adds a written name to the catalog if it has been loaded.
+	 *
+	 * @param entry
+	 *            name to add
+	 */
+	public void add(String entry) {
+		NavigableSet<String> current = entries;
+		if (null == entry || null == current || current.contains(entry)) {
+			return;
+		}
+		synchronized (this) {
+			current = entries;
+			if (null != current && !current.contains(entry)) {
+				NavigableSet<String> updated = new TreeSet<>(current);
+				updated.add(entry);
+				entries = Collections.unmodifiableNavigableSet(updated);
+			}
+		}
+	}
+
+	/**
+	 * Discards the catalog so that it is reloaded on next access.
+	 */
+	public synchronized void invalidate() {
+		entries = null;
+	}
+
+	/**
+	 * @return the catalog name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of accesses answered from the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of accesses that loaded the catalog
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+}
@@ -0,0 +1,184 @@
+package rocks.nt.project.financials.services;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.dto.QueryResult.Result;
+import org.influxdb.dto.QueryResult.Series;
+
+/**
+ * Executes influx queries with chunked responses and passes the rows to a
+ * handler as the chunks arrive. At most a few chunks are buffered, so large
+ * results are processed in constant memory.
+ *
+ * influxdb-java 2.7 never passes a chunk to the consumer if influx rejects the
+ * query or the http request fails, it only throws on the http client thread.
+ * If the first chunk does not arrive within a short timeout, the query is
+ * therefore executed once more without chunking, which either reports the
+ * failure or provides the result. The client also pings the influx version
+ * before every chunked query, so chunking only pays off for large results.
+ */
+public class ChunkedQuery {
+
+	/**
+	 * Error the influx client reports after the last chunk.
+	 */
+	private static final String DONE = "DONE";
+
+	/**
+	 * Number of chunks buffered between the http client and the handler.
+	 */
+	private static final int BUFFERED_CHUNKS = 4;
+
+	/**
+	 * Handler of streamed rows.
+	 */
+	public interface RowHandler {
+
+		/**
+		 * Handles a single row.
+		 *
+		 * @param series
+		 *            series the row belongs to, providing tags and columns
+		 * @param row
+		 *            row values
+		 */
+		void handle(Series series, List<Object> row);
+	}
+
+	/**
+	 * InfluxDB connection.
+	 */
+	private final InfluxDB influx;
+
+	/**
+	 * Number of rows per chunk.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Maximum time to wait for the first chunk before the query is executed
+	 * without chunking.
+	 */
+	private final long firstChunkTimeoutMillis;
+
+	/**
+	 * Maximum time to wait for the next chunk.
+	 */
+	private final long timeoutMillis;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param influx
+	 *            influxDB connection
+	 * @param chunkSize
+	 *            number of rows per chunk
+	 * @param firstChunkTimeoutMillis
+	 *            maximum time to wait for the first chunk before the query is
+	 *            executed without chunking
+	 * @param timeoutMillis
+	 *            maximum time to wait for the next chunk
+	 */
+	public ChunkedQuery(InfluxDB influx, int chunkSize, long firstChunkTimeoutMillis, long timeoutMillis) {
+		this.influx = influx;
+		this.chunkSize = chunkSize;
+		this.firstChunkTimeoutMillis = firstChunkTimeoutMillis;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Executes the given query and passes all rows to the handler on the calling
+	 * thread.
+	 *
+	 * @param query
+	 *            query to execute
+	 * @param handler
+	 *            row handler
+	 */
+	public void execute(Query query, RowHandler handler) {
+		BlockingQueue<QueryResult> chunks = new ArrayBlockingQueue<>(BUFFERED_CHUNKS);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		influx.query(query, chunkSize, chunk -> {
+			try {
+				while (!cancelled.get() && !chunks.offer(chunk, timeoutMillis, TimeUnit.MILLISECONDS)) {
+					// handler is still busy
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		try {
+			QueryResult chunk = chunks.poll(firstChunkTimeoutMillis, TimeUnit.MILLISECONDS);
+			if (null == chunk) {
+				// the query may have been rejected without notice
+				cancelled.set(true);
+				executeUnchunked(query, handler);
+				return;
+			}
+			while (true) {
+				if (null == chunk) {
+					throw new IllegalStateException("Timed out waiting for query result: " + query.getCommand());
+				}
+				if (null != chunk.getError()) {
+					if (DONE.equals(chunk.getError())) {
+						return;
+					}
+					throw new IllegalStateException("Query failed: " + chunk.getError());
+				}
+				handleChunk(chunk, handler);
+				chunk = chunks.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for query result: " + query.getCommand(), e);
+		} finally {
+			cancelled.set(true);
+			chunks.clear();
+		}
+	}
+
+	/**
+	 * Executes the given query without chunking and passes all rows to the
+	 * handler. Failures are thrown on the calling thread.
+	 */
+	private void executeUnchunked(Query query, RowHandler handler) {
+		QueryResult result = influx.query(query);
+		if (null != result.getError()) {
+			throw new IllegalStateException("Query failed: " + result.getError());
+		}
+		handleChunk(result, handler);
+	}
+
+	/**
+	 * Passes all rows of the given chunk to the handler.
+	 */
+	private static void handleChunk(QueryResult chunk, RowHandler handler) {
+		if (null == chunk.getResults()) {
+			return;
+		}
+		for (Result result : chunk.getResults()) {
+			if (null != result.getError()) {
+				throw new IllegalStateException("Query failed: " + result.getError());
+			}
+			if (null == result.getSeries()) {
+				continue;
+			}
+			for (Series series : result.getSeries()) {
+				if (null == series.getValues()) {
+					continue;
+				}
+				for (List<Object> row : series.getValues()) {
+					handler.handle(series, row);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package rocks.nt.project.financials.services;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running statistics of the actual monthly costs. Keeps the actual costs of
+ * every reported month together with their running sum, so the mean over all
+ * months is available in constant time and the mean over a trailing window
+ * only touches the months of the window.
+ */
+public class CostStatistics {
+
+	/**
+	 * Actual costs by month index (year * 12 + month - 1).
+	 */
+	private final TreeMap<Integer, Double> costs = new TreeMap<>();
+
+	/**
+	 * Sum of all actual costs.
+	 */
+	private double sum;
+
+	/**
+	 * Records the actual costs of a month, replacing earlier costs of the same
+	 * month.
+	 *
+	 * @param yearMonth
+	 *            year-month in the format YYYY-M
+	 * @param actualCosts
+	 *            actual costs
+	 */
+	public synchronized void put(String yearMonth, double actualCosts) {
+		Double previous = costs.put(monthIndex(yearMonth), actualCosts);
+		sum += actualCosts - (null != previous ? previous : 0.0);
+	}
+
+	/**
+	 * Returns the mean of the actual costs of the latest months with reported
+	 * costs before the given month. Without a window the mean of all reported
+	 * months is returned, like the mean of the actual costs in influx.
+	 *
+	 * @param yearMonth
+	 *            estimated year-month in the format YYYY-M
+	 * @param windowMonths
+	 *            number of latest months before the given one to include, all
+	 *            reported months if not positive
+	 * @return mean costs, zero if no costs have been reported (before the
+	 *         month)
+	 */
+	public synchronized double getMean(String yearMonth, int windowMonths) {
+		if (costs.isEmpty()) {
+			return 0.0;
+		}
+		if (windowMonths <= 0) {
+			return sum / costs.size();
+		}
+		int idx = monthIndex(yearMonth);
+		if (costs.firstKey() >= idx) {
+			return 0.0;
+		}
+		if (costs.lastKey() < idx && windowMonths >= costs.size()) {
+			return sum / costs.size();
+		}
+		double windowSum = 0.0;
+		int count = 0;
+		for (Map.Entry<Integer, Double> month : costs.headMap(idx, false).descendingMap().entrySet()) {
+			if (count == windowMonths) {
+				break;
+			}
+			windowSum += month.getValue();
+			count++;
+		}
+		return windowSum / count;
+	}
+
+	/**
+	 * @return number of months with reported costs
+	 */
+	public synchronized int getMonths() {
+		return costs.size();
+	}
+
+	/**
+	 * @return index of the given year-month
+	 */
+	private static int monthIndex(String yearMonth) {
+		String[] ymArray = yearMonth.split("-");
+		return Integer.parseInt(ymArray[0]) * 12 + Integer.parseInt(ymArray[1]) - 1;
+	}
+}
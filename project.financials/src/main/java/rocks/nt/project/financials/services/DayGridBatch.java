@@ -0,0 +1,150 @@
+package rocks.nt.project.financials.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.influxdb.dto.Point;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Batch that records the project and unassigned project points added to a
+ * wrapped batch and applies them to the day grid and lane indexes as soon as
+ * the batch is handed to the writer, so reads see the points before they are
+ * flushed. Batches must be handed to the writer in the order of the writes. If
+ * the write fails, the updates are undone, except for days updated again in
+ * the meantime. The updates and undos are handed to an executor, which may
+ * defer them while the indexes are being loaded.
+ */
+public class DayGridBatch implements InfluxBatch {
+
+	/**
+	 * Wrapped batch.
+	 */
+	private final InfluxBatch delegate;
+
+	/**
+	 * Index of project points by employee.
+	 */
+	private final DayGridIndex projectGrid;
+
+	/**
+	 * Occupied days of the unassigned project lanes.
+	 */
+	private final LaneIndex laneIndex;
+
+	/**
+	 * Projects that are non-project events.
+	 */
+	private final Set<String> nonProjectEvents;
+
+	/**
+	 * Applies the index updates.
+	 */
+	private final Executor updateExecutor;
+
+	/**
+	 * Index updates to apply when written, each returning its undo or null.
+	 */
+	private final List<Supplier<Runnable>> updates = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *            batch to wrap
+	 * @param projectGrid
+	 *            index of project points by employee
+	 * @param laneIndex
+	 *            occupied days of the unassigned project lanes
+	 * @param nonProjectEvents
+	 *            projects that are non-project events
+	 * @param updateExecutor
+	 *            applies the index updates
+	 */
+	public DayGridBatch(InfluxBatch delegate, DayGridIndex projectGrid, LaneIndex laneIndex,
+			Set<String> nonProjectEvents, Executor updateExecutor) {
+		this.delegate = delegate;
+		this.projectGrid = projectGrid;
+		this.laneIndex = laneIndex;
+		this.nonProjectEvents = nonProjectEvents;
+		this.updateExecutor = updateExecutor;
+	}
+
+	@Override
+	public void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime,
+			Boolean workingDay) {
+		delegate.addProjectPoint(projectAssignment, yearMonth, nanoTime, workingDay);
+		String employee = projectAssignment.getEmployee();
+		String project = projectAssignment.getProject();
+		String status = projectAssignment.getStatus();
+		boolean event = null != project && nonProjectEvents.contains(project);
+		updates.add(() -> projectGrid.update(employee, nanoTime, project, status, event));
+	}
+
+	@Override
+	public void addUnassignedProjectPoint(int index, String yearMonth, String project, String color, String notes,
+			long nanoTime) {
+		delegate.addUnassignedProjectPoint(index, yearMonth, project, color, notes, nanoTime);
+		long epochDay = TimeCodec.localEpochDayFromMillis(nanoTime / 1000000L);
+		// a day occupied before, e.g. by a claimed lane, stays occupied if the write fails
+		updates.add(() -> laneIndex.occupy(index, epochDay, epochDay) ? () -> laneIndex.release(index, epochDay,
+				epochDay) : null);
+	}
+
+	@Override
+	public void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime) {
+		delegate.addAssignmentRangePoint(projectAssignment, nanoTime);
+	}
+
+	@Override
+	public void addCalendarPoint(String type, String value, long nanoTime) {
+		delegate.addCalendarPoint(type, value, nanoTime);
+	}
+
+	@Override
+	public void addPoint(Point point) {
+		delegate.addPoint(point);
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public CompletableFuture<Void> writeTo(InfluxWriter writer) {
+		List<Supplier<Runnable>> written = new ArrayList<>(updates);
+		updates.clear();
+		List<Runnable> undos = new ArrayList<>();
+		updateExecutor.execute(() -> {
+			for (Supplier<Runnable> update : written) {
+				Runnable undo = update.get();
+				if (null != undo) {
+					undos.add(undo);
+				}
+			}
+		});
+		Runnable rollback = () -> updateExecutor.execute(() -> {
+			for (int i = undos.size() - 1; i >= 0; i--) {
+				undos.get(i).run();
+			}
+		});
+		CompletableFuture<Void> future;
+		try {
+			future = delegate.writeTo(writer);
+		} catch (RuntimeException e) {
+			rollback.run();
+			throw e;
+		}
+		return future.whenComplete((result, throwable) -> {
+			if (null != throwable) {
+				rollback.run();
+			}
+		});
+	}
+}
@@ -0,0 +1,391 @@
+package rocks.nt.project.financials.services;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory read model of daily project points. Every key, e.g. an employee or
+ * an unassigned project lane, is mapped to a compact grid with one slot per
+ * epoch day holding a project id, a status id and event flags. Project and
+ * status names are stored once in a dictionary.
+ *
+ * A day has two points in influx, the project point and the weekend/holiday
+ * point written a few hours earlier. The grid keeps the project of the project
+ * point and a flag per point telling whether it is a non-project event.
+ */
+public class DayGridIndex {
+
+	/**
+	 * Project id of an empty slot.
+	 */
+	private static final int NO_PROJECT = 0;
+
+	/**
+	 * The project point of the day is a non-project event.
+	 */
+	private static final byte FLAG_PROJECT_EVENT = 1;
+
+	/**
+	 * The weekend/holiday point of the day is a non-project event.
+	 */
+	private static final byte FLAG_DAY_EVENT = 2;
+
+	/**
+	 * Number of days a new grid covers.
+	 */
+	private static final int INITIAL_DAYS = 512;
+
+	/**
+	 * Maximum number of distinct status values.
+	 */
+	private static final int MAX_STATUS_IDS = 256;
+
+	/**
+	 * Hour of day of project points.
+	 */
+	private final int projectHour;
+
+	/**
+	 * Grids by key.
+	 */
+	private final Map<String, Grid> grids = new ConcurrentHashMap<>();
+
+	/**
+	 * Project ids by name.
+	 */
+	private final Map<String, Integer> projectIds = new ConcurrentHashMap<>();
+
+	/**
+	 * Project names by id.
+	 */
+	private volatile String[] projectNames = new String[] { null };
+
+	/**
+	 * Status ids by name.
+	 */
+	private final Map<String, Byte> statusIds = new ConcurrentHashMap<>();
+
+	/**
+	 * Status names by id.
+	 */
+	private volatile String[] statusNames = new String[] { null };
+
+	/**
+	 * Constructor.
+	 *
+	 * @param projectHour
+	 *            hour of day of project points, points at any other hour are
+	 *            treated as weekend/holiday points
+	 */
+	public DayGridIndex(int projectHour) {
+		this.projectHour = projectHour;
+	}
+
+	/**
+	 * Applies a point handed to the writer.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param nanoTime
+	 *            timestamp of the point in nano seconds
+	 * @param project
+	 *            project field or null if the point does not set it
+	 * @param status
+	 *            status field or null if the point does not set it
+	 * @param event
+	 *            indicates whether the project is a non-project event
+	 * @return undo restoring the previous state of the day unless it has been
+	 *         updated since, null if the point did not change the day
+	 */
+	public Runnable update(String key, long nanoTime, String project, String status, boolean event) {
+		long epochDay = TimeCodec.localEpochDayFromMillis(nanoTime / 1000000L);
+		boolean projectPoint = nanoTime == TimeCodec.toEpochNanos(epochDay, projectHour);
+		if (null == project && (null == status || !projectPoint)) {
+			// influx keeps the values of fields that are not written
+			return null;
+		}
+		int projectId = null == project ? NO_PROJECT : projectId(project);
+		byte statusId = null == status ? 0 : statusId(status);
+
+		Grid grid = grids.computeIfAbsent(key, k -> new Grid());
+		long previous;
+		long updated;
+		synchronized (grid) {
+			int slot = grid.slot(epochDay);
+			previous = grid.state(slot);
+			if (!projectPoint) {
+				grid.flags[slot] = (byte) (event ? grid.flags[slot] | FLAG_DAY_EVENT
+						: grid.flags[slot] & ~FLAG_DAY_EVENT);
+			} else {
+				if (null != project) {
+					grid.projects[slot] = projectId;
+					grid.flags[slot] = (byte) (event ? grid.flags[slot] | FLAG_PROJECT_EVENT
+							: grid.flags[slot] & ~FLAG_PROJECT_EVENT);
+				}
+				if (null != status) {
+					grid.statuses[slot] = statusId;
+				}
+			}
+			updated = grid.state(slot);
+		}
+		if (previous == updated) {
+			return null;
+		}
+		return () -> {
+			synchronized (grid) {
+				// grids only grow, so the day is still covered
+				int slot = grid.slot(epochDay);
+				if (grid.state(slot) == updated) {
+					grid.setState(slot, previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Removes all points of the given key in the given period.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 */
+	public void clear(String key, LocalDate from, LocalDate to) {
+		Grid grid = grids.get(key);
+		if (null == grid) {
+			return;
+		}
+		synchronized (grid) {
+			int first = grid.clampedSlot(from.toEpochDay());
+			int last = grid.clampedSlot(to.toEpochDay() + 1);
+			Arrays.fill(grid.projects, first, last, NO_PROJECT);
+			Arrays.fill(grid.statuses, first, last, (byte) 0);
+			Arrays.fill(grid.flags, first, last, (byte) 0);
+		}
+	}
+
+	/**
+	 * Retrieves the days with non-project events.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return dates of non-project events
+	 */
+	public Set<LocalDate> getEventDays(String key, LocalDate from, LocalDate to) {
+		Set<LocalDate> days = new HashSet<>();
+		Grid grid = grids.get(key);
+		if (null == grid) {
+			return days;
+		}
+		synchronized (grid) {
+			int last = grid.clampedSlot(to.toEpochDay() + 1);
+			for (int slot = grid.clampedSlot(from.toEpochDay()); slot < last; slot++) {
+				if (grid.flags[slot] != 0) {
+					days.add(LocalDate.ofEpochDay(grid.firstDay + slot));
+				}
+			}
+		}
+		return days;
+	}
+
+	/**
+	 * Retrieves the distinct projects of the project points in the given period.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return project names
+	 */
+	public Set<String> getProjects(String key, LocalDate from, LocalDate to) {
+		Set<String> projects = new HashSet<>();
+		Grid grid = grids.get(key);
+		if (null == grid) {
+			return projects;
+		}
+		synchronized (grid) {
+			String[] names = projectNames;
+			int last = grid.clampedSlot(to.toEpochDay() + 1);
+			int previous = NO_PROJECT;
+			for (int slot = grid.clampedSlot(from.toEpochDay()); slot < last; slot++) {
+				int projectId = grid.projects[slot];
+				if (projectId != NO_PROJECT && projectId != previous) {
+					projects.add(names[projectId]);
+					previous = projectId;
+				}
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * Retrieves the status of the project point of the given day.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param date
+	 *            date
+	 * @return status or null if not known
+	 */
+	public String getStatus(String key, LocalDate date) {
+		Grid grid = grids.get(key);
+		if (null == grid) {
+			return null;
+		}
+		synchronized (grid) {
+			int slot = grid.clampedSlot(date.toEpochDay());
+			if (slot == grid.clampedSlot(date.toEpochDay() + 1)) {
+				return null;
+			}
+			return statusNames[grid.statuses[slot] & 0xff];
+		}
+	}
+
+	/**
+	 * Checks whether any project point exists in the given period.
+	 *
+	 * @param key
+	 *            employee or lane
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return true if at least one day holds a project
+	 */
+	public boolean isOccupied(String key, LocalDate from, LocalDate to) {
+		Grid grid = grids.get(key);
+		if (null == grid) {
+			return false;
+		}
+		synchronized (grid) {
+			int last = grid.clampedSlot(to.toEpochDay() + 1);
+			for (int slot = grid.clampedSlot(from.toEpochDay()); slot < last; slot++) {
+				if (grid.projects[slot] != NO_PROJECT) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the dictionary id of the given project
+	 */
+	private int projectId(String project) {
+		Integer id = projectIds.get(project);
+		if (null != id) {
+			return id;
+		}
+		synchronized (projectIds) {
+			id = projectIds.get(project);
+			if (null == id) {
+				String[] names = Arrays.copyOf(projectNames, projectNames.length + 1);
+				id = names.length - 1;
+				names[id] = project;
+				projectNames = names;
+				projectIds.put(project, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @return the dictionary id of the given status, 0 if the dictionary is full
+	 */
+	private byte statusId(String status) {
+		Byte id = statusIds.get(status);
+		if (null != id) {
+			return id;
+		}
+		synchronized (statusIds) {
+			id = statusIds.get(status);
+			if (null == id) {
+				if (statusNames.length >= MAX_STATUS_IDS) {
+					return 0;
+				}
+				String[] names = Arrays.copyOf(statusNames, statusNames.length + 1);
+				id = (byte) (names.length - 1);
+				names[names.length - 1] = status;
+				statusNames = names;
+				statusIds.put(status, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Day slots of a single key covering a contiguous period that grows on
+	 * demand.
+	 */
+	private static final class Grid {
+		private long firstDay;
+		private int[] projects = new int[0];
+		private byte[] statuses = new byte[0];
+		private byte[] flags = new byte[0];
+
+		/**
+		 * Returns the slot of the given day, growing the grid if necessary.
+		 */
+		private int slot(long epochDay) {
+			if (projects.length == 0) {
+				firstDay = epochDay - INITIAL_DAYS / 2;
+				resize(firstDay, INITIAL_DAYS);
+			} else if (epochDay < firstDay) {
+				long newFirstDay = Math.min(epochDay, firstDay - projects.length);
+				resize(newFirstDay, (int) (firstDay - newFirstDay) + projects.length);
+			} else if (epochDay >= firstDay + projects.length) {
+				resize(firstDay, (int) Math.max(epochDay - firstDay + 1, 2L * projects.length));
+			}
+			return (int) (epochDay - firstDay);
+		}
+
+		/**
+		 * @return project, status and flags of the given slot packed into one value
+		 */
+		private long state(int slot) {
+			return ((long) projects[slot] << 16) | ((statuses[slot] & 0xffL) << 8) | (flags[slot] & 0xffL);
+		}
+
+		/**
+		 * Sets project, status and flags of the given slot from a packed value.
+		 */
+		private void setState(int slot, long state) {
+			projects[slot] = (int) (state >>> 16);
+			statuses[slot] = (byte) (state >>> 8);
+			flags[slot] = (byte) state;
+		}
+
+		/**
+		 * Returns the slot of the given day limited to the covered period.
+		 */
+		private int clampedSlot(long epochDay) {
+			return (int) Math.max(0L, Math.min(projects.length, epochDay - firstDay));
+		}
+
+		private void resize(long newFirstDay, int length) {
+			int offset = (int) (firstDay - newFirstDay);
+			int[] newProjects = new int[length];
+			byte[] newStatuses = new byte[length];
+			byte[] newFlags = new byte[length];
+			System.arraycopy(projects, 0, newProjects, offset, projects.length);
+			System.arraycopy(statuses, 0, newStatuses, offset, statuses.length);
+			System.arraycopy(flags, 0, newFlags, offset, flags.length);
+			projects = newProjects;
+			statuses = newStatuses;
+			flags = newFlags;
+			firstDay = newFirstDay;
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package rocks.nt.project.financials.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the named executors running the background work of the
+ * application. Executors are bounded in threads and queued tasks; callers run
+ * tasks themselves if the queue is full. Tasks submitted after shutdown are
+ * rejected. Executors for blocking I/O use
+ * virtual threads if enabled and supported by the JVM. All executors record
+ * the time their tasks wait in the queue and run, and are shut down together.
+ */
+public class ExecutorRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorRegistry.class);
+
+	/**
+	 * Queries and writes against influxDB.
+	 */
+	public static final String INFLUX_IO = "influx-io";
+
+	/**
+	 * Holiday prefetches and remote holiday fetches.
+	 */
+	public static final String HOLIDAYS = "holidays";
+
+	/**
+	 * Writes of local files. Runs a single thread so that files are written in
+	 * order.
+	 */
+	public static final String PERSISTENCE = "persistence";
+
+	/**
+	 * Threads of the holiday executor.
+	 */
+	private static final int HOLIDAY_THREADS = 2;
+
+	/**
+	 * Time idle threads are kept.
+	 */
+	private static final long KEEP_ALIVE_SECONDS = 60L;
+
+	/**
+	 * Time to wait for running tasks on shut down.
+	 */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+
+	/**
+	 * Singleton instance.
+	 */
+	private static ExecutorRegistry instance;
+
+	/**
+	 * Get singleton.
+	 *
+	 * @return singleton instance.
+	 */
+	public synchronized static ExecutorRegistry getInstance() {
+		if (null == instance) {
+			instance = new ExecutorRegistry();
+		}
+		return instance;
+	}
+
+	/**
+	 * Indicates whether executors for blocking I/O use virtual threads.
+	 */
+	private final boolean virtualThreads;
+
+	/**
+	 * Queue capacity of the default executors.
+	 */
+	private final int queueCapacity;
+
+	/**
+	 * Executors by name.
+	 */
+	private final Map<String, MeteredExecutor> executors = new LinkedHashMap<>();
+
+	/**
+	 * Schedulers by name.
+	 */
+	private final Map<String, ScheduledExecutorService> schedulers = new LinkedHashMap<>();
+
+	/**
+	 * Constructor. Creates the default executors.
+	 */
+	private ExecutorRegistry() {
+		virtualThreads = Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.EXECUTORS_VIRTUAL_THREADS_KEY))
+				&& null != virtualThreadFactory(INFLUX_IO);
+		queueCapacity = Integer.parseInt(
+				PropertiesService.getInstance().getProperty(PropertiesService.EXECUTORS_QUEUE_CAPACITY_KEY));
+		register(INFLUX_IO, Integer.parseInt(
+				PropertiesService.getInstance().getProperty(PropertiesService.EXECUTORS_IO_THREADS_KEY)),
+				queueCapacity, true);
+		register(HOLIDAYS, HOLIDAY_THREADS, queueCapacity, true);
+		register(PERSISTENCE, 1, queueCapacity, true);
+		LOGGER.info("Executors for blocking I/O use " + (virtualThreads ? "virtual" : "platform") + " threads.");
+	}
+
+	/**
+	 * Returns the executor with the given name.
+	 *
+	 * @param name
+	 *            executor name
+	 * @return executor
+	 */
+	public synchronized ExecutorService get(String name) {
+		ExecutorService executor = executors.get(name);
+		if (null == executor) {
+			throw new IllegalArgumentException("Unknown executor: " + name);
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates an executor with the given name unless it already exists.
+	 *
+	 * @param name
+	 *            executor name, also used for the thread names
+	 * @param threads
+	 *            maximum number of threads
+	 * @param queueCapacity
+	 *            maximum number of queued tasks
+	 * @param blocking
+	 *            true if the tasks block on I/O, they run on virtual threads
+	 *            then if enabled
+	 * @return executor
+	 */
+	public synchronized ExecutorService register(String name, int threads, int queueCapacity, boolean blocking) {
+		MeteredExecutor executor = executors.get(name);
+		if (null == executor) {
+			ThreadFactory threadFactory = blocking && virtualThreads ? virtualThreadFactory(name)
+					: platformThreadFactory(name);
+			executor = new MeteredExecutor(name, threads, queueCapacity, threadFactory);
+			executors.put(name, executor);
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates a single threaded scheduler with the given name unless it already
+	 * exists.
+	 *
+	 * @param name
+	 *            scheduler name, also used for the thread name
+	 * @return scheduler
+	 */
+	public synchronized ScheduledExecutorService scheduler(String name) {
+		ScheduledExecutorService scheduler = schedulers.get(name);
+		if (null == scheduler) {
+			scheduler = new ScheduledThreadPoolExecutor(1, platformThreadFactory(name));
+			schedulers.put(name, scheduler);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * @return all executors with their statistics
+	 */
+	public synchronized List<MeteredExecutor> getStatistics() {
+		return new ArrayList<>(executors.values());
+	}
+
+	/**
+	 * Stops the schedulers and executors and waits for running tasks to
+	 * complete.
+	 */
+	public void shutdown() {
+		List<ExecutorService> all = new ArrayList<>();
+		synchronized (this) {
+			all.addAll(schedulers.values());
+			all.addAll(executors.values());
+		}
+		for (ExecutorService executor : all) {
+			executor.shutdown();
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+		try {
+			for (ExecutorService executor : all) {
+				if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					executor.shutdownNow();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (ExecutorService executor : all) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Creates a factory of daemon platform threads.
+	 */
+	private static ThreadFactory platformThreadFactory(String name) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Creates a factory of virtual threads by reflection, so that the
+	 * application still runs on JVMs without virtual threads.
+	 *
+	 * @return factory or null if virtual threads are not supported
+	 */
+	private static ThreadFactory virtualThreadFactory(String name) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Bounded executor recording the time its tasks wait in the queue and run.
+	 * Tasks that do not fit into the queue are run by the caller. Tasks
+	 * submitted after shutdown are rejected with a
+	 * {@link RejectedExecutionException}.
+	 */
+	public static final class MeteredExecutor extends ThreadPoolExecutor {
+
+		/**
+		 * Runs rejected tasks in the caller unless the executor has been shut
+		 * down. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy} this does not
+		 * discard tasks silently after shutdown.
+		 */
+		private static final RejectedExecutionHandler CALLER_RUNS_UNTIL_SHUTDOWN = (task, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException(
+						"Executor " + ((MeteredExecutor) executor).getName() + " has been shut down.");
+			}
+			task.run();
+		};
+
+		/**
+		 * Executor name.
+		 */
+		private final String name;
+
+		private final LongAdder tasks = new LongAdder();
+		private final LongAdder totalWaitNanos = new LongAdder();
+		private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0L);
+		private final LongAdder totalRunNanos = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name
+		 *            executor name
+		 * @param threads
+		 *            maximum number of threads
+		 * @param queueCapacity
+		 *            maximum number of queued tasks
+		 * @param threadFactory
+		 *            factory of the threads
+		 */
+		MeteredExecutor(String name, int threads, int queueCapacity, ThreadFactory threadFactory) {
+			super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+					threadFactory, CALLER_RUNS_UNTIL_SHUTDOWN);
+			this.name = name;
+			allowCoreThreadTimeOut(true);
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			final long enqueued = System.nanoTime();
+			super.execute(() -> {
+				long start = System.nanoTime();
+				try {
+					command.run();
+				} finally {
+					long end = System.nanoTime();
+					tasks.increment();
+					totalWaitNanos.add(start - enqueued);
+					maxWaitNanos.accumulate(start - enqueued);
+					totalRunNanos.add(end - start);
+				}
+			});
+		}
+
+		/**
+		 * @return the executor name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return number of queued tasks
+		 */
+		public int getQueueDepth() {
+			return getQueue().size();
+		}
+
+		/**
+		 * @return number of completed tasks
+		 */
+		public long getTasks() {
+			return tasks.sum();
+		}
+
+		/**
+		 * @return mean time tasks waited in the queue in milli seconds
+		 */
+		public double getMeanWaitMillis() {
+			long count = tasks.sum();
+			return count == 0 ? 0.0 : totalWaitNanos.sum() / (count * 1000000.0);
+		}
+
+		/**
+		 * @return maximum time a task waited in the queue in milli seconds
+		 */
+		public double getMaxWaitMillis() {
+			return maxWaitNanos.get() / 1000000.0;
+		}
+
+		/**
+		 * @return mean run time of the tasks in milli seconds
+		 */
+		public double getMeanRunMillis() {
+			long count = tasks.sum();
+			return count == 0 ? 0.0 : totalRunNanos.sum() / (count * 1000000.0);
+		}
+	}
+}
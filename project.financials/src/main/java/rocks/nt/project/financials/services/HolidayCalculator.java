@@ -0,0 +1,154 @@
+package rocks.nt.project.financials.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import rocks.nt.project.financials.data.Holiday;
+
+/**
+ * Calculates the statutory public holidays of a German state from fixed dates
+ * and the date of Easter Sunday. The names follow the remote holiday API.
+ */
+public class HolidayCalculator {
+
+	/**
+	 * Baden-Württemberg.
+	 */
+	public static final String BADEN_WUERTTEMBERG = "BW";
+
+	/**
+	 * Known state codes.
+	 */
+	private static final Set<String> STATES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("BW", "BY",
+			"BE", "BB", "HB", "HH", "HE", "MV", "NI", "NW", "RP", "SL", "SN", "ST", "SH", "TH")));
+
+	/**
+	 * State code.
+	 */
+	private final String state;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param state
+	 *            state code, e.g. BW for Baden-Württemberg
+	 */
+	public HolidayCalculator(String state) {
+		if (!STATES.contains(state)) {
+			throw new IllegalArgumentException("Unknown state: " + state);
+		}
+		this.state = state;
+	}
+
+	/**
+	 * @return the state code
+	 */
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * Calculates the public holidays of the given year.
+	 *
+	 * @param year
+	 *            year
+	 * @return map of holidays to holiday objects
+	 */
+	public Map<LocalDate, Holiday> calculate(int year) {
+		Map<LocalDate, Holiday> holidays = new HashMap<>();
+		LocalDate easter = easterSunday(year);
+
+		add(holidays, "Neujahrstag", LocalDate.of(year, 1, 1));
+		if (in("BW", "BY", "ST")) {
+			add(holidays, "Heilige Drei Könige", LocalDate.of(year, 1, 6));
+		}
+		if ((in("BE") && year >= 2019) || (in("MV") && year >= 2023)) {
+			add(holidays, "Internationaler Frauentag", LocalDate.of(year, 3, 8));
+		}
+		add(holidays, "Karfreitag", easter.minusDays(2));
+		if (in("BB")) {
+			add(holidays, "Ostersonntag", easter);
+		}
+		add(holidays, "Ostermontag", easter.plusDays(1));
+		add(holidays, "Tag der Arbeit", LocalDate.of(year, 5, 1));
+		if (in("BE") && (year == 2020 || year == 2025)) {
+			add(holidays, "Tag der Befreiung", LocalDate.of(year, 5, 8));
+		}
+		add(holidays, "Christi Himmelfahrt", easter.plusDays(39));
+		if (in("BB")) {
+			add(holidays, "Pfingstsonntag", easter.plusDays(49));
+		}
+		add(holidays, "Pfingstmontag", easter.plusDays(50));
+		if (in("BW", "BY", "HE", "NW", "RP", "SL")) {
+			add(holidays, "Fronleichnam", easter.plusDays(60));
+		}
+		if (in("SL")) {
+			add(holidays, "Mariä Himmelfahrt", LocalDate.of(year, 8, 15));
+		}
+		if (in("TH") && year >= 2019) {
+			add(holidays, "Weltkindertag", LocalDate.of(year, 9, 20));
+		}
+		add(holidays, "Tag der Deutschen Einheit", LocalDate.of(year, 10, 3));
+		if (year == 2017 || in("BB", "MV", "SN", "ST", "TH") || (in("HB", "HH", "NI", "SH") && year >= 2018)) {
+			add(holidays, "Reformationstag", LocalDate.of(year, 10, 31));
+		}
+		if (in("BW", "BY", "NW", "RP", "SL")) {
+			add(holidays, "Allerheiligen", LocalDate.of(year, 11, 1));
+		}
+		if (in("SN")) {
+			add(holidays, "Buß- und Bettag",
+					LocalDate.of(year, 11, 23).with(TemporalAdjusters.previous(DayOfWeek.WEDNESDAY)));
+		}
+		add(holidays, "1. Weihnachtstag", LocalDate.of(year, 12, 25));
+		add(holidays, "2. Weihnachtstag", LocalDate.of(year, 12, 26));
+		return holidays;
+	}
+
+	/**
+	 * Calculates Easter Sunday of the given year in the gregorian calendar.
+	 *
+	 * @param year
+	 *            year
+	 * @return date of Easter Sunday
+	 */
+	public static LocalDate easterSunday(int year) {
+		int a = year % 19;
+		int b = year / 100;
+		int c = year % 100;
+		int d = b / 4;
+		int e = b % 4;
+		int f = (b + 8) / 25;
+		int g = (b - f + 1) / 3;
+		int h = (19 * a + b - d - g + 15) % 30;
+		int i = c / 4;
+		int k = c % 4;
+		int l = (32 + 2 * e + 2 * i - h - k) % 7;
+		int m = (a + 11 * h + 22 * l) / 451;
+		int month = (h + l - 7 * m + 114) / 31;
+		int day = (h + l - 7 * m + 114) % 31 + 1;
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * @return true if the state is one of the given ones
+	 */
+	private boolean in(String... states) {
+		for (String candidate : states) {
+			if (candidate.equals(state)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void add(Map<LocalDate, Holiday> holidays, String name, LocalDate date) {
+		holidays.put(date, new Holiday(name, date));
+	}
+}
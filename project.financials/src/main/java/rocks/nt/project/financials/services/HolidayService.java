@@ -1,12 +1,22 @@
 package rocks.nt.project.financials.services;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.gson.Gson;
 
 import io.opentracing.ActiveSpan;
@@ -17,12 +27,34 @@ import okhttp3.Response;
 import rocks.nt.project.financials.data.Holiday;
 
 /**
- * Service to retrieve public holidays.
+ * Service to retrieve public holidays. Holidays are calculated locally. If
+ * enabled, the remote holiday API is queried in the background and differences
+ * to the calculated holidays are logged. Fetched years are stored in
+ * APM_PROJECTS_HOME, so they are not fetched again after a restart. Only if
+ * the remote override is enabled as well, the fetched holidays replace the
+ * calculated ones.
  * 
  * @author Alexander Wert
  *
  */
 public class HolidayService {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HolidayService.class);
+
+	/**
+	 * Years before the current one that are calculated on start.
+	 */
+	private static final int PRECOMPUTED_YEARS_BEFORE = 2;
+
+	/**
+	 * Years after the current one that are calculated on start.
+	 */
+	private static final int PRECOMPUTED_YEARS_AFTER = 5;
+
+	/**
+	 * File name of the holiday store below APM_PROJECTS_HOME.
+	 */
+	private static final String STORE_FILE = "holidays.cache";
+
 	/**
 	 * Service URL.
 	 */
@@ -33,11 +65,6 @@ public class HolidayService {
 	 */
 	private static final String QUERY_PARAMETER = "jahr";
 
-	/**
-	 * We are interested in holidays for Baden-Württemberg.
-	 */
-	private static final String BADEN_WUERTTEMBERG = "BW";
-
 	/**
 	 * Date property.
 	 */
@@ -61,21 +88,164 @@ public class HolidayService {
 	}
 
 	/**
-	 * Http client.
+	 * Calculates the holidays of the configured state.
+	 */
+	private final HolidayCalculator calculator;
+
+	/**
+	 * Source of the remote holidays.
+	 */
+	interface RemoteSource {
+
+		/**
+		 * Fetches the holidays of the given year.
+		 * 
+		 * @param year
+		 *            the year for which to retrieve holidays.
+		 * @return map of holidays to holiday objects.
+		 * @throws IOException
+		 *             if the holidays cannot be fetched
+		 */
+		Map<LocalDate, Holiday> fetch(int year) throws IOException;
+	}
+
+	/**
+	 * Http client, null if the remote cross-check is disabled.
 	 */
 	private OkHttpClient httpClient;
 
 	/**
-	 * Cache to not request the remote service repeatedly.
+	 * Fetches the remote holidays, null if the remote cross-check is disabled.
+	 */
+	private final RemoteSource remoteSource;
+
+	/**
+	 * Indicates whether the calculated holidays are cross-checked with the
+	 * remote service.
+	 */
+	private final boolean remoteCheck;
+
+	/**
+	 * Indicates whether the fetched holidays replace the calculated ones.
+	 */
+	private final boolean remoteOverride;
+
+	/**
+	 * Age in milli seconds after which stored years are fetched again.
+	 */
+	private final long maxStoredAgeMillis;
+
+	/**
+	 * Stores the fetched holidays, null if APM_PROJECTS_HOME is not set.
 	 */
-	private final Map<Integer, Map<LocalDate, Holiday>> holidaysMap = new HashMap<Integer, Map<LocalDate, Holiday>>();
+	private final HolidayStore store;
+
+	/**
+	 * Prefetches adjacent years and fetches the remote holidays.
+	 */
+	private final ExecutorService backgroundExecutor;
+
+	/**
+	 * Holidays by year. Every year is loaded exactly once, concurrent callers
+	 * wait for the same future. Accessed by the parallel assignment expansion.
+	 */
+	private final Map<Integer, CompletableFuture<HolidayYear>> holidayYears = new ConcurrentHashMap<Integer, CompletableFuture<HolidayYear>>();
+
+	/**
+	 * Time in milli seconds the remote holidays have last been fetched at by
+	 * year.
+	 */
+	private final Map<Integer, Long> fetchedAt = new ConcurrentHashMap<Integer, Long>();
+
+	/**
+	 * Years whose last fetch failed. They are fetched again on their next
+	 * request, by the first caller removing the year.
+	 */
+	private final Set<Integer> failedFetches = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * Constructor.
 	 */
 	private HolidayService() {
-		httpClient = new OkHttpClient();
+		calculator = new HolidayCalculator(
+				PropertiesService.getInstance().getProperty(PropertiesService.HOLIDAYS_STATE_KEY));
+		remoteCheck = Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.HOLIDAYS_REMOTE_CHECK_KEY));
+		remoteOverride = remoteCheck && Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.HOLIDAYS_REMOTE_OVERRIDE_KEY));
+		if (remoteCheck) {
+			httpClient = new OkHttpClient();
+			remoteSource = this::fetchHolidays;
+		} else {
+			remoteSource = null;
+		}
+		maxStoredAgeMillis = TimeUnit.DAYS.toMillis(Long.parseLong(
+				PropertiesService.getInstance().getProperty(PropertiesService.HOLIDAYS_CACHE_MAX_AGE_DAYS_KEY)));
+		backgroundExecutor = ExecutorRegistry.getInstance().get(ExecutorRegistry.HOLIDAYS);
+		store = openStore();
+		if (null != store) {
+			for (Map.Entry<Integer, HolidayStore.Entry> stored : store.getYears(calculator.getState()).entrySet()) {
+				int year = stored.getKey();
+				fetchedAt.put(year, stored.getValue().getFetchedAt());
+				if (remoteOverride) {
+					holidayYears.put(year, CompletableFuture.completedFuture(stored.getValue().getHolidays()));
+					if (isOutdated(year)) {
+						backgroundExecutor.execute(() -> refresh(year));
+					}
+				}
+			}
+		}
+		int currentYear = LocalDate.now().getYear();
+		precompute(currentYear - PRECOMPUTED_YEARS_BEFORE, currentYear + PRECOMPUTED_YEARS_AFTER);
+	}
+
+	/**
+	 * Constructor for tests. Calculates the holidays with the given calculator
+	 * only, without remote check and store.
+	 * 
+	 * @param calculator
+	 *            holiday calculator
+	 * @param backgroundExecutor
+	 *            executor prefetching adjacent years
+	 */
+	HolidayService(HolidayCalculator calculator, ExecutorService backgroundExecutor) {
+		this(calculator, backgroundExecutor, null);
+	}
 
+	/**
+	 * Constructor for tests. Calculates the holidays with the given calculator
+	 * and, if a remote source is given, replaces them with the fetched ones.
+	 * Nothing is stored.
+	 * 
+	 * @param calculator
+	 *            holiday calculator
+	 * @param backgroundExecutor
+	 *            executor prefetching adjacent years and fetching the remote
+	 *            holidays
+	 * @param remoteSource
+	 *            source of the remote holidays or null
+	 */
+	HolidayService(HolidayCalculator calculator, ExecutorService backgroundExecutor, RemoteSource remoteSource) {
+		this.calculator = calculator;
+		this.backgroundExecutor = backgroundExecutor;
+		this.remoteSource = remoteSource;
+		remoteCheck = null != remoteSource;
+		remoteOverride = remoteCheck;
+		maxStoredAgeMillis = 0L;
+		store = null;
+	}
+
+	/**
+	 * Opens the holiday store in the APM_PROJECTS_HOME directory.
+	 * 
+	 * @return store or null if APM_PROJECTS_HOME is not set
+	 */
+	private HolidayStore openStore() {
+		String home = System.getenv(PropertiesService.APM_PROJECTS_HOME);
+		if (null == home) {
+			return null;
+		}
+		return new HolidayStore(Paths.get(home, STORE_FILE));
 	}
 
 	/**
@@ -86,37 +256,208 @@ public class HolidayService {
 	 * @return map of holidays to holiday objects.
 	 */
 	public Map<LocalDate, Holiday> getHolidays(int year) {
-		if (!holidaysMap.containsKey(year)) {
-			// Monitoring
-			final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan("HolidayService.getHolidays");
-			s_this.setTag("year", year);
-			try {
-				//Logic
-				HttpUrl.Builder urlBuilder = HttpUrl.parse(SERVICE_URL).newBuilder();
-				urlBuilder.addQueryParameter(QUERY_PARAMETER, String.valueOf(year));
-				String url = urlBuilder.build().toString();
+		return getHolidayYear(year).getHolidays();
+	}
 
-				Request request = new Request.Builder().url(url).build();
+	/**
+	 * Retrieves the holidays of the given year as bitsets for constant-time
+	 * checks. If the year has not been loaded yet, the adjacent years are
+	 * prefetched in the background. If fetching the remote holidays of the year
+	 * failed, they are fetched again in the background.
+	 * 
+	 * @param year
+	 *            the year for which to retrieve holidays.
+	 * @return holidays of the year
+	 */
+	public HolidayYear getHolidayYear(int year) {
+		CompletableFuture<HolidayYear> future = holidayYears.get(year);
+		if (null == future) {
+			future = load(year);
+			prefetch(year - 1);
+			prefetch(year + 1);
+		} else if (!failedFetches.isEmpty() && failedFetches.remove(year)) {
+			backgroundExecutor.execute(() -> refresh(year));
+		}
+		return future.join();
+	}
+
+	/**
+	 * @return number of loaded years
+	 */
+	int getLoadedYears() {
+		return holidayYears.size();
+	}
 
-				Response response;
+	/**
+	 * Loads the given year unless it is already loaded or being loaded. Unlike
+	 * {@link #getHolidayYear(int)} this does not prefetch adjacent years, so
+	 * prefetching does not spread over further years.
+	 * 
+	 * @param year
+	 *            year to load
+	 * @return future of the holidays of the year
+	 */
+	private CompletableFuture<HolidayYear> load(int year) {
+		CompletableFuture<HolidayYear> future = holidayYears.get(year);
+		if (null != future) {
+			return future;
+		}
+		CompletableFuture<HolidayYear> load = new CompletableFuture<>();
+		future = holidayYears.putIfAbsent(year, load);
+		if (null != future) {
+			return future;
+		}
+		// this caller loads the year, all others wait for it
+		try {
+			load.complete(calculate(year));
+		} catch (RuntimeException e) {
+			holidayYears.remove(year, load);
+			load.completeExceptionally(e);
+			throw e;
+		}
+		return load;
+	}
 
-				response = httpClient.newCall(request).execute();
+	/**
+	 * Loads the given year in the background unless it is already loaded or
+	 * being loaded.
+	 * 
+	 * @param year
+	 *            year to load
+	 */
+	private void prefetch(int year) {
+		if (!holidayYears.containsKey(year)) {
+			backgroundExecutor.execute(() -> load(year));
+		}
+	}
 
-				String jsonResponse = response.body().string();
+	/**
+	 * Checks whether the given date is a public holiday.
+	 * 
+	 * @param date
+	 *            date
+	 * @return true for public holidays
+	 */
+	public boolean isHoliday(LocalDate date) {
+		return getHolidayYear(date.getYear()).isHoliday(date.toEpochDay());
+	}
 
-				Map<LocalDate, Holiday> result = parseJSONHolidays(jsonResponse);
-				holidaysMap.put(year, result);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			} finally {
-				// Monitoring
-				s_this.deactivate();
+	/**
+	 * Checks whether the given date is a weekend or a public holiday.
+	 * 
+	 * @param date
+	 *            date
+	 * @return true for non-working days
+	 */
+	public boolean isNonWorkingDay(LocalDate date) {
+		return getHolidayYear(date.getYear()).isNonWorkingDay(date.toEpochDay());
+	}
 
+	/**
+	 * Calculates the holidays of the given years in advance.
+	 * 
+	 * @param fromYear
+	 *            first year
+	 * @param toYear
+	 *            last year
+	 */
+	public void precompute(int fromYear, int toYear) {
+		for (int year = fromYear; year <= toYear; year++) {
+			load(year).join();
+		}
+	}
+
+	/**
+	 * Calculates the holidays of the given year and schedules fetching the
+	 * remote holidays unless they have been fetched recently.
+	 * 
+	 * @param year
+	 *            the year for which to calculate holidays.
+	 * @return holidays of the year
+	 */
+	private HolidayYear calculate(int year) {
+		HolidayYear holidays = new HolidayYear(calculator.getState(), year, calculator.calculate(year));
+		if (remoteCheck && isOutdated(year)) {
+			backgroundExecutor.execute(() -> refresh(year));
+		}
+		return holidays;
+	}
+
+	/**
+	 * Checks whether the remote holidays of the given year have to be fetched.
+	 * 
+	 * @param year
+	 *            year
+	 * @return true if never fetched or fetched longer than the maximum age ago
+	 */
+	private boolean isOutdated(int year) {
+		Long fetched = fetchedAt.get(year);
+		return null == fetched || System.currentTimeMillis() - fetched > maxStoredAgeMillis;
+	}
+
+	/**
+	 * Fetches the holidays of the given year from the remote service, logs any
+	 * differences to the current ones and stores them. The fetched holidays
+	 * only replace the current ones if the remote override is enabled. A failed
+	 * fetch is not remembered, the year is fetched again on its next request.
+	 * 
+	 * @param year
+	 *            the year to fetch
+	 */
+	private void refresh(int year) {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan("HolidayService.refresh");
+		s_this.setTag("year", year);
+		try {
+			// Logic
+			Map<LocalDate, Holiday> current = load(year).join().getHolidays();
+			Map<LocalDate, Holiday> remote = remoteSource.fetch(year);
+			Set<LocalDate> missing = new HashSet<>(remote.keySet());
+			missing.removeAll(current.keySet());
+			Set<LocalDate> additional = new HashSet<>(current.keySet());
+			additional.removeAll(remote.keySet());
+			if (!missing.isEmpty() || !additional.isEmpty()) {
+				LOGGER.warn("Holidays of " + year + " differ from the remote service. Missing: " + missing
+						+ ", not listed remotely: " + additional);
+			}
+			HolidayYear fetched = new HolidayYear(calculator.getState(), year, remote);
+			long now = System.currentTimeMillis();
+			fetchedAt.put(year, now);
+			if (remoteOverride) {
+				holidayYears.put(year, CompletableFuture.completedFuture(fetched));
 			}
+			if (null != store) {
+				store.put(fetched, now);
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Failed fetching the holidays of " + year + ".", e);
+			failedFetches.add(year);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
 		}
+	}
+
+	/**
+	 * Fetches the holidays of the given year from the remote service.
+	 * 
+	 * @param year
+	 *            the year for which to retrieve holidays.
+	 * @return map of holidays to holiday objects.
+	 * @throws IOException
+	 *             if the remote service cannot be reached
+	 */
+	private Map<LocalDate, Holiday> fetchHolidays(int year) throws IOException {
+		HttpUrl.Builder urlBuilder = HttpUrl.parse(SERVICE_URL).newBuilder();
+		urlBuilder.addQueryParameter(QUERY_PARAMETER, String.valueOf(year));
+		String url = urlBuilder.build().toString();
 
-		return holidaysMap.get(year);
+		Request request = new Request.Builder().url(url).build();
 
+		try (Response response = httpClient.newCall(request).execute()) {
+			return parseJSONHolidays(response.body().string());
+		}
 	}
 
 	/**
@@ -125,12 +466,17 @@ public class HolidayService {
 	 * @param jsonResponse
 	 *            the response
 	 * @return the map.
+	 * @throws IOException
+	 *             if the response does not contain the holidays of the state
 	 */
 	@SuppressWarnings("unchecked")
-	private Map<LocalDate, Holiday> parseJSONHolidays(String jsonResponse) {
+	private Map<LocalDate, Holiday> parseJSONHolidays(String jsonResponse) throws IOException {
 		Map<String, Map<String, Map<String, String>>> map = new Gson().fromJson(jsonResponse, HashMap.class);
-		Map<String, Map<String, String>> bwMap = map.get(BADEN_WUERTTEMBERG);
-		return bwMap.entrySet().stream().map(entry -> {
+		Map<String, Map<String, String>> stateMap = null == map ? null : map.get(calculator.getState());
+		if (null == stateMap) {
+			throw new IOException("No holidays of state " + calculator.getState() + " in response: " + jsonResponse);
+		}
+		return stateMap.entrySet().stream().map(entry -> {
 			return new Holiday(entry.getKey(),
 					LocalDate.parse((String) entry.getValue().get(DATE_PROPERTY), DateTimeFormatter.ISO_DATE));
 		}).collect(Collectors.toMap(Holiday::getDate, h -> h));
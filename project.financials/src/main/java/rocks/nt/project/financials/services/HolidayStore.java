@@ -0,0 +1,208 @@
+package rocks.nt.project.financials.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rocks.nt.project.financials.data.Holiday;
+
+/**
+ * File store of holiday years fetched from the remote holiday service. Every
+ * year is stored as a single line consisting of the region, the year, the
+ * time it has been fetched at and the holidays as epoch days with their names:
+ *
+ * <pre>
+ * BW;2024;1704067200000;19723=Neujahrstag|19728=Heilige Drei Könige|...
+ * </pre>
+ *
+ * The file is replaced as a whole on every save.
+ */
+public class HolidayStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HolidayStore.class);
+
+	private static final char FIELD_SEPARATOR = ';';
+	private static final char HOLIDAY_SEPARATOR = '|';
+	private static final char NAME_SEPARATOR = '=';
+
+	/**
+	 * A stored holiday year with the time it has been fetched at.
+	 */
+	public static final class Entry {
+
+		private final HolidayYear holidays;
+		private final long fetchedAt;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param holidays
+		 *            holidays of the year
+		 * @param fetchedAt
+		 *            time the holidays have been fetched at in epoch milli
+		 *            seconds
+		 */
+		public Entry(HolidayYear holidays, long fetchedAt) {
+			this.holidays = holidays;
+			this.fetchedAt = fetchedAt;
+		}
+
+		/**
+		 * @return the holidays of the year
+		 */
+		public HolidayYear getHolidays() {
+			return holidays;
+		}
+
+		/**
+		 * @return time the holidays have been fetched at in epoch milli seconds
+		 */
+		public long getFetchedAt() {
+			return fetchedAt;
+		}
+	}
+
+	/**
+	 * Store file.
+	 */
+	private final Path file;
+
+	/**
+	 * Stored years of all regions, keyed by region and year.
+	 */
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	/**
+	 * Constructor. Reads the store file if it exists.
+	 *
+	 * @param file
+	 *            store file
+	 */
+	public HolidayStore(Path file) {
+		this.file = file;
+		load();
+	}
+
+	/**
+	 * Returns the stored years of the given region.
+	 *
+	 * @param region
+	 *            region, i.e. the state code
+	 * @return stored years by year
+	 */
+	public synchronized Map<Integer, Entry> getYears(String region) {
+		Map<Integer, Entry> years = new HashMap<>();
+		for (Entry entry : entries.values()) {
+			if (entry.getHolidays().getRegion().equals(region)) {
+				years.put(entry.getHolidays().getYear(), entry);
+			}
+		}
+		return years;
+	}
+
+	/**
+	 * Stores the given year and writes the store file.
+	 *
+	 * @param holidays
+	 *            holidays of the year
+	 * @param fetchedAt
+	 *            time the holidays have been fetched at in epoch milli seconds
+	 */
+	public synchronized void put(HolidayYear holidays, long fetchedAt) {
+		entries.put(key(holidays.getRegion(), holidays.getYear()), new Entry(holidays, fetchedAt));
+		save();
+	}
+
+	/**
+	 * Reads the store file, skipping malformed lines.
+	 */
+	private synchronized void load() {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			while (null != line) {
+				try {
+					Entry entry = parse(line);
+					HolidayYear holidays = entry.getHolidays();
+					entries.put(key(holidays.getRegion(), holidays.getYear()), entry);
+				} catch (RuntimeException e) {
+					LOGGER.warn("Skipping malformed holiday entry: " + line);
+				}
+				line = reader.readLine();
+			}
+		} catch (NoSuchFileException e) {
+			// nothing stored yet
+		} catch (IOException e) {
+			LOGGER.warn("Couldn't load stored holidays from " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Writes all entries to a temporary file that replaces the store file.
+	 */
+	private void save() {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				for (Entry entry : entries.values()) {
+					writer.write(format(entry));
+					writer.newLine();
+				}
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.warn("Couldn't store holidays in " + file + ".", e);
+		}
+	}
+
+	private static String key(String region, int year) {
+		return region + FIELD_SEPARATOR + year;
+	}
+
+	private static String format(Entry entry) {
+		HolidayYear holidays = entry.getHolidays();
+		StringBuilder line = new StringBuilder();
+		line.append(holidays.getRegion()).append(FIELD_SEPARATOR).append(holidays.getYear()).append(FIELD_SEPARATOR)
+				.append(entry.getFetchedAt()).append(FIELD_SEPARATOR);
+		boolean first = true;
+		for (Holiday holiday : new TreeMap<>(holidays.getHolidays()).values()) {
+			if (!first) {
+				line.append(HOLIDAY_SEPARATOR);
+			}
+			first = false;
+			line.append(holiday.getDate().toEpochDay()).append(NAME_SEPARATOR).append(holiday.getName());
+		}
+		return line.toString();
+	}
+
+	private static Entry parse(String line) {
+		String[] fields = line.split(String.valueOf(FIELD_SEPARATOR), -1);
+		if (fields.length != 4) {
+			throw new IllegalArgumentException("Expected 4 fields: " + line);
+		}
+		int year = Integer.parseInt(fields[1]);
+		Map<LocalDate, Holiday> holidays = new HashMap<>();
+		if (!fields[3].isEmpty()) {
+			for (String holiday : fields[3].split("\\" + HOLIDAY_SEPARATOR)) {
+				int separator = holiday.indexOf(NAME_SEPARATOR);
+				LocalDate date = LocalDate.ofEpochDay(Long.parseLong(holiday.substring(0, separator)));
+				if (date.getYear() != year) {
+					throw new IllegalArgumentException("Holiday outside of " + year + ": " + date);
+				}
+				holidays.put(date, new Holiday(holiday.substring(separator + 1), date));
+			}
+		}
+		return new Entry(new HolidayYear(fields[0], year, holidays), Long.parseLong(fields[2]));
+	}
+}
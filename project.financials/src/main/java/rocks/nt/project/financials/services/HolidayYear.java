@@ -0,0 +1,153 @@
+package rocks.nt.project.financials.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+
+import rocks.nt.project.financials.data.Holiday;
+
+/**
+ * Public holidays of a single year and region with bitsets indexed by day of
+ * year. One bitset marks the public holidays, a second one marks all
+ * non-working days, i.e. weekends and public holidays.
+ */
+public final class HolidayYear {
+
+	/**
+	 * Region, i.e. the state code.
+	 */
+	private final String region;
+
+	/**
+	 * Year.
+	 */
+	private final int year;
+
+	/**
+	 * Epoch day of the first of January.
+	 */
+	private final long firstEpochDay;
+
+	/**
+	 * Number of days of the year.
+	 */
+	private final int length;
+
+	/**
+	 * Public holidays by day of year.
+	 */
+	private final long[] holidayBits;
+
+	/**
+	 * Weekends and public holidays by day of year.
+	 */
+	private final long[] nonWorkingBits;
+
+	/**
+	 * Holiday objects by date.
+	 */
+	private final Map<LocalDate, Holiday> holidays;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param region
+	 *            region, i.e. the state code
+	 * @param year
+	 *            year
+	 * @param holidays
+	 *            public holidays of the year
+	 */
+	public HolidayYear(String region, int year, Map<LocalDate, Holiday> holidays) {
+		LocalDate first = LocalDate.of(year, 1, 1);
+		this.region = region;
+		this.year = year;
+		this.firstEpochDay = first.toEpochDay();
+		this.length = first.lengthOfYear();
+		this.holidays = Collections.unmodifiableMap(holidays);
+		this.holidayBits = new long[(length + 63) >>> 6];
+		this.nonWorkingBits = new long[holidayBits.length];
+
+		for (LocalDate date : holidays.keySet()) {
+			int day = (int) (date.toEpochDay() - firstEpochDay);
+			holidayBits[day >>> 6] |= 1L << day;
+			nonWorkingBits[day >>> 6] |= 1L << day;
+		}
+		// epoch day 0 was a thursday
+		int firstDayOfWeek = (int) Math.floorMod(firstEpochDay + 3, 7L);
+		for (int day = 0; day < length; day++) {
+			int dayOfWeek = (firstDayOfWeek + day) % 7;
+			if (dayOfWeek == DayOfWeek.SATURDAY.ordinal() || dayOfWeek == DayOfWeek.SUNDAY.ordinal()) {
+				nonWorkingBits[day >>> 6] |= 1L << day;
+			}
+		}
+	}
+
+	/**
+	 * @return the region
+	 */
+	public String getRegion() {
+		return region;
+	}
+
+	/**
+	 * @return the year
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * @return unmodifiable map of holidays to holiday objects
+	 */
+	public Map<LocalDate, Holiday> getHolidays() {
+		return holidays;
+	}
+
+	/**
+	 * Checks whether the given day belongs to this year.
+	 *
+	 * @param epochDay
+	 *            epoch day
+	 * @return true if the day is covered
+	 */
+	public boolean contains(long epochDay) {
+		return epochDay >= firstEpochDay && epochDay < firstEpochDay + length;
+	}
+
+	/**
+	 * Checks whether the given day of this year is a public holiday.
+	 *
+	 * @param epochDay
+	 *            epoch day within this year
+	 * @return true for public holidays
+	 */
+	public boolean isHoliday(long epochDay) {
+		int day = (int) (epochDay - firstEpochDay);
+		return (holidayBits[day >>> 6] & (1L << day)) != 0;
+	}
+
+	/**
+	 * Checks whether the given day of this year is a weekend or a public holiday.
+	 *
+	 * @param epochDay
+	 *            epoch day within this year
+	 * @return true for non-working days
+	 */
+	public boolean isNonWorkingDay(long epochDay) {
+		int day = (int) (epochDay - firstEpochDay);
+		return (nonWorkingBits[day >>> 6] & (1L << day)) != 0;
+	}
+
+	/**
+	 * Returns the public holiday of the given date.
+	 *
+	 * @param date
+	 *            date within this year
+	 * @return holiday or null if the date is no public holiday
+	 */
+	public Holiday getHoliday(LocalDate date) {
+		return isHoliday(date.toEpochDay()) ? holidays.get(date) : null;
+	}
+}
@@ -0,0 +1,94 @@
+package rocks.nt.project.financials.services;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.influxdb.dto.Point;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Collects the points of a single write operation before they are handed to
+ * the {@link InfluxWriter}.
+ */
+public interface InfluxBatch {
+
+	/**
+	 * Adds a project point.
+	 * 
+	 * @param projectAssignment
+	 *            project assignment providing employee and field values
+	 * @param yearMonth
+	 *            year-month tag value
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 * @param workingDay
+	 *            working day flag. If null the field is skipped.
+	 */
+	void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime, Boolean workingDay);
+
+	/**
+	 * Adds an unassigned project point.
+	 * 
+	 * @param index
+	 *            lane index
+	 * @param yearMonth
+	 *            year-month tag value
+	 * @param project
+	 *            project name
+	 * @param color
+	 *            color string in hex representation
+	 * @param notes
+	 *            notes string
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 */
+	void addUnassignedProjectPoint(int index, String yearMonth, String project, String color, String notes,
+			long nanoTime);
+
+	/**
+	 * Adds a range encoded project assignment covering all days from its from
+	 * date to its to date.
+	 * 
+	 * @param projectAssignment
+	 *            project assignment to store
+	 * @param nanoTime
+	 *            timestamp in nano seconds. Ranges with a later timestamp
+	 *            override earlier ones.
+	 */
+	void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime);
+
+	/**
+	 * Adds a calendar point.
+	 * 
+	 * @param type
+	 *            calendar entry type (m, d or w)
+	 * @param value
+	 *            display value
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 */
+	void addCalendarPoint(String type, String value, long nanoTime);
+
+	/**
+	 * Adds an arbitrary point.
+	 * 
+	 * @param point
+	 *            point to add
+	 */
+	void addPoint(Point point);
+
+	/**
+	 * @return number of points in this batch
+	 */
+	int size();
+
+	/**
+	 * Hands the collected points over to the given writer. The batch must not be
+	 * used afterwards.
+	 * 
+	 * @param writer
+	 *            writer to use
+	 * @return future that completes once the points have been written
+	 */
+	CompletableFuture<Void> writeTo(InfluxWriter writer);
+}
@@ -0,0 +1,267 @@
+package rocks.nt.project.financials.services;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import rocks.nt.project.financials.data.MonthReportDataPoint.Type;
+
+/**
+ * Query templates of {@link InfluxService} for a single {@link InfluxSchema}
+ * snapshot. Measurement, tag and field names are resolved when the templates
+ * are built, only the request specific values are bound per query.
+ */
+final class InfluxQueries {
+
+	/**
+	 * Employees known from project assignments.
+	 */
+	final QueryTemplate knownEmployees;
+
+	/**
+	 * Distinct customer projects.
+	 */
+	final QueryTemplate knownProjects;
+
+	/**
+	 * Distinct unassigned customer projects.
+	 */
+	final QueryTemplate knownUnassignedProjects;
+
+	/**
+	 * Distinct projects of an employee in a period. Parameters: from, to,
+	 * employee.
+	 */
+	final QueryTemplate projectsInPeriod;
+
+	/**
+	 * First and last entry of an unassigned project grouped by index as two
+	 * statements. Parameters: from, to, project, repeated for the second
+	 * statement.
+	 */
+	final QueryTemplate unassignedProjectBounds;
+
+	/**
+	 * First and last entry of an unassigned project at a single index as two
+	 * statements. Parameters: from, to, index, project, repeated for the second
+	 * statement.
+	 */
+	final QueryTemplate unassignedProjectBoundsAtIndex;
+
+	/**
+	 * Deletes the unassigned project entries of an index. Parameters: index,
+	 * from, to.
+	 */
+	final QueryTemplate deleteUnassignedProjectDays;
+
+	/**
+	 * Assignment ranges overlapping a period. Parameters: first epoch day, last
+	 * epoch day.
+	 */
+	final QueryTemplate assignmentRanges;
+
+	/**
+	 * Estimated figures of a month. Parameters: costs, costs, year-month.
+	 */
+	final QueryTemplate estimatedMonth;
+
+	/**
+	 * Actual costs grouped by year-month.
+	 */
+	final QueryTemplate actualCosts;
+
+	/**
+	 * Last calendar entry.
+	 */
+	final QueryTemplate lastCalendarEntry;
+
+	/**
+	 * Last weekend or not available entry grouped by employee.
+	 */
+	final QueryTemplate lastNonWorkingDays;
+
+	/**
+	 * Indexes of unassigned projects in a period. Parameters: from, to.
+	 */
+	final QueryTemplate unassignedIndexes;
+
+	/**
+	 * Non project events of several employees grouped by employee. Parameters:
+	 * from, to, employees.
+	 */
+	final QueryTemplate nonProjectEvents;
+
+	/**
+	 * All project and status values grouped by employee.
+	 */
+	final QueryTemplate projectSlots;
+
+	/**
+	 * All unassigned projects grouped by index.
+	 */
+	final QueryTemplate unassignedSlots;
+
+	/**
+	 * All rate, daily expenses and working day values grouped by employee and
+	 * year-month.
+	 */
+	final QueryTemplate rollupSlots;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param schema
+	 *            schema to build the templates for
+	 */
+	InfluxQueries(InfluxSchema schema) {
+
+		knownEmployees = QueryTemplate.builder("knownEmployees")
+				.text("SHOW TAG VALUES FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" WITH KEY = ").identifier(schema.getEmployeeTag())
+				.build();
+
+		knownProjects = QueryTemplate.builder("knownProjects")
+				.text("SELECT DISTINCT ").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getProjectsMeasurement())
+				.build();
+
+		knownUnassignedProjects = QueryTemplate.builder("knownUnassignedProjects")
+				.text("SELECT DISTINCT ").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getUnassignedProjectsMeasurement())
+				.build();
+
+		projectsInPeriod = QueryTemplate.builder("projectsInPeriod")
+				.text("SELECT DISTINCT ").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" WHERE time >= ").numberParameter()
+				.text(" AND time <= ").numberParameter()
+				.text(" AND ").identifier(schema.getEmployeeTag()).text(" = ").stringParameter()
+				.build();
+
+		unassignedProjectBounds = unassignedProjectBounds(schema, "unassignedProjectBounds", false);
+
+		unassignedProjectBoundsAtIndex = unassignedProjectBounds(schema, "unassignedProjectBoundsAtIndex", true);
+
+		deleteUnassignedProjectDays = QueryTemplate.builder("deleteUnassignedProjectDays")
+				.text("DELETE FROM ").identifier(schema.getUnassignedProjectsMeasurement())
+				.text(" WHERE ").identifier(schema.getIndexTag()).text(" = ").stringParameter()
+				.text(" AND time >= ").numberParameter()
+				.text(" AND time <= ").numberParameter()
+				.build();
+
+		assignmentRanges = QueryTemplate.builder("assignmentRanges")
+				.text("SELECT * FROM ").identifier(schema.getAssignmentsMeasurement())
+				.text(" WHERE ").identifier(schema.getToDayField()).text(" >= ").numberParameter()
+				.text(" AND ").identifier(schema.getFromDayField()).text(" <= ").numberParameter()
+				.build();
+
+		estimatedMonth = QueryTemplate.builder("estimatedMonth")
+				.text("SELECT 100*(count(").identifier(schema.getRateField())
+				.text(")-count(").identifier(schema.getWorkingDayField())
+				.text("))/count(").identifier(schema.getWorkingDayField())
+				.text("), sum(").identifier(schema.getDailyExpensesField())
+				.text("), sum(").identifier(schema.getRateField())
+				.text("), (sum(").identifier(schema.getRateField()).text(")-").numberParameter()
+				.text("), (100-(100*").numberParameter().text("/(sum(").identifier(schema.getRateField())
+				.text(")))) FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" WHERE ").identifier(schema.getYearMonthTag()).text(" = ").stringParameter()
+				.text(" AND (").identifier(schema.getRateField()).text(" > 0 OR ")
+				.identifier(schema.getWorkingDayField()).text(" = true)")
+				.build();
+
+		actualCosts = QueryTemplate.builder("actualCosts")
+				.text("SELECT ").identifier(Type.ACTUAL.toString() + schema.getCostsField())
+				.text(" FROM ").identifier(schema.getValidationMeasurement())
+				.text(" GROUP BY ").identifier(schema.getYearMonthTag())
+				.build();
+
+		lastCalendarEntry = QueryTemplate.builder("lastCalendarEntry")
+				.text("SELECT LAST(").identifier(LineProtocolEncoder.CALENDAR_VALUE_FIELD)
+				.text(") FROM ").identifier(LineProtocolEncoder.CALENDAR_MEASUREMENT)
+				.build();
+
+		lastNonWorkingDays = QueryTemplate.builder("lastNonWorkingDays")
+				.text("SELECT LAST(").identifier(schema.getProjectField())
+				.text(") FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" WHERE ").identifier(schema.getProjectField()).text(" = ").literal(schema.getNotAvailableValue())
+				.text(" OR ").identifier(schema.getProjectField()).text(" = ").literal(schema.getWeekendValue())
+				.text(" GROUP BY ").identifier(schema.getEmployeeTag())
+				.build();
+
+		unassignedIndexes = QueryTemplate.builder("unassignedIndexes")
+				.text("SELECT ").identifier(schema.getIndexTag())
+				.text(",").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getUnassignedProjectsMeasurement())
+				.text(" WHERE time >= ").numberParameter()
+				.text(" AND time <= ").numberParameter()
+				.build();
+
+		QueryTemplate.Builder events = QueryTemplate.builder("nonProjectEvents")
+				.text("SELECT ").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" WHERE time >= ").numberParameter()
+				.text(" AND time <= ").numberParameter()
+				.text(" AND ").identifier(schema.getEmployeeTag()).text(" =~ ").stringSetParameter()
+				.text(" AND (");
+		boolean first = true;
+		for (String event : schema.getNonProjectEvents()) {
+			events.text(first ? "" : " OR ").identifier(schema.getProjectField()).text(" = ").literal(event);
+			first = false;
+		}
+		nonProjectEvents = events.text(") GROUP BY ").identifier(schema.getEmployeeTag()).build();
+
+		projectSlots = QueryTemplate.builder("projectSlots")
+				.text("SELECT ").identifier(schema.getProjectField())
+				.text(",").identifier(schema.getStatusField())
+				.text(" FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" GROUP BY ").identifier(schema.getEmployeeTag())
+				.build();
+
+		unassignedSlots = QueryTemplate.builder("unassignedSlots")
+				.text("SELECT ").identifier(schema.getProjectField())
+				.text(" FROM ").identifier(schema.getUnassignedProjectsMeasurement())
+				.text(" GROUP BY ").identifier(schema.getIndexTag())
+				.build();
+
+		rollupSlots = QueryTemplate.builder("rollupSlots")
+				.text("SELECT ").identifier(schema.getRateField())
+				.text(",").identifier(schema.getDailyExpensesField())
+				.text(",").identifier(schema.getWorkingDayField())
+				.text(" FROM ").identifier(schema.getProjectsMeasurement())
+				.text(" GROUP BY ").identifier(schema.getEmployeeTag())
+				.text(",").identifier(schema.getYearMonthTag())
+				.build();
+	}
+
+	/**
+	 * @return all templates
+	 */
+	List<QueryTemplate> getTemplates() {
+		return Collections.unmodifiableList(Arrays.asList(knownEmployees, knownProjects, knownUnassignedProjects,
+				projectsInPeriod, unassignedProjectBounds, unassignedProjectBoundsAtIndex, deleteUnassignedProjectDays,
+				assignmentRanges, estimatedMonth, actualCosts, lastCalendarEntry, lastNonWorkingDays,
+				unassignedIndexes, nonProjectEvents, projectSlots, unassignedSlots, rollupSlots));
+	}
+
+	/**
+	 * Builds the queries for the first and the last entry of an unassigned
+	 * project in a period. The selectors return the times of the entries.
+	 */
+	private static QueryTemplate unassignedProjectBounds(InfluxSchema schema, String name, boolean atIndex) {
+		QueryTemplate.Builder builder = QueryTemplate.builder(name);
+		String separator = "";
+		for (String selector : new String[] { "FIRST", "LAST" }) {
+			builder.text(separator + "SELECT " + selector + "(").identifier(schema.getProjectField())
+					.text(") FROM ").identifier(schema.getUnassignedProjectsMeasurement())
+					.text(" WHERE time >= ").numberParameter()
+					.text(" AND time <= ").numberParameter();
+			if (atIndex) {
+				builder.text(" AND ").identifier(schema.getIndexTag()).text(" = ").stringParameter();
+			}
+			builder.text(" AND ").identifier(schema.getProjectField()).text(" = ").stringParameter()
+					.text(" GROUP BY ").identifier(schema.getIndexTag());
+			separator = "; ";
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,513 @@
+package rocks.nt.project.financials.services;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Immutable snapshot of the influxDB schema names and marker values. The
+ * snapshot is built once from the {@link PropertiesService} and can be
+ * replaced atomically by {@link #reload()}. Hot code paths should fetch the
+ * snapshot once via {@link #get()} and use the typed accessors.
+ */
+public final class InfluxSchema {
+
+	/**
+	 * Current snapshot.
+	 */
+	private static final AtomicReference<InfluxSchema> CURRENT = new AtomicReference<>();
+
+	/**
+	 * Get the current schema snapshot.
+	 * 
+	 * @return current snapshot
+	 */
+	public static InfluxSchema get() {
+		InfluxSchema schema = CURRENT.get();
+		if (null == schema) {
+			CURRENT.compareAndSet(null, new InfluxSchema(PropertiesService.getInstance()::getProperty));
+			schema = CURRENT.get();
+		}
+		return schema;
+	}
+
+	/**
+	 * Reloads the user properties and replaces the current snapshot.
+	 * 
+	 * @return new snapshot
+	 */
+	public static InfluxSchema reload() {
+		PropertiesService.getInstance().reloadUserProperties();
+		InfluxSchema schema = new InfluxSchema(PropertiesService.getInstance()::getProperty);
+		CURRENT.set(schema);
+		return schema;
+	}
+
+	private final String database;
+	private final String retentionPolicy;
+	private final String projectsMeasurement;
+	private final String unassignedProjectsMeasurement;
+	private final String assignmentsMeasurement;
+	private final String rollupsMeasurement;
+	private final String validationMeasurement;
+	private final String employeeTag;
+	private final String yearMonthTag;
+	private final String indexTag;
+	private final String projectField;
+	private final String statusField;
+	private final String colorField;
+	private final String rateField;
+	private final String dailyExpensesField;
+	private final String notesField;
+	private final String workingDayField;
+	private final String fromDayField;
+	private final String toDayField;
+	private final String daysOfWeekField;
+	private final String skipHolidaysField;
+	private final String skipEventsField;
+	private final String expensesField;
+	private final String costsField;
+	private final String revenueField;
+	private final String profitField;
+	private final String utilizationField;
+	private final String returnField;
+	private final String weekendValue;
+	private final String notAvailableValue;
+	private final String projectRemovedValue;
+	private final String trainingValue;
+	private final String conferenceValue;
+	private final String otherValue;
+	private final String hardBookedValue;
+	private final String softBookedValue;
+	private final String requestValue;
+	private final String defaultColor;
+	private final String hardBookedColor;
+	private final String softBookedColor;
+	private final String requestColor;
+	private final String weekEndColor;
+	private final String trainingColor;
+	private final String conferenceColor;
+	private final String otherColor;
+	private final String notAvailableColor;
+	private final String unassignedColor;
+
+	/**
+	 * Special project markers representing events that are not customer projects.
+	 */
+	private final Set<String> projectsToExclude;
+
+	/**
+	 * Project markers of weekends, public holidays and custom events.
+	 */
+	private final Set<String> nonProjectEvents;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param properties
+	 *            property lookup to read the schema from
+	 */
+	InfluxSchema(Function<String, String> properties) {
+		database = properties.apply(PropertiesService.INFLUX_DATABASE_KEY);
+		retentionPolicy = properties.apply(PropertiesService.INFLUX_RETENTION_POLICY_KEY);
+		projectsMeasurement = properties.apply(PropertiesService.INFLUX_M_PROJECTS_KEY);
+		unassignedProjectsMeasurement = properties.apply(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY);
+		assignmentsMeasurement = properties.apply(PropertiesService.INFLUX_M_ASSIGNMENTS_KEY);
+		rollupsMeasurement = properties.apply(PropertiesService.INFLUX_M_ROLLUPS_KEY);
+		validationMeasurement = properties.apply(PropertiesService.INFLUX_M_VALIDATION_KEY);
+		employeeTag = properties.apply(PropertiesService.INFLUX_T_EMPLOYEE_KEY);
+		yearMonthTag = properties.apply(PropertiesService.INFLUX_T_YEAR_MONTH_KEY);
+		indexTag = properties.apply(PropertiesService.INFLUX_T_INDEX_KEY);
+		projectField = properties.apply(PropertiesService.INFLUX_F_PROJECT_KEY);
+		statusField = properties.apply(PropertiesService.INFLUX_F_STATUS_KEY);
+		colorField = properties.apply(PropertiesService.INFLUX_F_COLOR_KEY);
+		rateField = properties.apply(PropertiesService.INFLUX_F_RATE_KEY);
+		dailyExpensesField = properties.apply(PropertiesService.INFLUX_F_DAILY_EXPENSES_KEY);
+		notesField = properties.apply(PropertiesService.INFLUX_F_NOTES_KEY);
+		workingDayField = properties.apply(PropertiesService.INFLUX_F_WORKINGDAY_KEY);
+		fromDayField = properties.apply(PropertiesService.INFLUX_F_FROM_DAY_KEY);
+		toDayField = properties.apply(PropertiesService.INFLUX_F_TO_DAY_KEY);
+		daysOfWeekField = properties.apply(PropertiesService.INFLUX_F_DAYS_OF_WEEK_KEY);
+		skipHolidaysField = properties.apply(PropertiesService.INFLUX_F_SKIP_HOLIDAYS_KEY);
+		skipEventsField = properties.apply(PropertiesService.INFLUX_F_SKIP_EVENTS_KEY);
+		expensesField = properties.apply(PropertiesService.INFLUX_F_EXPENSES_KEY);
+		costsField = properties.apply(PropertiesService.INFLUX_F_COSTS_KEY);
+		revenueField = properties.apply(PropertiesService.INFLUX_F_REVENUE_KEY);
+		profitField = properties.apply(PropertiesService.INFLUX_F_PROFIT_KEY);
+		utilizationField = properties.apply(PropertiesService.INFLUX_F_UTILIZATION_KEY);
+		returnField = properties.apply(PropertiesService.INFLUX_F_RETURN_KEY);
+		weekendValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_WE_KEY);
+		notAvailableValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_NA_KEY);
+		projectRemovedValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY);
+		trainingValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_TRAINING_KEY);
+		conferenceValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_CONFERENCE_KEY);
+		otherValue = properties.apply(PropertiesService.INFLUX_V_PROJECT_OTHER_KEY);
+		hardBookedValue = properties.apply(PropertiesService.INFLUX_BOOKING_STATUS_HARD_KEY);
+		softBookedValue = properties.apply(PropertiesService.INFLUX_BOOKING_STATUS_SOFT_KEY);
+		requestValue = properties.apply(PropertiesService.INFLUX_BOOKING_STATUS_REQUEST_KEY);
+		defaultColor = properties.apply(PropertiesService.GRAFANA_COLOR_DEFAULT_KEY);
+		hardBookedColor = properties.apply(PropertiesService.GRAFANA_COLOR_STATUS_HARD_KEY);
+		softBookedColor = properties.apply(PropertiesService.GRAFANA_COLOR_STATUS_SOFT_KEY);
+		requestColor = properties.apply(PropertiesService.GRAFANA_COLOR_STATUS_REQUEST_KEY);
+		weekEndColor = properties.apply(PropertiesService.GRAFANA_COLOR_WE_KEY);
+		trainingColor = properties.apply(PropertiesService.GRAFANA_COLOR_TRAINING_KEY);
+		conferenceColor = properties.apply(PropertiesService.GRAFANA_COLOR_CONFERENCE_KEY);
+		otherColor = properties.apply(PropertiesService.GRAFANA_COLOR_OTHER_KEY);
+		notAvailableColor = properties.apply(PropertiesService.GRAFANA_COLOR_NA_KEY);
+		unassignedColor = properties.apply(PropertiesService.GRAFANA_COLOR_UNASSIGNED_KEY);
+
+		Set<String> toExclude = new HashSet<>(Arrays.asList(weekendValue, projectRemovedValue, notAvailableValue,
+				trainingValue, conferenceValue, otherValue));
+		projectsToExclude = Collections.unmodifiableSet(toExclude);
+		Set<String> events = new HashSet<>(toExclude);
+		events.remove(projectRemovedValue);
+		nonProjectEvents = Collections.unmodifiableSet(events);
+	}
+
+	/**
+	 * @return the influx database
+	 */
+	public String getDatabase() {
+		return database;
+	}
+
+	/**
+	 * @return the retention policy
+	 */
+	public String getRetentionPolicy() {
+		return retentionPolicy;
+	}
+
+	/**
+	 * @return the projects measurement
+	 */
+	public String getProjectsMeasurement() {
+		return projectsMeasurement;
+	}
+
+	/**
+	 * @return the unassigned projects measurement
+	 */
+	public String getUnassignedProjectsMeasurement() {
+		return unassignedProjectsMeasurement;
+	}
+
+	/**
+	 * @return the measurement of range encoded project assignments
+	 */
+	public String getAssignmentsMeasurement() {
+		return assignmentsMeasurement;
+	}
+
+	/**
+	 * @return the measurement of the monthly rollups
+	 */
+	public String getRollupsMeasurement() {
+		return rollupsMeasurement;
+	}
+
+	/**
+	 * @return the validation measurement
+	 */
+	public String getValidationMeasurement() {
+		return validationMeasurement;
+	}
+
+	/**
+	 * @return the employee tag key
+	 */
+	public String getEmployeeTag() {
+		return employeeTag;
+	}
+
+	/**
+	 * @return the year-month tag key
+	 */
+	public String getYearMonthTag() {
+		return yearMonthTag;
+	}
+
+	/**
+	 * @return the unassigned project index tag key
+	 */
+	public String getIndexTag() {
+		return indexTag;
+	}
+
+	/**
+	 * @return the project field key
+	 */
+	public String getProjectField() {
+		return projectField;
+	}
+
+	/**
+	 * @return the booking status field key
+	 */
+	public String getStatusField() {
+		return statusField;
+	}
+
+	/**
+	 * @return the color field key
+	 */
+	public String getColorField() {
+		return colorField;
+	}
+
+	/**
+	 * @return the daily rate field key
+	 */
+	public String getRateField() {
+		return rateField;
+	}
+
+	/**
+	 * @return the daily expenses field key
+	 */
+	public String getDailyExpensesField() {
+		return dailyExpensesField;
+	}
+
+	/**
+	 * @return the notes field key
+	 */
+	public String getNotesField() {
+		return notesField;
+	}
+
+	/**
+	 * @return the working day field key
+	 */
+	public String getWorkingDayField() {
+		return workingDayField;
+	}
+
+	/**
+	 * @return the field key of the first day of an assignment range
+	 */
+	public String getFromDayField() {
+		return fromDayField;
+	}
+
+	/**
+	 * @return the field key of the last day of an assignment range
+	 */
+	public String getToDayField() {
+		return toDayField;
+	}
+
+	/**
+	 * @return the field key of the days of week mask of an assignment range
+	 */
+	public String getDaysOfWeekField() {
+		return daysOfWeekField;
+	}
+
+	/**
+	 * @return the field key of the skip holidays flag of an assignment range
+	 */
+	public String getSkipHolidaysField() {
+		return skipHolidaysField;
+	}
+
+	/**
+	 * @return the field key of the skip events flag of an assignment range
+	 */
+	public String getSkipEventsField() {
+		return skipEventsField;
+	}
+
+	/**
+	 * @return the report expenses field key
+	 */
+	public String getExpensesField() {
+		return expensesField;
+	}
+
+	/**
+	 * @return the report costs field key
+	 */
+	public String getCostsField() {
+		return costsField;
+	}
+
+	/**
+	 * @return the report revenue field key
+	 */
+	public String getRevenueField() {
+		return revenueField;
+	}
+
+	/**
+	 * @return the report profit field key
+	 */
+	public String getProfitField() {
+		return profitField;
+	}
+
+	/**
+	 * @return the report utilization field key
+	 */
+	public String getUtilizationField() {
+		return utilizationField;
+	}
+
+	/**
+	 * @return the report return on sales field key
+	 */
+	public String getReturnField() {
+		return returnField;
+	}
+
+	/**
+	 * @return the project value marking weekends
+	 */
+	public String getWeekendValue() {
+		return weekendValue;
+	}
+
+	/**
+	 * @return the project value marking public holidays and vacation
+	 */
+	public String getNotAvailableValue() {
+		return notAvailableValue;
+	}
+
+	/**
+	 * @return the project value marking removed projects
+	 */
+	public String getProjectRemovedValue() {
+		return projectRemovedValue;
+	}
+
+	/**
+	 * @return the project value marking trainings
+	 */
+	public String getTrainingValue() {
+		return trainingValue;
+	}
+
+	/**
+	 * @return the project value marking conferences
+	 */
+	public String getConferenceValue() {
+		return conferenceValue;
+	}
+
+	/**
+	 * @return the project value marking other events
+	 */
+	public String getOtherValue() {
+		return otherValue;
+	}
+
+	/**
+	 * @return the hard booked status value
+	 */
+	public String getHardBookedValue() {
+		return hardBookedValue;
+	}
+
+	/**
+	 * @return the soft booked status value
+	 */
+	public String getSoftBookedValue() {
+		return softBookedValue;
+	}
+
+	/**
+	 * @return the request status value
+	 */
+	public String getRequestValue() {
+		return requestValue;
+	}
+
+	/**
+	 * @return the default color
+	 */
+	public String getDefaultColor() {
+		return defaultColor;
+	}
+
+	/**
+	 * @return the color of hard booked projects
+	 */
+	public String getHardBookedColor() {
+		return hardBookedColor;
+	}
+
+	/**
+	 * @return the color of soft booked projects
+	 */
+	public String getSoftBookedColor() {
+		return softBookedColor;
+	}
+
+	/**
+	 * @return the color of requested projects
+	 */
+	public String getRequestColor() {
+		return requestColor;
+	}
+
+	/**
+	 * @return the color of weekends
+	 */
+	public String getWeekEndColor() {
+		return weekEndColor;
+	}
+
+	/**
+	 * @return the color of trainings
+	 */
+	public String getTrainingColor() {
+		return trainingColor;
+	}
+
+	/**
+	 * @return the color of conferences
+	 */
+	public String getConferenceColor() {
+		return conferenceColor;
+	}
+
+	/**
+	 * @return the color of other events
+	 */
+	public String getOtherColor() {
+		return otherColor;
+	}
+
+	/**
+	 * @return the color of public holidays and vacation
+	 */
+	public String getNotAvailableColor() {
+		return notAvailableColor;
+	}
+
+	/**
+	 * @return the color of unassigned projects
+	 */
+	public String getUnassignedColor() {
+		return unassignedColor;
+	}
+
+	/**
+	 * @return special project markers representing events that are not customer
+	 *         projects
+	 */
+	public Set<String> getProjectsToExclude() {
+		return projectsToExclude;
+	}
+
+	/**
+	 * @return project markers of weekends, public holidays and custom events
+	 */
+	public Set<String> getNonProjectEvents() {
+		return nonProjectEvents;
+	}
+}
@@ -1,26 +1,36 @@
 package rocks.nt.project.financials.services;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.time.Month;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.influxdb.InfluxDB;
-import org.influxdb.InfluxDB.ConsistencyLevel;
 import org.influxdb.InfluxDBFactory;
-import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Point.Builder;
 import org.influxdb.dto.Query;
@@ -31,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.opentracing.ActiveSpan;
+import io.opentracing.SpanContext;
 import rocks.nt.project.financials.data.Holiday;
 import rocks.nt.project.financials.data.MonthReportDataPoint;
 import rocks.nt.project.financials.data.MonthReportDataPoint.Type;
@@ -50,17 +61,6 @@ public class InfluxService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Api.class);
 
-	/**
-	 * Special project markers representing events that are not customer projects.
-	 */
-	public static String[] PROJECTS_TO_EXCLUDE = {
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_WE_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_TRAINING_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_CONFERENCE_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_OTHER_KEY) };
-
 	/**
 	 * Singleton instance.
 	 */
@@ -91,6 +91,63 @@ public class InfluxService {
 	 */
 	private static final int PROJECT_HOUR = 12;
 
+	/**
+	 * German month names of the calendar entries.
+	 */
+	private static final String[] MONTH_NAMES = new String[12];
+
+	/**
+	 * Day of month and week numbers of the calendar entries.
+	 */
+	private static final String[] NUMBERS = new String[54];
+
+	static {
+		for (Month month : Month.values()) {
+			MONTH_NAMES[month.ordinal()] = month.getDisplayName(TextStyle.FULL, Locale.GERMANY);
+		}
+		for (int i = 0; i < NUMBERS.length; i++) {
+			NUMBERS[i] = String.valueOf(i);
+		}
+	}
+
+	/**
+	 * Encoder setting selecting the point builder based fallback.
+	 */
+	private static final String INFLUX_ENCODER_BUILDER = "builder";
+
+	/**
+	 * Number of queued expansions per expansion thread before the caller expands
+	 * by itself.
+	 */
+	private static final int EXPANSION_QUEUE_FACTOR = 16;
+
+	/**
+	 * Maximum time to wait for the next chunk of a streamed query.
+	 */
+	private static final long QUERY_TIMEOUT_MILLIS = 60000L;
+
+	/**
+	 * Maximum time the materialization waits for pending range writes before it
+	 * skips its run.
+	 */
+	private static final long RANGE_WRITE_TIMEOUT_MILLIS = 60000L;
+
+	/**
+	 * Number of times the materialization queries the ranges again if ranges
+	 * have been written during its queries.
+	 */
+	private static final int MATERIALIZE_ATTEMPTS = 3;
+
+	/**
+	 * Directory of the write-ahead spool below APM_PROJECTS_HOME.
+	 */
+	private static final String SPOOL_DIRECTORY = "spool";
+
+	/**
+	 * Storage mode keeping project assignments as ranges.
+	 */
+	private static final String STORAGE_MODE_RANGE = "range";
+
 	/**
 	 * Get singleton instance.
 	 * 
@@ -103,56 +160,613 @@ public class InfluxService {
 		return instance;
 	}
 
+	/**
+	 * Flushes the pending writes and stops the writer if the singleton has been
+	 * created.
+	 */
+	public synchronized static void shutdown() {
+		if (null != instance) {
+			instance.writer.shutdown();
+		}
+	}
+
 	/**
 	 * InfluxDB connection.
 	 */
 	private InfluxDB influx;
 
 	/**
-	 * Last known entry in the calendar.
+	 * Asynchronous write pipeline.
+	 */
+	private InfluxWriter writer;
+
+	/**
+	 * Executes queries with chunked responses.
+	 */
+	private ChunkedQuery chunkedQuery;
+
+	/**
+	 * Line protocol encoder. Replaced by {@link #reloadSchema()}.
+	 */
+	private volatile LineProtocolEncoder encoder = new LineProtocolEncoder(InfluxSchema.get());
+
+	/**
+	 * Query templates. Replaced by {@link #reloadSchema()}.
+	 */
+	private volatile InfluxQueries queries = new InfluxQueries(InfluxSchema.get());
+
+	/**
+	 * Index of project points by employee. Null if the day grid is disabled or
+	 * could not be loaded. Only read through {@link #projectGrid()}, as it is
+	 * incomplete until the startup state has been loaded.
+	 */
+	private volatile DayGridIndex projectGrid;
+
+	/**
+	 * Occupied days of the unassigned project lanes. Null if the day grid is
+	 * disabled or could not be loaded. Only read through {@link #laneIndex()},
+	 * as it is incomplete until the startup state has been loaded.
+	 */
+	private volatile LaneIndex laneIndex;
+
+	/**
+	 * Monthly rollups of the project points. Null if the rollups are disabled or
+	 * could not be loaded. Only read through {@link #rollups()}, as they are
+	 * incomplete until the startup state has been loaded.
+	 */
+	private volatile MonthlyRollups rollups;
+
+	/**
+	 * Number of months before the current one the rollups keep open for
+	 * changes.
+	 */
+	private int rollupOpenMonths;
+
+	/**
+	 * Running statistics of the actual monthly costs. Null until they have been
+	 * loaded. Guarded by {@link #costStatisticsLock}.
+	 */
+	private CostStatistics costStatistics;
+
+	/**
+	 * Guards {@link #costStatistics}, so actuals written while the statistics
+	 * are loaded are not lost.
+	 */
+	private final Object costStatisticsLock = new Object();
+
+	/**
+	 * Number of months before the estimated month the estimated costs are
+	 * averaged over. If not positive, all reported months are averaged,
+	 * including the estimated month and later ones.
 	 */
-	private LocalDate lastCalendarEntry;
+	private final int costsWindowMonths;
 
-	private final Map<String, LocalDate> lastWeekendAndHolidayEntryMap = new HashMap<>();
+	/**
+	 * Public holidays.
+	 */
+	private final HolidayService holidayService = HolidayService.getInstance();
+
+	/**
+	 * Time to live of the cached catalogs.
+	 */
+	private final long catalogTtlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(
+			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_CATALOG_TTL_SECONDS_KEY)));
+
+	/**
+	 * Cached known employees.
+	 */
+	private final CatalogCache employeeCatalog = new CatalogCache("employees", catalogTtlMillis,
+			this::queryKnownEmployees);
+
+	/**
+	 * Cached known customer projects.
+	 */
+	private final CatalogCache projectCatalog = new CatalogCache("projects", catalogTtlMillis,
+			this::queryKnownProjects);
+
+	/**
+	 * Cached known unassigned customer projects.
+	 */
+	private final CatalogCache unassignedProjectCatalog = new CatalogCache("unassignedProjects",
+			catalogTtlMillis, this::queryKnownUnassignedProjects);
+
+	/**
+	 * Indicates whether points are encoded as line protocol or built with the
+	 * influx point builder.
+	 */
+	private final boolean useLineProtocolEncoder = !INFLUX_ENCODER_BUILDER
+			.equals(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_WRITE_ENCODER_KEY));
+
+	/**
+	 * Expands the project assignments of different employees in parallel.
+	 */
+	private final ExecutorService expansionExecutor;
+
+	/**
+	 * Indicates whether project assignments are stored as ranges that are
+	 * expanded into daily points only up to the materialization horizon.
+	 */
+	private final boolean rangeStorage = STORAGE_MODE_RANGE
+			.equals(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_STORAGE_MODE_KEY));
+
+	/**
+	 * Number of days ahead of today up to which ranges are expanded into daily
+	 * points.
+	 */
+	private final int materializeDays = Integer.parseInt(
+			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_STORAGE_MATERIALIZE_DAYS_KEY));
+
+	/**
+	 * Guards the range records and the materialization horizon so that daily
+	 * points are always enqueued in the order of their ranges.
+	 */
+	private final Object rangeLock = new Object();
+
+	/**
+	 * Last day up to which ranges have been expanded into daily points.
+	 */
+	private LocalDate materializedUntil = LocalDate.now().minusDays(1);
+
+	/**
+	 * Future of the last range write.
+	 */
+	private CompletableFuture<Void> lastRangeWrite = CompletableFuture.completedFuture(null);
+
+	/**
+	 * Completes once the points of the last range write have been enqueued.
+	 * Daily points of the next range write are enqueued after them.
+	 */
+	private CompletableFuture<Void> lastRangeEnqueue = CompletableFuture.completedFuture(null);
+
+	/**
+	 * Timestamp of the last range record. Keeps range timestamps unique per
+	 * employee series.
+	 */
+	private final AtomicLong lastRangeNanoTime = new AtomicLong();
+
+	/**
+	 * Periodically extends the materialization horizon.
+	 */
+	private ScheduledExecutorService materializer;
+
+	/**
+	 * Number of locks guarding the weekend and public holiday entries of the
+	 * employees.
+	 */
+	private static final int CALENDAR_LOCK_STRIPES = 64;
+
+	/**
+	 * Last known entry in the calendar. Advanced by compare-and-set before the
+	 * entries are written, so every day is written by exactly one caller.
+	 */
+	private final AtomicReference<LocalDate> lastCalendarEntry = new AtomicReference<>(
+			LocalDate.now().minusMonths(EPSILON_WE_MONTHS));
+
+	/**
+	 * Last weekend or public holiday entry by employee. Updated while holding
+	 * the lock stripe of the employee.
+	 */
+	private final Map<String, LocalDate> lastWeekendAndHolidayEntryMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Lock stripes guarding the weekend and public holiday entries by employee.
+	 */
+	private final Object[] calendarLocks = new Object[CALENDAR_LOCK_STRIPES];
+
+	/**
+	 * Completes once the startup state has been loaded: the last calendar,
+	 * weekend and public holiday entries and the enabled indexes.
+	 */
+	private final CompletableFuture<Void> ready;
+
+	/**
+	 * Index updates and undos of writes handed to the writer while the startup
+	 * state is being loaded. Applied in order once it has been loaded, null afterwards. Guarded
+	 * by {@link #indexUpdateLock}.
+	 */
+	private List<Runnable> deferredIndexUpdates = new ArrayList<>();
+
+	/**
+	 * Guards {@link #deferredIndexUpdates}.
+	 */
+	private final Object indexUpdateLock = new Object();
+
+	/**
+	 * Serializes handing batches to the writer, so the indexes and rollups,
+	 * which are updated when a batch is handed over, see the writes in the
+	 * order influx does.
+	 */
+	private final Object writeOrderLock = new Object();
+
+	/**
+	 * Completes once all batches handed to the writer so far have been written
+	 * or have failed. Guarded by {@link #writeOrderLock}.
+	 */
+	private CompletableFuture<Void> pendingWrites = CompletableFuture.completedFuture(null);
+
+	/**
+	 * Keeps the weekend, public holiday and calendar entries written ahead.
+	 */
+	private final CalendarService calendarService;
 
 	/**
 	 * Constructor.
 	 */
 	private InfluxService() {
+		final InfluxSchema schema = InfluxSchema.get();
 		influx = InfluxDBFactory.connect(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_URL_KEY),
 				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_USER_KEY),
 				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_PW_KEY));
+		writer = new InfluxWriter(influx,
+				schema.getDatabase(),
+				schema.getRetentionPolicy(),
+				Integer.parseInt(
+						PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_WRITE_QUEUE_CAPACITY_KEY)),
+				Integer.parseInt(
+						PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_WRITE_BATCH_SIZE_KEY)),
+				Long.parseLong(PropertiesService.getInstance()
+						.getProperty(PropertiesService.INFLUX_WRITE_FLUSH_INTERVAL_KEY)),
+				openSpool());
+
+		chunkedQuery = new ChunkedQuery(influx,
+				Integer.parseInt(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_QUERY_CHUNK_SIZE_KEY)),
+				Long.parseLong(PropertiesService.getInstance()
+						.getProperty(PropertiesService.INFLUX_QUERY_FIRST_CHUNK_TIMEOUT_KEY)),
+				QUERY_TIMEOUT_MILLIS);
+
+		int parallelism = Integer.parseInt(
+				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_ASSIGN_PARALLELISM_KEY));
+		expansionExecutor = ExecutorRegistry.getInstance().register("assignment-expansion", parallelism,
+				parallelism * EXPANSION_QUEUE_FACTOR, false);
+
+		List<CompletableFuture<Void>> startupLoads = new ArrayList<>();
+		ExecutorService io = ExecutorRegistry.getInstance().get(ExecutorRegistry.INFLUX_IO);
+		if (Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_INDEX_DAY_GRID_KEY))) {
+			// written to from the start, read once loaded
+			projectGrid = new DayGridIndex(PROJECT_HOUR);
+			laneIndex = new LaneIndex();
+			startupLoads.add(CompletableFuture.runAsync(this::loadDayGrids, io));
+		}
 
-		lastCalendarEntry = getLastCalendarEntry();
+		if (Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_ROLLUPS_ENABLED_KEY))) {
+			rollupOpenMonths = Integer.parseInt(
+					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_ROLLUPS_OPEN_MONTHS_KEY));
+			rollups = new MonthlyRollups();
+			closeRollupMonths(rollups);
+			startupLoads.add(CompletableFuture.runAsync(this::loadRollups, io));
+			long flushSeconds = Long.parseLong(
+					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_ROLLUPS_FLUSH_SECONDS_KEY));
+			ExecutorRegistry.getInstance().scheduler("rollup-flush").scheduleWithFixedDelay(this::flushRollups,
+					flushSeconds, flushSeconds, TimeUnit.SECONDS);
+		}
 
-		for (String employee : getKnownEmployees()) {
-			LocalDate date = getLastWeekEndAndHolidayEntryForEmployee(employee);
-			if (date == null) {
-				date = LocalDate.now();
+		costsWindowMonths = Integer.parseInt(
+				PropertiesService.getInstance().getProperty(PropertiesService.COSTS_MEAN_WINDOW_MONTHS_KEY));
+		startupLoads.add(CompletableFuture.runAsync(() -> {
+			try {
+				costStatistics();
+			} catch (RuntimeException e) {
+				LOGGER.error("Failed loading the cost statistics. Loading them again on the next estimate.", e);
 			}
-			lastWeekendAndHolidayEntryMap.put(employee, date);
+		}, io));
+
+		for (int i = 0; i < calendarLocks.length; i++) {
+			calendarLocks[i] = new Object();
+		}
+		startupLoads.add(CompletableFuture.runAsync(this::loadCalendarState, io));
+		ready = CompletableFuture.allOf(startupLoads.toArray(new CompletableFuture<?>[startupLoads.size()]))
+				.handle((result, throwable) -> {
+					applyDeferredIndexUpdates();
+					return null;
+				});
+
+		if (rangeStorage) {
+			materializer = ExecutorRegistry.getInstance().scheduler("assignment-materializer");
+			materializer.scheduleAtFixedRate(this::materializeAssignmentRanges, 0, 1, TimeUnit.DAYS);
 		}
 
+		calendarService = new CalendarService(this,
+				Integer.parseInt(
+						PropertiesService.getInstance().getProperty(PropertiesService.CALENDAR_HORIZON_MONTHS_KEY)),
+				Long.parseLong(
+						PropertiesService.getInstance().getProperty(PropertiesService.CALENDAR_INTERVAL_MINUTES_KEY)));
 	}
 
 	/**
-	 * Retrieve the list of known employees from influxDB.
+	 * Loads the last calendar entry and the last weekend and public holiday
+	 * entries of all employees with a single grouped query.
+	 */
+	private void loadCalendarState() {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".loadCalendarState");
+		try {
+			// Logic
+			final String employeeTag = InfluxSchema.get().getEmployeeTag();
+			lastCalendarEntry.set(getLastCalendarEntry());
+			streamQuery(queries().lastNonWorkingDays,
+					(series, row) -> lastWeekendAndHolidayEntryMap.put(series.getTags().get(employeeTag),
+							LocalDate.ofEpochDay(TimeCodec.utcEpochDayFromIso((String) row.get(0)))));
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed loading the calendar state. Missing entries are written again.", e);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Returns a future that completes once the startup state has been loaded.
+	 * 
+	 * @return readiness future
+	 */
+	public CompletableFuture<Void> whenReady() {
+		return ready;
+	}
+
+	/**
+	 * @return day grid index or null while loading, if disabled or if loading
+	 *         failed
+	 */
+	private DayGridIndex projectGrid() {
+		return ready.isDone() ? projectGrid : null;
+	}
+
+	/**
+	 * @return monthly rollups or null while loading, if disabled or if loading
+	 *         failed
+	 */
+	private MonthlyRollups rollups() {
+		return ready.isDone() ? rollups : null;
+	}
+
+	/**
+	 * @return lane index or null while loading, if disabled or if loading failed
+	 */
+	private LaneIndex laneIndex() {
+		return ready.isDone() ? laneIndex : null;
+	}
+
+	/**
+	 * Applies an update of the indexes or rollups. Updates are deferred until
+	 * the startup state has been loaded, so the loaded state does not overwrite
+	 * them.
+	 * 
+	 * @param update
+	 *            index update
+	 */
+	private void applyIndexUpdate(Runnable update) {
+		synchronized (indexUpdateLock) {
+			if (null != deferredIndexUpdates) {
+				deferredIndexUpdates.add(update);
+				return;
+			}
+		}
+		update.run();
+	}
+
+	/**
+	 * Applies the updates deferred while loading the startup state. Later
+	 * updates wait for the lock, so they are applied after the deferred ones.
+	 */
+	private void applyDeferredIndexUpdates() {
+		synchronized (indexUpdateLock) {
+			for (Runnable update : deferredIndexUpdates) {
+				try {
+					update.run();
+				} catch (RuntimeException e) {
+					LOGGER.error("Failed applying a deferred index update.", e);
+				}
+			}
+			deferredIndexUpdates = null;
+		}
+	}
+
+	/**
+	 * Loads the rate, expenses and working day values of all project points into
+	 * the monthly rollups. Runs in the background, the rollups are read once the
+	 * startup state has been loaded. The rollups are disabled if loading fails.
+	 */
+	private void loadRollups() {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".loadRollups");
+		try {
+			// Logic
+			final InfluxSchema schema = InfluxSchema.get();
+			MonthlyRollups loaded = rollups;
+			streamQuery(queries().rollupSlots, (series, row) -> loaded.load(
+					series.getTags().get(schema.getEmployeeTag()), series.getTags().get(schema.getYearMonthTag()),
+					TimeCodec.utcEpochNanosFromIso((String) row.get(0)), (Double) row.get(1), (Double) row.get(2),
+					(Boolean) row.get(3)));
+		} catch (RuntimeException e) {
+			rollups = null;
+			LOGGER.error("Failed loading the monthly rollups. Falling back to influx queries.", e);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Closes the months of the given rollups that are not expected to change
+	 * anymore.
+	 * 
+	 * @param monthlyRollups
+	 *            rollups
+	 */
+	private void closeRollupMonths(MonthlyRollups monthlyRollups) {
+		LocalDate firstOpen = LocalDate.now().minusMonths(rollupOpenMonths);
+		monthlyRollups.closeMonthsBefore(firstOpen.getYear(), firstOpen.getMonthValue());
+	}
+
+	/**
+	 * Writes the monthly rollups that changed since the last flush to the
+	 * rollups measurement, one point per month and employee at the first day of
+	 * the month. Months that fail to be written are written again on the next
+	 * flush.
+	 */
+	private void flushRollups() {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".flushRollups");
+		try {
+			// Logic
+			MonthlyRollups currentRollups = rollups();
+			if (null == currentRollups) {
+				return;
+			}
+			closeRollupMonths(currentRollups);
+			final InfluxSchema schema = InfluxSchema.get();
+			InfluxBatch batch = newBatch();
+			Map<String, Map<String, MonthlyRollups.Rollup>> drained = currentRollups.drainChanges();
+			for (Map.Entry<String, Map<String, MonthlyRollups.Rollup>> month : drained.entrySet()) {
+				String[] yearAndMonth = month.getKey().split("-");
+				long nanoTime = TimeCodec.toEpochNanos(TimeCodec.toEpochDay(Integer.parseInt(yearAndMonth[0]),
+						Integer.parseInt(yearAndMonth[1]), 1), 0);
+				for (Map.Entry<String, MonthlyRollups.Rollup> employee : month.getValue().entrySet()) {
+					MonthlyRollups.Rollup rollup = employee.getValue();
+					batch.addPoint(Point.measurement(schema.getRollupsMeasurement())
+							.time(nanoTime, TimeUnit.NANOSECONDS)
+							.tag(schema.getEmployeeTag(), employee.getKey())
+							.tag(schema.getYearMonthTag(), month.getKey())
+							.addField(MonthlyRollups.RATE_DAYS_FIELD, rollup.getRateDays())
+							.addField(MonthlyRollups.WORKING_DAYS_FIELD, rollup.getWorkingDays())
+							.addField(MonthlyRollups.REVENUE_FIELD, rollup.getRevenue())
+							.addField(MonthlyRollups.EXPENSES_FIELD, rollup.getExpenses())
+							.addField(MonthlyRollups.UTILIZATION_FIELD, rollup.getUtilization())
+							.build());
+				}
+			}
+			s_this.setTag(JaegerUtil.T_POINTS_TO_WRITE, batch.size());
+			if (batch.size() > 0) {
+				writeToInflux(batch).exceptionally(throwable -> {
+					currentRollups.markChanged(drained);
+					return null;
+				});
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed writing the monthly rollups.", e);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Loads all project and unassigned project points into the day grid indexes.
+	 * Runs in the background, the indexes are read once the startup state has
+	 * been loaded. The indexes are disabled if loading fails.
+	 */
+	private void loadDayGrids() {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".loadDayGrids");
+		try {
+			// Logic
+			final InfluxSchema schema = InfluxSchema.get();
+			DayGridIndex projects = projectGrid;
+			streamQuery(queries().projectSlots, (series, row) -> {
+				String project = (String) row.get(1);
+				projects.update(series.getTags().get(schema.getEmployeeTag()),
+						TimeCodec.utcEpochNanosFromIso((String) row.get(0)), project, (String) row.get(2),
+						null != project && schema.getNonProjectEvents().contains(project));
+			});
+			LaneIndex lanes = laneIndex;
+			streamQuery(queries().unassignedSlots, (series, row) -> {
+				long epochDay = TimeCodec.localEpochDayFromMillis(
+						TimeCodec.utcEpochNanosFromIso((String) row.get(0)) / (NANO / MILLI));
+				lanes.occupy(Integer.parseInt(series.getTags().get(schema.getIndexTag())), epochDay, epochDay);
+			});
+		} catch (RuntimeException e) {
+			projectGrid = null;
+			laneIndex = null;
+			LOGGER.error("Failed loading the day grid index. Falling back to influx queries.", e);
+			s_this.log("Error: " + e.getMessage());
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Opens the write-ahead spool in the APM_PROJECTS_HOME directory.
+	 * 
+	 * @return spool or null if spooling is disabled or not possible
+	 */
+	private WriteAheadSpool openSpool() {
+		if (!Boolean.parseBoolean(
+				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_SPOOL_ENABLED_KEY))) {
+			return null;
+		}
+		String home = System.getenv(PropertiesService.APM_PROJECTS_HOME);
+		if (null == home) {
+			LOGGER.warn(PropertiesService.APM_PROJECTS_HOME + " is not set. Writes to influx are not spooled.");
+			return null;
+		}
+		try {
+			return new WriteAheadSpool(Paths.get(home, SPOOL_DIRECTORY), Long.parseLong(
+					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_SPOOL_SEGMENT_BYTES_KEY)));
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Failed opening write-ahead spool. Writes to influx are not spooled.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve the list of known employees.
 	 * 
 	 * @return A sorted list of employees.
 	 */
 	public List<String> getKnownEmployees() {
+		return employeeCatalog.get();
+	}
+
+	/**
+	 * Retrieve a list of known customer projects.
+	 * 
+	 * @return A sorted list of known customer projects.
+	 */
+	public List<String> getKnownProjects() {
+		return projectCatalog.get();
+	}
+
+	/**
+	 * Retrieve a list of known unassigned customer projects.
+	 * 
+	 * @return A sorted list of known unassigned customer projects.
+	 */
+	public List<String> getKnownUnassignedProjects() {
+		return unassignedProjectCatalog.get();
+	}
+
+	/**
+	 * Returns the hit and miss statistics of the cached catalogs.
+	 * 
+	 * @return catalog caches
+	 */
+	public List<CatalogCache> getCatalogStatistics() {
+		return Arrays.asList(employeeCatalog, projectCatalog, unassignedProjectCatalog);
+	}
+
+	/**
+	 * Retrieve the list of known employees from influxDB.
+	 * 
+	 * @return A list of employees.
+	 */
+	private List<String> queryKnownEmployees() {
 		// Monitoring
-		String spanName = this.getClass().getSimpleName() + ".getKnownEmployees";
+		String spanName = this.getClass().getSimpleName() + ".queryKnownEmployees";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
 
 		try {
 			// Logic
-			String query = "SHOW TAG VALUES FROM \""
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY)
-					+ "\" WITH KEY = \""
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_EMPLOYEE_KEY) + "\"";
-
-			List<List<Object>> values = executeQuery(query);
+			List<List<Object>> values = executeQuery(queries().knownEmployees);
 
 			if (null == values) {
 				return new ArrayList<String>();
@@ -168,28 +782,25 @@ public class InfluxService {
 	}
 
 	/**
-	 * Retrieve a list of known customer projects.
+	 * Retrieve a list of known customer projects from influxDB.
 	 * 
-	 * @return A sorted list of known customer projects.
+	 * @return A list of known customer projects.
 	 */
-	public List<String> getKnownProjects() {
+	private List<String> queryKnownProjects() {
 		// Monitoring
-		String spanName = this.getClass().getSimpleName() + ".getKnownProjects";
+		String spanName = this.getClass().getSimpleName() + ".queryKnownProjects";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
 
 		try {
 			// Logic
-			String query = "SELECT DISTINCT "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY);
-
-			List<List<Object>> values = executeQuery(query);
+			final InfluxSchema schema = InfluxSchema.get();
+			List<List<Object>> values = executeQuery(queries().knownProjects);
 
 			if (null == values) {
 				return new ArrayList<String>();
 			}
 
-			Set<String> toExclude = new HashSet<String>(Arrays.asList(PROJECTS_TO_EXCLUDE));
+			Set<String> toExclude = schema.getProjectsToExclude();
 
 			List<String> projects = values.stream().map(p -> (String) p.get(1)).filter(p -> !toExclude.contains(p))
 					.collect(Collectors.toList());
@@ -202,28 +813,25 @@ public class InfluxService {
 	}
 
 	/**
-	 * Retrieve a list of known unassigned customer projects.
+	 * Retrieve a list of known unassigned customer projects from influxDB.
 	 * 
-	 * @return A sorted list of known unassigned customer projects.
+	 * @return A list of known unassigned customer projects.
 	 */
-	public List<String> getKnownUnassignedProjects() {
+	private List<String> queryKnownUnassignedProjects() {
 		// Monitoring
-		String spanName = this.getClass().getSimpleName() + ".getKnownUnassignedProjects";
+		String spanName = this.getClass().getSimpleName() + ".queryKnownUnassignedProjects";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
 		try {
 			// Logic
-			String query = "SELECT DISTINCT "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY);
-
-			List<List<Object>> values = executeQuery(query);
+			final InfluxSchema schema = InfluxSchema.get();
+			List<List<Object>> values = executeQuery(queries().knownUnassignedProjects);
 
 			if (null == values) {
 				return new ArrayList<String>();
 			}
 
 			List<String> projects = values.stream().map(p -> (String) p.get(1)).filter(p -> !p.equals(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY)))
+					schema.getProjectRemovedValue()))
 					.collect(Collectors.toList());
 			Collections.sort(projects);
 			return projects;
@@ -238,28 +846,194 @@ public class InfluxService {
 	 * 
 	 * @param projectAssignments
 	 *            an array of project assignments.
+	 * @return future that completes once the assignments have been written.
 	 */
-	public void assignProjects(ProjectAssignment... projectAssignments) {
+	public CompletableFuture<Void> assignProjects(ProjectAssignment... projectAssignments) {
 		// Monitoring
 		String spanName = this.getClass().getSimpleName() + ".assignProjects";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
 		try {
 			// Logic
-			BatchPoints batchPoints = BatchPoints
-					.database(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY))
-					.retentionPolicy(
-							PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_RETENTION_POLICY_KEY))
-					.consistency(ConsistencyLevel.ALL).build();
+			updateCatalogs(projectAssignments);
 			for (ProjectAssignment projectAssignment : projectAssignments) {
-				assignProject(projectAssignment, batchPoints);
+				calendarService.request(projectAssignment.getEmployee(), projectAssignment.getTo());
 			}
-			writeToInflux(batchPoints);
+			// the events cover the visible part of the ranges as well, resolve them
+			// before taking the range lock
+			List<ProjectAssignment> assignments = Arrays.asList(projectAssignments);
+			Map<String, Set<LocalDate>> eventsByEmployee = retrieveNonProjectEventsForSkipping(assignments);
+			InfluxBatch batch = newBatch();
+			if (rangeStorage) {
+				synchronized (rangeLock) {
+					List<ProjectAssignment> visibleAssignments = new ArrayList<>();
+					for (ProjectAssignment projectAssignment : projectAssignments) {
+						batch.addAssignmentRangePoint(projectAssignment, nextRangeNanoTime());
+						ProjectAssignment visible = clipAssignment(projectAssignment, projectAssignment.getFrom(),
+								materializedUntil);
+						if (null != visible) {
+							visibleAssignments.add(visible);
+						}
+					}
+					CompletableFuture<CompletableFuture<Void>> enqueued = expandAndWrite(batch, visibleAssignments,
+							eventsByEmployee, lastRangeEnqueue, s_this);
+					lastRangeEnqueue = enqueued.handle((write, failure) -> null);
+					lastRangeWrite = enqueued.thenCompose(write -> write);
+					return lastRangeWrite;
+				}
+			}
+			return expandAndWrite(batch, assignments, eventsByEmployee, CompletableFuture.completedFuture(null),
+					s_this).thenCompose(write -> write);
 		} finally {
 			// Monitoring
 			s_this.deactivate();
 		}
 	}
 
+	/**
+	 * Adds the employees and projects of the given assignments to the cached
+	 * catalogs.
+	 * 
+	 * @param projectAssignments
+	 *            written project assignments
+	 */
+	private void updateCatalogs(ProjectAssignment... projectAssignments) {
+		Set<String> toExclude = InfluxSchema.get().getProjectsToExclude();
+		for (ProjectAssignment projectAssignment : projectAssignments) {
+			employeeCatalog.add(projectAssignment.getEmployee());
+			if (!toExclude.contains(projectAssignment.getProject())) {
+				projectCatalog.add(projectAssignment.getProject());
+			}
+		}
+	}
+
+	/**
+	 * Expands the given project assignments into daily points and writes them.
+	 * Multiple assignments are expanded in parallel, each into its own shard
+	 * traced by a child span of the given span. The shards are enqueued in the
+	 * order of the given list as soon as they and their predecessors have been
+	 * expanded, so the caller is not blocked by the expansion.
+	 * 
+	 * @param batch
+	 *            batch written before the expanded points
+	 * @param projectAssignments
+	 *            project assignments to expand
+	 * @param eventsByEmployee
+	 *            non-project events of the employees whose assignments skip
+	 *            events, see {@link #retrieveNonProjectEventsForSkipping(List)}
+	 * @param enqueueAfter
+	 *            future after which the points are enqueued, regardless of its
+	 *            outcome
+	 * @param span
+	 *            span to record the number of shards and their expansion times on
+	 * @return future that completes once all points have been enqueued. It
+	 *         yields the future that completes once they have been written.
+	 */
+	private CompletableFuture<CompletableFuture<Void>> expandAndWrite(InfluxBatch batch,
+			List<ProjectAssignment> projectAssignments, Map<String, Set<LocalDate>> eventsByEmployee,
+			CompletableFuture<Void> enqueueAfter, ActiveSpan span) {
+		if (projectAssignments.size() <= 1) {
+			for (ProjectAssignment projectAssignment : projectAssignments) {
+				assignProject(projectAssignment, batch, eventsByEmployee.get(projectAssignment.getEmployee()));
+			}
+			return enqueueAfter.handle((ignored, failure) -> writeToInflux(batch));
+		}
+
+		final SpanContext parentContext = span.context();
+		List<CompletableFuture<InfluxBatch>> shards = new ArrayList<>(projectAssignments.size());
+		long[] expansionNanos = new long[projectAssignments.size()];
+		for (int i = 0; i < projectAssignments.size(); i++) {
+			final int idx = i;
+			final ProjectAssignment projectAssignment = projectAssignments.get(i);
+			shards.add(CompletableFuture.supplyAsync(() -> {
+				final ActiveSpan s_shard = JaegerUtil.getTracer()
+						.buildSpan(this.getClass().getSimpleName() + ".expandAssignment").asChildOf(parentContext)
+						.startActive();
+				s_shard.setTag(JaegerUtil.T_EMPLOYEE, projectAssignment.getEmployee());
+				long start = System.nanoTime();
+				try {
+					InfluxBatch shard = newBatch();
+					Set<LocalDate> datesToExclude = eventsByEmployee.get(projectAssignment.getEmployee());
+					assignProject(projectAssignment, shard,
+							null == datesToExclude ? Collections.emptySet() : datesToExclude);
+					s_shard.setTag(JaegerUtil.T_POINTS_TO_WRITE, shard.size());
+					return shard;
+				} finally {
+					expansionNanos[idx] = System.nanoTime() - start;
+					s_shard.setTag(JaegerUtil.T_EXPANSION_MILLIS, TimeUnit.NANOSECONDS.toMillis(expansionNanos[idx]));
+					s_shard.deactivate();
+				}
+			}, expansionExecutor));
+		}
+
+		// the summary is tagged once all shards are expanded, keep the span open
+		final ActiveSpan.Continuation continuation = span.capture();
+		CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[shards.size()])).whenComplete((ignored,
+				failure) -> {
+			ActiveSpan s_summary = continuation.activate();
+			try {
+				long maxNanos = 0;
+				long totalNanos = 0;
+				for (long nanos : expansionNanos) {
+					maxNanos = Math.max(maxNanos, nanos);
+					totalNanos += nanos;
+				}
+				s_summary.setTag(JaegerUtil.T_COUNT, expansionNanos.length);
+				s_summary.setTag(JaegerUtil.T_EXPANSION_MAX_MILLIS, TimeUnit.NANOSECONDS.toMillis(maxNanos));
+				s_summary.setTag(JaegerUtil.T_EXPANSION_MEAN_MILLIS,
+						TimeUnit.NANOSECONDS.toMillis(totalNanos / expansionNanos.length));
+			} finally {
+				s_summary.deactivate();
+			}
+		});
+
+		CompletableFuture<List<CompletableFuture<Void>>> enqueued = enqueueAfter.handle((ignored, failure) -> {
+			List<CompletableFuture<Void>> writes = new ArrayList<>(shards.size() + 1);
+			writes.add(writeToInflux(batch));
+			return writes;
+		});
+		for (CompletableFuture<InfluxBatch> shard : shards) {
+			// a failed shard fails the result without holding back its successors
+			enqueued = enqueued.thenCombine(shard.handle((expanded, failure) -> expanded), (writes, expanded) -> {
+				writes.add(null == expanded ? shard.thenAccept(failed -> {
+				}) : writeToInflux(expanded));
+				return writes;
+			});
+		}
+		return enqueued
+				.thenApply(writes -> CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[writes.size()])));
+	}
+
+	/**
+	 * Retrieves the non-project events of all employees whose assignments skip
+	 * events with a single query covering the period of all those assignments.
+	 * 
+	 * @param projectAssignments
+	 *            project assignments
+	 * @return dates of non-project events per employee
+	 */
+	private Map<String, Set<LocalDate>> retrieveNonProjectEventsForSkipping(
+			List<ProjectAssignment> projectAssignments) {
+		Set<String> employees = new HashSet<>();
+		LocalDate from = null;
+		LocalDate to = null;
+		for (ProjectAssignment projectAssignment : projectAssignments) {
+			if (!projectAssignment.isSkipEvents()) {
+				continue;
+			}
+			employees.add(projectAssignment.getEmployee());
+			if (null == from || projectAssignment.getFrom().isBefore(from)) {
+				from = projectAssignment.getFrom();
+			}
+			if (null == to || projectAssignment.getTo().isAfter(to)) {
+				to = projectAssignment.getTo();
+			}
+		}
+		if (employees.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		return getNonProjectEvents(from, to, employees);
+	}
+
 	/**
 	 * Creates an unassigned project.
 	 * 
@@ -273,8 +1047,9 @@ public class InfluxService {
 	 *            notes string
 	 * @param color
 	 *            color string in hex representation
+	 * @return future that completes once the project has been written.
 	 */
-	public void createUnassignedProject(String project, LocalDate from, LocalDate to, String notes, String color) {
+	public CompletableFuture<Void> createUnassignedProject(String project, LocalDate from, LocalDate to, String notes, String color) {
 		// Monitoring
 		String spanName = this.getClass().getSimpleName() + ".createUnassignedProject";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
@@ -283,36 +1058,30 @@ public class InfluxService {
 		s_this.setTag(JaegerUtil.T_TO, to.toString());
 		try {
 			// Logic
-			BatchPoints batchPoints = BatchPoints
-					.database(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY))
-					.retentionPolicy(
-							PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_RETENTION_POLICY_KEY))
-					.consistency(ConsistencyLevel.ALL).build();
+			InfluxBatch batch = newBatch();
 			LocalDate current = from;
-			int index = retrieveAvailableIndex(from, to);
+			LaneIndex lanes = laneIndex();
+			int index = retrieveAvailableIndex(lanes, from, to);
 			while (!current.isAfter(to)) {
 				String yearMonth = getYearMonth(current);
 
 				long nanoTime = getNanoTime(current, false);
-				Builder pointBuilder = Point
-						.measurement(PropertiesService.getInstance()
-								.getProperty(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY))
-						.time(nanoTime, TimeUnit.NANOSECONDS)
-						.tag(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY),
-								String.valueOf(index))
-						.tag(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_YEAR_MONTH_KEY),
-								yearMonth)
-						.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_COLOR_KEY),
-								color)
-						.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY),
-								project)
-						.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_NOTES_KEY),
-								notes);
-				batchPoints.point(pointBuilder.build());
+				batch.addUnassignedProjectPoint(index, yearMonth, project, color, notes, nanoTime);
 				current = current.plusDays(1);
 			}
 
-			writeToInflux(batchPoints);
+			if (!project.equals(InfluxSchema.get().getProjectRemovedValue())) {
+				unassignedProjectCatalog.add(project);
+			}
+			CompletableFuture<Void> written = writeToInflux(batch);
+			if (null != lanes) {
+				// the claimed lane is free again if nothing has been written
+				written.exceptionally(throwable -> {
+					lanes.release(index, from.toEpochDay(), to.toEpochDay());
+					return null;
+				});
+			}
+			return written;
 		} finally {
 			// Monitoring
 			s_this.deactivate();
@@ -324,8 +1093,9 @@ public class InfluxService {
 	 * 
 	 * @param request
 	 *            deletion request
+	 * @return future that completes once the deletion has been written.
 	 */
-	public void deleteProject(ProjectDeleteRequest request) {
+	public CompletableFuture<Void> deleteProject(ProjectDeleteRequest request) {
 		// Monitoring
 		String spanName = this.getClass().getSimpleName() + ".deleteProject";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
@@ -335,53 +1105,320 @@ public class InfluxService {
 		s_this.setTag(JaegerUtil.T_TO, dateFromMillis(request.getStart() + request.getDuration()).toString());
 		try {
 			// Logic
+			final InfluxSchema schema = InfluxSchema.get();
 			LocalDate fromDate = dateFromMillis(request.getStart());
 			LocalDate toDate = dateFromMillis(request.getStart() + request.getDuration()).minusDays(1);
 
 			LOGGER.info("project to delete: " + request.getProject() + " for employee: " + request.getEmployee()
 					+ " from: " + fromDate.toString() + " to: " + toDate.toString());
-			String query = "SELECT DISTINCT "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY)
-					+ " WHERE time >= " + getNanoTime(fromDate, false) + " AND time <= " + getNanoTime(toDate, false)
-					+ " AND " + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_EMPLOYEE_KEY)
-					+ "='" + request.getEmployee() + "'";
-
-			List<List<Object>> values = executeQuery(query);
-			if (values == null || values.isEmpty() || values.get(0) == null || values.get(0).isEmpty()
-					|| values.get(0).size() < 2 || values.get(0).get(1) == null) {
-				return;
-			}
-
-			Set<String> projects = values.stream().map(row -> (String) row.get(1)).collect(Collectors.toSet());
-			projects.remove(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_WE_KEY));
-			projects.remove(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY));
-			projects.remove(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY));
+			Set<String> projects = retrieveProjects(request.getEmployee(), fromDate, toDate);
+			projects.remove(schema.getWeekendValue());
+			projects.remove(schema.getProjectRemovedValue());
+			projects.remove(schema.getNotAvailableValue());
 			if (projects.size() != 1) {
-				return;
+				return CompletableFuture.completedFuture(null);
 			}
 
 			String projectInDB = projects.stream().findFirst().get();
 			if (!projectInDB.equals(request.getProject())) {
-				return;
+				return CompletableFuture.completedFuture(null);
 			}
 
-			String naProject = PropertiesService.getInstance()
-					.getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY);
+			String naProject = schema.getProjectRemovedValue();
 			double dailyRate = 0.0;
 			double expenses = 0.0;
-			String bookingStatus = PropertiesService.getInstance()
-					.getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY);
+			String bookingStatus = schema.getProjectRemovedValue();
 			String notes = "";
-			String color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_DEFAULT_KEY);
+			String color = schema.getDefaultColor();
 
 			ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
 			builder.employee(request.getEmployee()).project(naProject).status(bookingStatus).rate(dailyRate)
 					.from(fromDate).to(toDate).daysOfWeek(new HashSet<>(Arrays.asList(DayOfWeek.values())))
 					.skipHolidays(false).skipEvents(false).color(color).notes(notes).expenses(expenses);
 
-			assignProjects(builder.build());
+			// the project may be gone entirely once the removal has been written
+			return assignProjects(builder.build()).thenRun(projectCatalog::invalidate);
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Retrieves the distinct projects assigned to the given employee in the given
+	 * period.
+	 * 
+	 * @param employee
+	 *            employee
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return projects
+	 */
+	private Set<String> retrieveProjects(String employee, LocalDate from, LocalDate to) {
+		DayGridIndex grid = projectGrid();
+		if (null != grid) {
+			return grid.getProjects(employee, from, to);
+		}
+		List<List<Object>> values = executeQuery(queries().projectsInPeriod, getNanoTime(from, false),
+				getNanoTime(to, false), employee);
+		if (null == values) {
+			return new HashSet<>();
+		}
+		return values.stream().map(row -> (String) row.get(1)).filter(Objects::nonNull).collect(Collectors.toSet());
+	}
+
+	/**
+	 * Delete unassigned project.
+	 * 
+	 * @param request
+	 *            deletion request
+	 * @return future that completes once the project has been deleted.
+	 */
+	public CompletableFuture<Void> deleteUnassignedProject(ProjectDeleteRequest request) {
+		return deleteUnassignedProjects(Collections.singletonList(request));
+	}
+
+	/**
+	 * Deletes several unassigned projects with one query for their bounds and
+	 * one multi-statement delete.
+	 * 
+	 * @param requests
+	 *            deletion requests, the employee being the index
+	 * @return future that completes once the projects have been deleted.
+	 */
+	public CompletableFuture<Void> deleteUnassignedProjects(List<ProjectDeleteRequest> requests) {
+		List<UnassignedRange> ranges = new ArrayList<>(requests.size());
+		for (ProjectDeleteRequest request : requests) {
+			LocalDate fromDate = dateFromMillis(request.getStart());
+			LocalDate toDate = dateFromMillis(request.getStart() + request.getDuration()).minusDays(1);
+			ranges.add(new UnassignedRange(request.getProject(), fromDate, toDate, request.getEmployee()));
+		}
+		return deleteUnassignedRanges(ranges);
+	}
+
+	/**
+	 * Overwrites the given project with an empty entry.
+	 * 
+	 * @param project
+	 *            project to overwrite
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return future that completes once the project has been deleted.
+	 */
+	public CompletableFuture<Void> deleteUnassignedProject(String project, LocalDate from, LocalDate to,
+			String idx) {
+		return deleteUnassignedRanges(Collections.singletonList(new UnassignedRange(project, from, to, idx)));
+	}
+
+	/**
+	 * Deletes the entries of unassigned projects once the writes handed to the
+	 * writer before have been written. Influx applies deletes immediately, so a
+	 * queued or spooled entry of a range would otherwise be written after the
+	 * delete and bring the deleted project back.
+	 * 
+	 * @param ranges
+	 *            ranges to delete
+	 * @return future that completes once the entries have been deleted.
+	 */
+	private CompletableFuture<Void> deleteUnassignedRanges(List<UnassignedRange> ranges) {
+		if (ranges.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> written;
+		synchronized (writeOrderLock) {
+			written = pendingWrites;
+		}
+		return written.thenRunAsync(() -> deleteWrittenUnassignedRanges(ranges),
+				ExecutorRegistry.getInstance().get(ExecutorRegistry.INFLUX_IO));
+	}
+
+	/**
+	 * Deletes the entries of unassigned projects. The first and last entry per
+	 * index of all ranges are retrieved with a single multi-statement query, the
+	 * entries between them are deleted with a single multi-statement delete.
+	 * 
+	 * @param ranges
+	 *            ranges to delete
+	 */
+	private void deleteWrittenUnassignedRanges(List<UnassignedRange> ranges) {
+		// Monitoring
+		String spanName = this.getClass().getSimpleName() + ".deleteUnassignedProject";
+		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
+		if (ranges.size() == 1) {
+			UnassignedRange range = ranges.get(0);
+			s_this.setTag(JaegerUtil.T_PROJECT, range.project);
+			s_this.setTag(JaegerUtil.T_INDEX, range.index);
+			s_this.setTag(JaegerUtil.T_FROM, range.from.toString());
+			s_this.setTag(JaegerUtil.T_TO, range.to.toString());
+		} else {
+			s_this.setTag(JaegerUtil.T_COUNT, ranges.size());
+		}
+		try {
+			// Logic
+			final String indexTag = InfluxSchema.get().getIndexTag();
+			final InfluxQueries queries = queries();
+
+			StringBuilder boundsQuery = new StringBuilder();
+			for (UnassignedRange range : ranges) {
+				long nanoFromTime = getNanoTime(range.from, false);
+				long nanoToTime = getNanoTime(range.to, false);
+				if (boundsQuery.length() > 0) {
+					boundsQuery.append("; ");
+				}
+				if (null == range.index) {
+					boundsQuery.append(queries.unassignedProjectBounds.bind(nanoFromTime, nanoToTime, range.project,
+							nanoFromTime, nanoToTime, range.project));
+				} else {
+					boundsQuery.append(queries.unassignedProjectBoundsAtIndex.bind(nanoFromTime, nanoToTime,
+							range.index, range.project, nanoFromTime, nanoToTime, range.index, range.project));
+				}
+			}
+			List<Result> bounds = executeStatements(queries.unassignedProjectBounds, boundsQuery.toString());
+
+			// two results per range: first and last entry per index in epoch milli seconds
+			List<Object[]> deletions = new ArrayList<>();
+			for (int i = 0; i + 1 < bounds.size(); i += 2) {
+				Map<String, Long> firstByIndex = new HashMap<>();
+				for (Series series : seriesOf(bounds.get(i))) {
+					firstByIndex.put(series.getTags().get(indexTag), epochMillis(series));
+				}
+				for (Series series : seriesOf(bounds.get(i + 1))) {
+					String index = series.getTags().get(indexTag);
+					Long first = firstByIndex.get(index);
+					if (null != first) {
+						long last = epochMillis(series);
+						deletions.add(new Object[] { index, first * (NANO / MILLI), last * (NANO / MILLI) });
+					}
+				}
+			}
+			if (deletions.isEmpty()) {
+				return;
+			}
+			executeStatements(queries.deleteUnassignedProjectDays,
+					queries.deleteUnassignedProjectDays.bindEach(deletions));
+
+			LaneIndex lanes = laneIndex;
+			if (null != lanes) {
+				applyIndexUpdate(() -> {
+					for (Object[] deletion : deletions) {
+						lanes.release(Integer.parseInt((String) deletion[0]),
+								TimeCodec.localEpochDayFromMillis((Long) deletion[1] / (NANO / MILLI)),
+								TimeCodec.localEpochDayFromMillis((Long) deletion[2] / (NANO / MILLI)));
+					}
+				});
+			}
+			// the project may be gone entirely
+			unassignedProjectCatalog.invalidate();
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * @return series of the given result, empty if there are none
+	 */
+	private static List<Series> seriesOf(Result result) {
+		return null == result.getSeries() ? Collections.emptyList() : result.getSeries();
+	}
+
+	/**
+	 * @return time of the single row of the given series in epoch milli seconds
+	 */
+	private static long epochMillis(Series series) {
+		return ((Number) series.getValues().get(0).get(0)).longValue();
+	}
+
+	/**
+	 * Unassigned project entries to delete.
+	 */
+	private static final class UnassignedRange {
+		private final String project;
+		private final LocalDate from;
+		private final LocalDate to;
+		private final String index;
+
+		private UnassignedRange(String project, LocalDate from, LocalDate to, String index) {
+			this.project = project;
+			this.from = from;
+			this.to = to;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Expands the stored assignment ranges into daily points from the current
+	 * materialization horizon up to {@link #materializeDays} days ahead of today.
+	 * Ranges are replayed in the order they have been written, so later ranges
+	 * override earlier ones.
+	 */
+	private void materializeAssignmentRanges() {
+		// Monitoring
+		String spanName = this.getClass().getSimpleName() + ".materializeAssignmentRanges";
+		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
+		try {
+			// Logic
+			// ranges and events are queried outside of the lock so that
+			// assignments are not blocked by the queries or a stuck write. If
+			// ranges have been written meanwhile, the queries are repeated.
+			for (int attempt = 0; attempt < MATERIALIZE_ATTEMPTS; attempt++) {
+				CompletableFuture<Void> pendingRangeWrite;
+				LocalDate from;
+				synchronized (rangeLock) {
+					pendingRangeWrite = lastRangeWrite;
+					from = materializedUntil.plusDays(1);
+				}
+				LocalDate to = LocalDate.now().plusDays(materializeDays);
+				if (to.isBefore(from)) {
+					return;
+				}
+				// ranges written so far have to be visible to the query
+				try {
+					pendingRangeWrite.get(RANGE_WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					LOGGER.warn("Range writes still pending. Skipping the materialization of assignment ranges.");
+					s_this.log("Skipped: range writes pending");
+					return;
+				} catch (ExecutionException e) {
+					throw new CompletionException(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+
+				List<ProjectAssignment> visibleRanges = new ArrayList<>();
+				for (ProjectAssignment range : retrieveAssignmentRanges(from, to)) {
+					ProjectAssignment visible = clipAssignment(range, from, to);
+					if (null != visible) {
+						visibleRanges.add(visible);
+					}
+				}
+				Map<String, Set<LocalDate>> eventsByEmployee = retrieveNonProjectEventsForSkipping(visibleRanges);
+
+				synchronized (rangeLock) {
+					if (lastRangeWrite != pendingRangeWrite) {
+						continue;
+					}
+					s_this.setTag(JaegerUtil.T_FROM, from.toString());
+					s_this.setTag(JaegerUtil.T_TO, to.toString());
+					InfluxBatch batch = newBatch();
+					for (ProjectAssignment visible : visibleRanges) {
+						assignProject(visible, batch, eventsByEmployee.get(visible.getEmployee()));
+					}
+					lastRangeWrite = writeToInflux(batch);
+					materializedUntil = to;
+					return;
+				}
+			}
+			LOGGER.warn("Ranges written meanwhile. Skipping the materialization of assignment ranges.");
+			s_this.log("Skipped: range writes pending");
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed materializing assignment ranges.", e);
+			s_this.log("Error: " + e.getMessage());
 		} finally {
 			// Monitoring
 			s_this.deactivate();
@@ -389,158 +1426,178 @@ public class InfluxService {
 	}
 
 	/**
-	 * Delete unassigned project.
+	 * Retrieves the assignment ranges overlapping the given period in the order
+	 * they have been written.
 	 * 
-	 * @param request
-	 *            deletion request
+	 * @param from
+	 *            from date
+	 * @param to
+	 *            to date
+	 * @return assignment ranges
 	 */
-	public void deleteUnassignedProject(ProjectDeleteRequest request) {
-		LocalDate fromDate = dateFromMillis(request.getStart());
-		LocalDate toDate = dateFromMillis(request.getStart() + request.getDuration()).minusDays(1);
-		deleteUnassignedProject(request.getProject(), fromDate, toDate, request.getEmployee());
+	private List<ProjectAssignment> retrieveAssignmentRanges(LocalDate from, LocalDate to) {
+		final InfluxSchema schema = InfluxSchema.get();
+		List<ProjectAssignment> ranges = new ArrayList<>();
+		streamQuery(queries().assignmentRanges, (series, row) -> {
+			List<String> columns = series.getColumns();
+			ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
+			builder.employee((String) row.get(columns.indexOf(schema.getEmployeeTag())))
+					.from(LocalDate.ofEpochDay(((Number) row.get(columns.indexOf(schema.getFromDayField()))).longValue()))
+					.to(LocalDate.ofEpochDay(((Number) row.get(columns.indexOf(schema.getToDayField()))).longValue()))
+					.daysOfWeek(ProjectAssignment.fromDaysOfWeekMask(
+							((Number) row.get(columns.indexOf(schema.getDaysOfWeekField()))).intValue()))
+					.skipHolidays(Boolean.TRUE.equals(row.get(columns.indexOf(schema.getSkipHolidaysField()))))
+					.skipEvents(Boolean.TRUE.equals(row.get(columns.indexOf(schema.getSkipEventsField()))))
+					.project(getString(row, columns.indexOf(schema.getProjectField())))
+					.status(getString(row, columns.indexOf(schema.getStatusField())))
+					.color(getString(row, columns.indexOf(schema.getColorField())))
+					.notes(getString(row, columns.indexOf(schema.getNotesField())));
+			int rateIdx = columns.indexOf(schema.getRateField());
+			if (rateIdx >= 0 && null != row.get(rateIdx)) {
+				builder.rate(((Number) row.get(rateIdx)).doubleValue());
+			}
+			int expensesIdx = columns.indexOf(schema.getDailyExpensesField());
+			if (expensesIdx >= 0 && null != row.get(expensesIdx)) {
+				builder.expenses(((Number) row.get(expensesIdx)).doubleValue());
+			}
+			ranges.add(builder.build());
+		}, from.toEpochDay(), to.toEpochDay());
+		return ranges;
 	}
 
 	/**
-	 * Overwrites the given project with an empty entry.
+	 * @param row
+	 *            result row
+	 * @param idx
+	 *            column index, negative if the column does not exist
+	 * @return string value of the column or null
+	 */
+	private String getString(List<Object> row, int idx) {
+		return idx >= 0 ? (String) row.get(idx) : null;
+	}
+
+	/**
+	 * Restricts the given project assignment to the given period.
 	 * 
-	 * @param project
-	 *            project to overwrite
+	 * @param projectAssignment
+	 *            project assignment
 	 * @param from
 	 *            from date
 	 * @param to
 	 *            to date
+	 * @return restricted copy or null if the assignment lies outside of the period
 	 */
-	public void deleteUnassignedProject(String project, LocalDate from, LocalDate to, String idx) {
-		// Monitoring
-		String spanName = this.getClass().getSimpleName() + ".deleteUnassignedProject";
-		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
-		s_this.setTag(JaegerUtil.T_PROJECT, project);
-		s_this.setTag(JaegerUtil.T_INDEX, idx);
-		s_this.setTag(JaegerUtil.T_FROM, from.toString());
-		s_this.setTag(JaegerUtil.T_TO, to.toString());
-		try {
-			// Logic
-			long nanoFromTime = getNanoTime(from, false);
-			long nanoToTime = getNanoTime(to, false);
-
-			// retrieve the existing entry for the given project
-			String idxQuery = (idx == null) ? ""
-					: (" AND " + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY)
-							+ "='" + idx + "'");
-			String query = "SELECT time,"
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY) + ","
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY)
-					+ " WHERE time >= " + String.valueOf(nanoFromTime) + " AND time <= " + String.valueOf(nanoToTime)
-					+ idxQuery + " AND "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + "='"
-					+ project + "' GROUP BY "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY);
-
-			List<Series> seriesList = executeMultiSeriesQuery(query);
-
-			for (Series series : seriesList) {
-				List<List<Object>> values = series.getValues();
-				if (null == values) {
-					continue;
-				}
-				String index = series.getTags()
-						.get(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY));
-
-				LocalDate minDate = LocalDate.now().plusYears(1000);
-				LocalDate maxDate = LocalDate.now().minusYears(1000);
-				for (List<Object> row : values) {
-					LocalDate current = LocalDate.parse((String) row.get(0), DateTimeFormatter.ISO_DATE_TIME);
-					if (current.isBefore(minDate)) {
-						minDate = current;
-					}
-					if (current.isAfter(maxDate)) {
-						maxDate = current;
-					}
-				}
-
-				long nanoMinTime = getNanoTime(minDate, false);
-				long nanoMaxTime = getNanoTime(maxDate, false);
-
-				String deleteQuery = "DELETE FROM "
-						+ PropertiesService.getInstance()
-								.getProperty(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY)
-						+ " WHERE " + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY)
-						+ "='" + index + "' AND time >= " + String.valueOf(nanoMinTime) + " AND time <= "
-						+ String.valueOf(nanoMaxTime);
-				executeQuery(deleteQuery);
-
-			}
-		} finally {
-			// Monitoring
-			s_this.deactivate();
+	private ProjectAssignment clipAssignment(ProjectAssignment projectAssignment, LocalDate from, LocalDate to) {
+		LocalDate clippedFrom = projectAssignment.getFrom().isBefore(from) ? from : projectAssignment.getFrom();
+		LocalDate clippedTo = projectAssignment.getTo().isAfter(to) ? to : projectAssignment.getTo();
+		if (clippedTo.isBefore(clippedFrom)) {
+			return null;
+		}
+		if (clippedFrom.equals(projectAssignment.getFrom()) && clippedTo.equals(projectAssignment.getTo())) {
+			return projectAssignment;
+		}
+		ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
+		builder.employee(projectAssignment.getEmployee()).project(projectAssignment.getProject())
+				.status(projectAssignment.getStatus()).color(projectAssignment.getColor())
+				.notes(projectAssignment.getNotes()).daysOfWeek(projectAssignment.getDaysOfWeek())
+				.skipHolidays(projectAssignment.isSkipHolidays()).skipEvents(projectAssignment.isSkipEvents())
+				.from(clippedFrom).to(clippedTo);
+		// rate and expenses are optional
+		if (null != projectAssignment.getRate()) {
+			builder.rate(projectAssignment.getRate());
+		}
+		if (null != projectAssignment.getExpenses()) {
+			builder.expenses(projectAssignment.getExpenses());
 		}
+		return builder.build();
+	}
+
+	/**
+	 * @return unique timestamp for the next range record
+	 */
+	private long nextRangeNanoTime() {
+		long now = System.currentTimeMillis() * (NANO / MILLI);
+		return lastRangeNanoTime.updateAndGet(last -> Math.max(now, last + 1));
 	}
 
 	/**
-	 * Creates weekend, public holidays and calendar entries into influx.
+	 * Writes the weekend, public holiday and calendar entries of the given
+	 * employee that are missing up to the given day. Employees without entries
+	 * start {@link #EPSILON_WE_MONTHS} months before today. Waits until the
+	 * startup state has been loaded. The days are claimed before writing, so
+	 * concurrent calls do not write them twice, and released again if the write
+	 * fails.
 	 * 
 	 * @param employee
 	 *            the employee for whome to create the entries.
-	 * @param from
-	 *            from date
-	 * @param to
-	 *            to date
+	 * @param until
+	 *            last day to cover
+	 * @return future that completes once the entries have been written.
 	 */
-	public void createWeekEndsAndPublicHolidays(String employee, LocalDate from, LocalDate to) {
+	public CompletableFuture<Void> extendCalendar(String employee, LocalDate until) {
 		// Monitoring
-		String spanName = this.getClass().getSimpleName() + ".createWeekEndsAndPublicHolidays";
+		String spanName = this.getClass().getSimpleName() + ".extendCalendar";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
 		s_this.setTag(JaegerUtil.T_EMPLOYEE, employee);
+		s_this.setTag(JaegerUtil.T_TO, until.toString());
 		try {
 			// Logic
-			BatchPoints batchPoints = BatchPoints
-					.database(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY))
-					.retentionPolicy(
-							PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_RETENTION_POLICY_KEY))
-					.consistency(ConsistencyLevel.ALL).build();
-			LocalDate current = from.minusMonths(EPSILON_WE_MONTHS);
-			LocalDate lastWeekEndEntry = lastWeekendAndHolidayEntryMap.get(employee);
-			LocalDate tmpLastCalendarEntry = lastCalendarEntry;
-			while (!current.isAfter(to.plusMonths(EPSILON_WE_MONTHS))) {
-				if (current.isAfter(lastWeekEndEntry)) {
+			ready.join();
+			final InfluxSchema schema = InfluxSchema.get();
+			InfluxBatch batch = newBatch();
+			LocalDate previousEntry;
+			boolean claimedEmployeeDays = false;
+			synchronized (calendarLock(employee)) {
+				previousEntry = lastWeekendAndHolidayEntryMap.get(employee);
+				LocalDate current = null == previousEntry ? LocalDate.now().minusMonths(EPSILON_WE_MONTHS)
+						: previousEntry.plusDays(1);
+				HolidayYear holidays = null;
+				while (!current.isAfter(until)) {
+					holidays = holidayYear(holidays, current);
 
 					EventBuilder eventBuilder = new EventBuilder();
 					eventBuilder.employee(employee);
 					boolean workingDay = false;
 
-					if (null != getPublicHoliday(current)) {
-						eventBuilder.event(
-								PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY));
-						eventBuilder.color(
-								PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_NA_KEY));
-						eventBuilder.notes(getPublicHoliday(current).getName());
-					} else if (current.getDayOfWeek().equals(DayOfWeek.SATURDAY)
-							|| current.getDayOfWeek().equals(DayOfWeek.SUNDAY)) {
-						eventBuilder.event(
-								PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_WE_KEY));
-						eventBuilder.color(
-								PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_WE_KEY));
-					} else {
+					if (!holidays.isNonWorkingDay(current.toEpochDay())) {
 						workingDay = true;
+					} else if (holidays.isHoliday(current.toEpochDay())) {
+						eventBuilder.event(schema.getNotAvailableValue());
+						eventBuilder.color(schema.getNotAvailableColor());
+						eventBuilder.notes(holidays.getHoliday(current).getName());
+					} else {
+						eventBuilder.event(schema.getWeekendValue());
+						eventBuilder.color(schema.getWeekEndColor());
 					}
 
-					Point point = createProjectAssignmentInfluxPoint(eventBuilder.build(), current, true, workingDay);
-					batchPoints.point(point);
-					lastWeekEndEntry = current;
+					batch.addProjectPoint(eventBuilder.build(), getYearMonth(current), getNanoTime(current, true),
+							workingDay);
+					current = current.plusDays(1);
 				}
-				if (current.isAfter(tmpLastCalendarEntry)) {
-					createCalendarEntry(batchPoints, current);
-					tmpLastCalendarEntry = current;
+				if (null != holidays) {
+					lastWeekendAndHolidayEntryMap.put(employee, until);
+					claimedEmployeeDays = true;
 				}
+			}
 
+			LocalDate firstCalendarDay = claimCalendarDays(until);
+			LocalDate current = firstCalendarDay;
+			while (null != current && !current.isAfter(until)) {
+				createCalendarEntry(batch, current);
 				current = current.plusDays(1);
 			}
 
-			writeToInflux(batchPoints);
-
-			lastWeekendAndHolidayEntryMap.put(employee, lastWeekEndEntry);
-			lastCalendarEntry = tmpLastCalendarEntry;
+			if (batch.size() == 0) {
+				return CompletableFuture.completedFuture(null);
+			}
+			employeeCatalog.add(employee);
+			CompletableFuture<Void> written = writeToInflux(batch);
+			boolean releaseEmployeeDays = claimedEmployeeDays;
+			written.exceptionally(throwable -> {
+				releaseCalendarDays(employee, releaseEmployeeDays, previousEntry, firstCalendarDay);
+				return null;
+			});
+			return written;
 		} finally {
 			// Monitoring
 			s_this.deactivate();
@@ -548,12 +1605,13 @@ public class InfluxService {
 	}
 
 	/**
-	 * Writes monthly report data.
+	 * Writes monthly report data. The estimate is calculated in the background.
 	 * 
 	 * @param actualDataPoint
 	 *            data to write
+	 * @return future that completes once the data has been written.
 	 */
-	public void enterMonthReportData(MonthReportDataPoint actualDataPoint) {
+	public CompletableFuture<Void> enterMonthReportData(MonthReportDataPoint actualDataPoint) {
 		// Monitoring
 		String spanName = this.getClass().getSimpleName() + ".enterMonthReportData";
 		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
@@ -566,55 +1624,117 @@ public class InfluxService {
 		s_this.setTag(JaegerUtil.T_UTILIZATION, actualDataPoint.getUtilization());
 		try {
 			// Logic
-			String yearMonth = actualDataPoint.getYearMonth();
-			String[] ymArray = yearMonth.split("-");
-			LocalDate date = LocalDate.of(Integer.parseInt(ymArray[0]), Integer.parseInt(ymArray[1]), 1);
-
-			BatchPoints batchPoints = BatchPoints
-					.database(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY))
-					.retentionPolicy(
-							PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_RETENTION_POLICY_KEY))
-					.consistency(ConsistencyLevel.ALL).build();
-			Builder pointBuilder = Point
-					.measurement(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_VALIDATION_KEY))
-					.time(getNanoTime(date, false), TimeUnit.NANOSECONDS)
-					.tag(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_YEAR_MONTH_KEY),
-							yearMonth);
-			MonthReportDataPoint estimatedDataPoint = calculateEstimatedDataPoint(yearMonth);
-			writeReportData(pointBuilder, actualDataPoint);
-			writeReportData(pointBuilder, estimatedDataPoint);
-			batchPoints.point(pointBuilder.build());
-			writeToInflux(batchPoints);
+			return writeMonthReportData(Collections.singletonList(actualDataPoint));
 		} finally {
 			// Monitoring
 			s_this.deactivate();
 		}
 	}
 
+	/**
+	 * Writes the report data of many months, e.g. to backfill the actuals of
+	 * past years. The estimates of all months are calculated in parallel and all
+	 * months are written in one batch. All estimates use the costs known before
+	 * the new actuals, as if the months had been entered one by one.
+	 * 
+	 * @param actualDataPoints
+	 *            data to write, one per month
+	 * @return future that completes once the data has been written.
+	 */
+	public CompletableFuture<Void> enterMonthReportData(List<MonthReportDataPoint> actualDataPoints) {
+		// Monitoring
+		String spanName = this.getClass().getSimpleName() + ".enterMonthReportData";
+		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan(spanName);
+		s_this.setTag(JaegerUtil.T_COUNT, actualDataPoints.size());
+		try {
+			// Logic
+			return writeMonthReportData(actualDataPoints);
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Calculates the estimates of the given months in parallel and writes them
+	 * together with the actuals in one batch. Updates the cost statistics once
+	 * the batch has been written.
+	 * 
+	 * @param actualDataPoints
+	 *            data to write
+	 * @return future that completes once the data has been written.
+	 */
+	private CompletableFuture<Void> writeMonthReportData(List<MonthReportDataPoint> actualDataPoints) {
+		if (actualDataPoints.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		ExecutorService executor = ExecutorRegistry.getInstance().get(ExecutorRegistry.INFLUX_IO);
+		List<CompletableFuture<Point>> points = new ArrayList<>(actualDataPoints.size());
+		for (MonthReportDataPoint actualDataPoint : actualDataPoints) {
+			String yearMonth = actualDataPoint.getYearMonth();
+			points.add(CompletableFuture.supplyAsync(() -> monthReportPoint(actualDataPoint,
+					calculateEstimatedDataPoint(yearMonth, retrieveCostsReportData(yearMonth))), executor));
+		}
+		return CompletableFuture.allOf(points.toArray(new CompletableFuture<?>[points.size()])).thenCompose(done -> {
+			InfluxBatch batch = newBatch();
+			for (CompletableFuture<Point> point : points) {
+				batch.addPoint(point.join());
+			}
+			return writeToInflux(batch);
+		}).thenRun(() -> {
+			synchronized (costStatisticsLock) {
+				// statistics loaded later include the written actuals
+				if (null != costStatistics) {
+					for (MonthReportDataPoint actualDataPoint : actualDataPoints) {
+						costStatistics.put(actualDataPoint.getYearMonth(), actualDataPoint.getCosts());
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Builds the validation point of a month holding the actual and the
+	 * estimated figures.
+	 * 
+	 * @param actualDataPoint
+	 *            actual figures
+	 * @param estimatedDataPoint
+	 *            estimated figures
+	 * @return point
+	 */
+	private Point monthReportPoint(MonthReportDataPoint actualDataPoint, MonthReportDataPoint estimatedDataPoint) {
+		final InfluxSchema schema = InfluxSchema.get();
+		String yearMonth = actualDataPoint.getYearMonth();
+		String[] ymArray = yearMonth.split("-");
+		LocalDate date = LocalDate.of(Integer.parseInt(ymArray[0]), Integer.parseInt(ymArray[1]), 1);
+
+		Builder pointBuilder = Point
+				.measurement(schema.getValidationMeasurement())
+				.time(getNanoTime(date, false), TimeUnit.NANOSECONDS)
+				.tag(schema.getYearMonthTag(),
+						yearMonth);
+		writeReportData(pointBuilder, actualDataPoint);
+		writeReportData(pointBuilder, estimatedDataPoint);
+		return pointBuilder.build();
+	}
+
 	/**
 	 * Calculates estimated data point from data in influx.
 	 * 
 	 * @param yearMonth
 	 *            the month for which the data point shell be calculated.
+	 * @param costs
+	 *            monthly costs
 	 * @return data point
 	 */
-	private MonthReportDataPoint calculateEstimatedDataPoint(String yearMonth) {
-		double costs = retrieveCostsReportData();
-		String query = "SELECT 100*(count("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY) + ")-count("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_WORKINGDAY_KEY) + "))/count("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_WORKINGDAY_KEY) + "), sum("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_DAILY_EXPENSES_KEY) + "),sum("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY) + "), (sum("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY) + ")-"
-				+ String.valueOf(costs) + "), (100-(100*" + String.valueOf(costs) + "/(sum("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY) + ")))) FROM "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY) + " WHERE "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_YEAR_MONTH_KEY) + "='"
-				+ yearMonth + "' AND ("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY) + " > 0 OR "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_WORKINGDAY_KEY) + "=true)";
-		List<List<Object>> values = executeQuery(query);
+	private MonthReportDataPoint calculateEstimatedDataPoint(String yearMonth, double costs) {
+		MonthlyRollups currentRollups = rollups();
+		MonthlyRollups.Rollup rollup = null == currentRollups ? null : currentRollups.getMonth(yearMonth);
+		if (null != rollup) {
+			return estimateFromRollup(yearMonth, rollup, costs);
+		}
+		List<List<Object>> values = executeQuery(queries().estimatedMonth, costs, costs, yearMonth);
 		if (null == values || null == values.get(0)) {
 			MonthReportDataPoint defaultDP = MonthReportDataPoint.getDefault(yearMonth);
 			defaultDP.setType(Type.ESTIMATED);
@@ -634,6 +1754,37 @@ public class InfluxService {
 		return estimatedDataPoint;
 	}
 
+	/**
+	 * Calculates the estimated figures of a month from its rollup the same way
+	 * the estimate query aggregates the daily points.
+	 * 
+	 * @param yearMonth
+	 *            year-month
+	 * @param rollup
+	 *            rollup of the month
+	 * @param costs
+	 *            monthly costs
+	 * @return estimated data point
+	 */
+	private MonthReportDataPoint estimateFromRollup(String yearMonth, MonthlyRollups.Rollup rollup, double costs) {
+		if (rollup.getPoints() == 0) {
+			MonthReportDataPoint defaultDP = MonthReportDataPoint.getDefault(yearMonth);
+			defaultDP.setType(Type.ESTIMATED);
+			return defaultDP;
+		}
+		MonthReportDataPoint estimatedDataPoint = new MonthReportDataPoint();
+		estimatedDataPoint.setYearMonth(yearMonth);
+		estimatedDataPoint.setUtilization(rollup.getUtilization());
+		estimatedDataPoint.setExpenses(rollup.getExpenses());
+		estimatedDataPoint.setRevenue(rollup.getRevenue());
+		estimatedDataPoint.setProfit(rollup.getRevenue() - costs);
+		// influx divides by zero to zero
+		estimatedDataPoint.setRetrunOnSales(100 - (rollup.getRevenue() == 0 ? 0.0 : 100 * costs / rollup.getRevenue()));
+		estimatedDataPoint.setCosts(costs);
+		estimatedDataPoint.setType(Type.ESTIMATED);
+		return estimatedDataPoint;
+	}
+
 	/**
 	 * Writes report data.
 	 * 
@@ -643,62 +1794,146 @@ public class InfluxService {
 	 *            data point to write
 	 */
 	private void writeReportData(Builder pointBuilder, MonthReportDataPoint dataPoint) {
+		final InfluxSchema schema = InfluxSchema.get();
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_EXPENSES_KEY),
+						+ schema.getExpensesField(),
 				dataPoint.getExpenses());
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_COSTS_KEY),
+						+ schema.getCostsField(),
 				dataPoint.getCosts());
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_REVENUE_KEY),
+						+ schema.getRevenueField(),
 				dataPoint.getRevenue());
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROFIT_KEY),
+						+ schema.getProfitField(),
 				dataPoint.getProfit());
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_UTILIZATION_KEY),
+						+ schema.getUtilizationField(),
 				dataPoint.getUtilization());
 		pointBuilder.addField(
 				dataPoint.getType().toString()
-						+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RETURN_KEY),
+						+ schema.getReturnField(),
 				dataPoint.getRetrunOnSales());
 	}
 
 	/**
-	 * Calculates costs from historical data.
+	 * Calculates costs from historical data as the mean of the actual costs of
+	 * the configured number of months before the given month, or of all
+	 * reported months if no window is configured.
+	 * 
+	 * @param yearMonth
+	 *            estimated month
+	 * @return costs, zero if no actual costs have been reported (before the
+	 *         month)
+	 */
+	private double retrieveCostsReportData(String yearMonth) {
+		return costStatistics().getMean(yearMonth, costsWindowMonths);
+	}
+
+	/**
+	 * Returns the cost statistics, loading them if they have not been loaded
+	 * yet. Callers wait while the statistics are loaded.
+	 * 
+	 * @return cost statistics
+	 */
+	private CostStatistics costStatistics() {
+		synchronized (costStatisticsLock) {
+			if (null == costStatistics) {
+				costStatistics = loadCostStatistics();
+			}
+			return costStatistics;
+		}
+	}
+
+	/**
+	 * Loads the actual costs of all reported months.
 	 * 
-	 * @return costs
+	 * @return cost statistics
 	 */
-	private double retrieveCostsReportData() {
+	private CostStatistics loadCostStatistics() {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".loadCostStatistics");
 		try {
-			String query = "SELECT MEAN(" + Type.ACTUAL.toString()
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_COSTS_KEY) + ") FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_VALIDATION_KEY);
-			List<List<Object>> values = executeQuery(query);
+			// Logic
+			final String yearMonthTag = InfluxSchema.get().getYearMonthTag();
+			CostStatistics loaded = new CostStatistics();
+			streamQuery(queries().actualCosts, (series, row) -> {
+				if (null != row.get(1)) {
+					loaded.put(series.getTags().get(yearMonthTag), ((Number) row.get(1)).doubleValue());
+				}
+			});
+			s_this.setTag(JaegerUtil.T_COUNT, loaded.getMonths());
+			return loaded;
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Returns the lock stripe guarding the weekend and public holiday entries of
+	 * the given employee.
+	 * 
+	 * @param employee
+	 *            employee
+	 * @return lock
+	 */
+	private Object calendarLock(String employee) {
+		return calendarLocks[Math.floorMod(Objects.hashCode(employee), calendarLocks.length)];
+	}
 
-			return (Double) values.get(0).get(1);
-		} catch (Exception e) {
-			return 0.0;
+	/**
+	 * Advances the last calendar entry to the given day.
+	 * 
+	 * @param until
+	 *            last day to cover
+	 * @return first day the caller has to write or null if the calendar already
+	 *         covers the given day
+	 */
+	private LocalDate claimCalendarDays(LocalDate until) {
+		while (true) {
+			LocalDate last = lastCalendarEntry.get();
+			if (!until.isAfter(last)) {
+				return null;
+			}
+			if (lastCalendarEntry.compareAndSet(last, until)) {
+				return last.plusDays(1);
+			}
 		}
 	}
 
 	/**
-	 * Retrieves the date of the last calendar entry in influxDB.
+	 * Moves the last entries back to the days before a failed write, so the next
+	 * extension writes the claimed days again. Days written successfully by a
+	 * later extension in the meantime are written again as well.
 	 * 
-	 * @return date
+	 * @param employee
+	 *            employee
+	 * @param employeeDays
+	 *            indicates whether weekend and holiday days of the employee
+	 *            have been claimed
+	 * @param previousEntry
+	 *            last weekend and holiday entry of the employee before the
+	 *            claim, null if there has been none
+	 * @param firstCalendarDay
+	 *            first claimed calendar day, null if none has been claimed
 	 */
-	private LocalDate getLastCalendarEntry() {
-		String query = "SELECT LAST(value) FROM calendar";
-		List<List<Object>> values = executeQuery(query);
-		if (null == values || values.isEmpty()) {
-			return LocalDate.now().minusMonths(EPSILON_WE_MONTHS);
+	private void releaseCalendarDays(String employee, boolean employeeDays, LocalDate previousEntry,
+			LocalDate firstCalendarDay) {
+		if (employeeDays) {
+			lastWeekendAndHolidayEntryMap.computeIfPresent(employee,
+					(e, last) -> null == previousEntry ? null : (previousEntry.isBefore(last) ? previousEntry : last));
+		}
+		if (null != firstCalendarDay) {
+			lastCalendarEntry.accumulateAndGet(firstCalendarDay.minusDays(1),
+					(last, previous) -> previous.isBefore(last) ? previous : last);
 		}
-		return LocalDate.parse((String) values.get(0).get(0), DateTimeFormatter.ISO_DATE_TIME);
 	}
 
 	/**
@@ -706,59 +1941,44 @@ public class InfluxService {
 	 * 
 	 * @return date
 	 */
-	private LocalDate getLastWeekEndAndHolidayEntryForEmployee(String employee) {
-		String query = "SELECT LAST("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + ") FROM "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY) + " WHERE "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_EMPLOYEE_KEY) + " = '"
-				+ employee + "' AND ("
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " = '"
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY) + "' OR "
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " = '"
-				+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_WE_KEY) + "')";
-		List<List<Object>> values = executeQuery(query);
+	private LocalDate getLastCalendarEntry() {
+		List<List<Object>> values = executeQuery(queries().lastCalendarEntry);
 		if (null == values || values.isEmpty()) {
-			return LocalDate.now();
+			return LocalDate.now().minusMonths(EPSILON_WE_MONTHS);
 		}
-		return LocalDate.parse((String) values.get(0).get(0), DateTimeFormatter.ISO_DATE_TIME);
+		return LocalDate.ofEpochDay(TimeCodec.utcEpochDayFromMillis(((Number) values.get(0).get(0)).longValue()));
 	}
 
 	/**
 	 * Create calendar entry.
 	 * 
-	 * @param batchPoints
-	 *            batch points to add the points to
+	 * @param batch
+	 *            batch to add the points to
 	 * @param current
 	 *            current date.
 	 */
-	private void createCalendarEntry(BatchPoints batchPoints, LocalDate current) {
-		Calendar date = Calendar.getInstance(Locale.GERMANY);
-		date.setFirstDayOfWeek(Calendar.MONDAY);
-		date.set(current.getYear(), current.getMonthValue() - 1, current.getDayOfMonth(), WEEKEND_HOLIDAY_HOUR, 0, 0);
-		long nanoTime = getNanoTime(current, true);
-		Point pointM = Point.measurement("calendar").time(nanoTime, TimeUnit.NANOSECONDS).tag("type", "m")
-				.addField("value", date.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.GERMANY)).build();
-		Point pointD = Point.measurement("calendar").time(nanoTime, TimeUnit.NANOSECONDS).tag("type", "d")
-				.addField("value", String.valueOf(date.get(Calendar.DAY_OF_MONTH))).build();
-		Point pointW = Point.measurement("calendar").time(nanoTime, TimeUnit.NANOSECONDS).tag("type", "w")
-				.addField("value", String.valueOf(date.get(Calendar.WEEK_OF_YEAR))).build();
-
-		batchPoints.point(pointM);
-		batchPoints.point(pointD);
-		batchPoints.point(pointW);
+	private void createCalendarEntry(InfluxBatch batch, LocalDate current) {
+		long epochDay = current.toEpochDay();
+		long nanoTime = TimeCodec.toEpochNanos(epochDay, WEEKEND_HOLIDAY_HOUR);
+		batch.addCalendarPoint("m", MONTH_NAMES[TimeCodec.monthOf(epochDay) - 1], nanoTime);
+		batch.addCalendarPoint("d", NUMBERS[TimeCodec.dayOfMonth(epochDay)], nanoTime);
+		batch.addCalendarPoint("w", NUMBERS[TimeCodec.isoWeekOf(epochDay)], nanoTime);
 	}
 
 	/**
 	 * Retrieves the current available index for the given time range for unassigned
-	 * project.
+	 * project. With the lane index enabled the index is claimed right away, so
+	 * that concurrent callers get different indexes.
 	 * 
+	 * @param lanes
+	 *            lane index to claim the index in, null to query influx
 	 * @param from
 	 *            from date
 	 * @param to
 	 *            to date
 	 * @return available index
 	 */
-	private int retrieveAvailableIndex(LocalDate from, LocalDate to) {
+	private int retrieveAvailableIndex(LaneIndex lanes, LocalDate from, LocalDate to) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
 				.createNewActiveSpan(this.getClass().getSimpleName() + ".retrieveAvailableIndex");
@@ -768,23 +1988,17 @@ public class InfluxService {
 
 		try {
 			// Logic
-			long nanoFromTime = getNanoTime(from, false);
-			long nanoToTime = getNanoTime(to, false);
-			int index = 1;
-			String query = "SELECT " + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_INDEX_KEY)
-					+ "," + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY)
-					+ " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_UNASSIGNED_PROJECTS_KEY)
-					+ " WHERE time >= " + String.valueOf(nanoFromTime) + " AND time <= " + String.valueOf(nanoToTime);
-
-			List<List<Object>> values = executeQuery(query);
-
-			if (null == values) {
-				return index;
+			if (null != lanes) {
+				return lanes.claim(from.toEpochDay(), to.toEpochDay());
 			}
 
-			Set<Integer> indezes = values.stream().map(p -> Integer.parseInt((String) p.get(1)))
-					.collect(Collectors.toSet());
+			int index = 1;
+
+			long nanoFromTime = getNanoTime(from, false);
+			long nanoToTime = getNanoTime(to, false);
+			Set<Integer> indezes = new HashSet<>();
+			streamQuery(queries().unassignedIndexes, (series, row) -> indezes.add(Integer.parseInt((String) row.get(1))),
+					nanoFromTime, nanoToTime);
 
 			while (indezes.contains(index)) {
 				index++;
@@ -797,74 +2011,68 @@ public class InfluxService {
 	}
 
 	/**
-	 * Retrieve public holiday for given date.
+	 * Retrieve the public holidays of the year of the given date.
 	 * 
+	 * @param holidays
+	 *            holidays used for the previous date, may be null
 	 * @param date
-	 *            the date to retrieve the public holiday for.
-	 * @return public holiday object or null if no public holiday is available at
-	 *         that date.
+	 *            the date to retrieve the public holidays for.
+	 * @return the given holidays if they cover the date, otherwise the holidays of
+	 *         the year of the date.
 	 */
-	private Holiday getPublicHoliday(LocalDate date) {
-		return HolidayService.getInstance().getHolidays(date.getYear()).get(date);
+	private HolidayYear holidayYear(HolidayYear holidays, LocalDate date) {
+		if (null != holidays && holidays.contains(date.toEpochDay())) {
+			return holidays;
+		}
+		return holidayService.getHolidayYear(date.getYear());
 	}
 
 	/**
 	 * Retrieves dates for non project events including weekends, public holidays
-	 * and any custom events.
+	 * and any custom events for several employees with a single query.
 	 * 
 	 * @param from
 	 *            from date
 	 * @param to
 	 *            to date
-	 * @param employee
-	 *            employee as a filter
-	 * @return dates for non project events.
+	 * @param employees
+	 *            employees as a filter
+	 * @return dates for non project events per employee.
 	 */
-	private Set<LocalDate> getNonProjectEvents(LocalDate from, LocalDate to, String employee) {
+	private Map<String, Set<LocalDate>> getNonProjectEvents(LocalDate from, LocalDate to,
+			Collection<String> employees) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
 				.createNewActiveSpan(this.getClass().getSimpleName() + ".getNonProjectEvents");
 
-		s_this.setTag(JaegerUtil.T_EMPLOYEE, employee);
+		s_this.setTag(JaegerUtil.T_EMPLOYEE, employees.toString());
 		s_this.setTag(JaegerUtil.T_FROM, from.toString());
 		s_this.setTag(JaegerUtil.T_TO, to.toString());
 
 		try {
 
 			// Logic
-			long fromNanoTime = getNanoTime(from, true);
-			long toNanoTime = getNanoTime(to, true);
-
-			String query = "SELECT "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY) + " FROM "
-					+ PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY)
-					+ " WHERE time >= " + String.valueOf(fromNanoTime) + " AND time <= " + String.valueOf(toNanoTime)
-					+ " AND \"" + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_EMPLOYEE_KEY)
-					+ "\"='" + employee + "' AND ";
-
-			boolean first = true;
-			Set<String> projectsToExclude = new HashSet<>(Arrays.asList(PROJECTS_TO_EXCLUDE));
-			projectsToExclude.remove(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY));
-			for (String prj : projectsToExclude) {
-
-				if (!first) {
-					query += " OR";
-				} else {
-					query += " (";
-					first = false;
+			Map<String, Set<LocalDate>> result = new HashMap<>();
+			DayGridIndex grid = projectGrid();
+			if (null != grid) {
+				for (String employee : employees) {
+					Set<LocalDate> dates = grid.getEventDays(employee, from, to);
+					if (!dates.isEmpty()) {
+						result.put(employee, dates);
+					}
 				}
-				query += " \"" + PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY)
-						+ "\"='" + prj + "'";
+				return result;
 			}
-			query += " )";
-			List<List<Object>> values = executeQuery(query);
 
-			if (null == values) {
-				return new HashSet<LocalDate>();
-			}
-			return values.stream().map(row -> LocalDate.parse((String) row.get(0), DateTimeFormatter.ISO_DATE_TIME))
-					.collect(Collectors.toSet());
+			final InfluxSchema schema = InfluxSchema.get();
+			long fromNanoTime = getNanoTime(from, true);
+			long toNanoTime = getNanoTime(to, true);
+
+			streamQuery(queries().nonProjectEvents, (series, row) -> result
+					.computeIfAbsent(series.getTags().get(schema.getEmployeeTag()), employee -> new HashSet<>())
+					.add(LocalDate.ofEpochDay(TimeCodec.utcEpochDayFromIso((String) row.get(0)))), fromNanoTime,
+					toNanoTime, employees);
+			return result;
 		} finally {
 			// Monitoring
 			s_this.deactivate();
@@ -873,14 +2081,18 @@ public class InfluxService {
 	}
 
 	/**
-	 * Processes a single project assignment.
+	 * Processes a single project assignment with already known non-project
+	 * events.
 	 * 
 	 * @param projectAssignment
 	 *            Project assignment to process.
-	 * @param batchPoints
-	 *            Influx Batchpoints to add the assignment to.
+	 * @param batch
+	 *            Influx batch to add the assignment to.
+	 * @param datesToExclude
+	 *            dates of non-project events, only used if events are skipped.
 	 */
-	private void assignProject(final ProjectAssignment projectAssignment, final BatchPoints batchPoints) {
+	private void assignProject(final ProjectAssignment projectAssignment, final InfluxBatch batch,
+			final Set<LocalDate> datesToExclude) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
 				.createNewActiveSpan(this.getClass().getSimpleName() + ".assignProject");
@@ -893,19 +2105,14 @@ public class InfluxService {
 		try {
 			// Logic
 			LocalDate current = projectAssignment.getFrom();
-
-			Set<LocalDate> datesToExclude = null;
-			if (projectAssignment.isSkipEvents()) {
-				datesToExclude = getNonProjectEvents(projectAssignment.getFrom(), projectAssignment.getTo(),
-						projectAssignment.getEmployee());
-			}
-
+			HolidayYear holidays = null;
 			while (!current.isAfter(projectAssignment.getTo())) {
-				if (isDayToBeAssigned(projectAssignment, current, datesToExclude)) {
+				holidays = holidayYear(holidays, current);
+				if (isDayToBeAssigned(projectAssignment, current, holidays, datesToExclude)) {
 					ProjectAssignment tmpProjectAssignment = updateProjectAssignmentForProjectRemoval(projectAssignment,
-							current);
-					Point point = createProjectAssignmentInfluxPoint(tmpProjectAssignment, current, false, null);
-					batchPoints.point(point);
+							current, holidays);
+					batch.addProjectPoint(tmpProjectAssignment, getYearMonth(current), getNanoTime(current, false),
+							null);
 				}
 				current = current.plusDays(1);
 			}
@@ -915,64 +2122,6 @@ public class InfluxService {
 		}
 	}
 
-	/**
-	 * Creates influx datapoint for a project assignment object.
-	 * 
-	 * @param projectAssignment
-	 *            projects assignment for which the datapoint shall be created
-	 * @param current
-	 *            date
-	 * @param weekendOrPublicHoliday
-	 *            indicates which time of day to use for the data point
-	 * @param workingDay
-	 *            indicates whether working day shall be written or not. If null
-	 *            this information will be skipped. Otherwise the boolean value is
-	 *            written to influx.
-	 * @return the influx data point.
-	 */
-	private Point createProjectAssignmentInfluxPoint(final ProjectAssignment projectAssignment, LocalDate current,
-			boolean weekendOrPublicHoliday, Boolean workingDay) {
-		String yearMonth = getYearMonth(current);
-		long nanoTime = getNanoTime(current, weekendOrPublicHoliday);
-		Builder pointBuilder = Point
-				.measurement(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_M_PROJECTS_KEY))
-				.time(nanoTime, TimeUnit.NANOSECONDS)
-				.tag(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_EMPLOYEE_KEY),
-						projectAssignment.getEmployee())
-				.tag(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_T_YEAR_MONTH_KEY), yearMonth);
-		if (null != projectAssignment.getProject()) {
-			pointBuilder.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_PROJECT_KEY),
-					projectAssignment.getProject());
-		}
-		if (null != projectAssignment.getStatus()) {
-			pointBuilder.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_STATUS_KEY),
-					projectAssignment.getStatus());
-		}
-		if (null != projectAssignment.getColor()) {
-			pointBuilder.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_COLOR_KEY),
-					projectAssignment.getColor());
-		}
-		if (null != projectAssignment.getRate()) {
-			pointBuilder.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_RATE_KEY),
-					projectAssignment.getRate());
-		}
-		if (null != projectAssignment.getExpenses()) {
-			pointBuilder.addField(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_DAILY_EXPENSES_KEY),
-					projectAssignment.getExpenses());
-		}
-		if (null != projectAssignment.getNotes()) {
-			pointBuilder.addField(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_NOTES_KEY),
-					projectAssignment.getNotes());
-		}
-		if (null != workingDay) {
-			pointBuilder.addField(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_F_WORKINGDAY_KEY),
-					workingDay.booleanValue());
-		}
-		return pointBuilder.build();
-	}
-
 	/**
 	 * Updates project assignment for project deletion. On weekends or holidays the
 	 * old value is written.
@@ -981,24 +2130,26 @@ public class InfluxService {
 	 *            project assignment to update.
 	 * @param current
 	 *            date
+	 * @param holidays
+	 *            public holidays of the year of the date
 	 */
 	private ProjectAssignment updateProjectAssignmentForProjectRemoval(final ProjectAssignment projectAssignment,
-			final LocalDate current) {
-		Holiday holiday = getPublicHoliday(current);
+			final LocalDate current, final HolidayYear holidays) {
+		final InfluxSchema schema = InfluxSchema.get();
 
 		if (projectAssignment.getProject()
-				.equals(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY))) {
+				.equals(schema.getProjectRemovedValue()) && holidays.isNonWorkingDay(current.toEpochDay())) {
 			ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
 			builder.copy(projectAssignment);
+			Holiday holiday = holidays.getHoliday(current);
 			if (null != holiday) {
-				builder.project(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY));
+				builder.project(schema.getNotAvailableValue());
 				builder.notes(holiday.getName());
-				builder.color(PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_NA_KEY));
-			} else if (current.getDayOfWeek().equals(DayOfWeek.SATURDAY)
-					|| current.getDayOfWeek().equals(DayOfWeek.SUNDAY)) {
-				builder.project(PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_WE_KEY));
+				builder.color(schema.getNotAvailableColor());
+			} else {
+				builder.project(schema.getWeekendValue());
 				builder.notes("");
-				builder.color(PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_WE_KEY));
+				builder.color(schema.getWeekEndColor());
 			}
 			return builder.build();
 		} else {
@@ -1017,11 +2168,8 @@ public class InfluxService {
 	 * @return nano timestamp
 	 */
 	public long getNanoTime(LocalDate current, boolean weekendOrPublicHoliday) {
-		Calendar date = Calendar.getInstance();
-		date.set(current.getYear(), current.getMonthValue() - 1, current.getDayOfMonth(),
-				weekendOrPublicHoliday ? WEEKEND_HOLIDAY_HOUR : PROJECT_HOUR, 0, 0);
-		long nanoTime = (date.getTimeInMillis() / MILLI) * NANO;
-		return nanoTime;
+		return TimeCodec.toEpochNanos(current.toEpochDay(),
+				weekendOrPublicHoliday ? WEEKEND_HOLIDAY_HOUR : PROJECT_HOUR);
 	}
 
 	/**
@@ -1032,9 +2180,7 @@ public class InfluxService {
 	 * @return date
 	 */
 	private LocalDate dateFromMillis(long milliseconds) {
-		Calendar date = Calendar.getInstance();
-		date.setTimeInMillis(milliseconds);
-		return date.getTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+		return LocalDate.ofEpochDay(TimeCodec.localEpochDayFromMillis(milliseconds));
 	}
 
 	/**
@@ -1045,38 +2191,75 @@ public class InfluxService {
 	 *            project assignment
 	 * @param current
 	 *            date
+	 * @param holidays
+	 *            public holidays of the year of the date
 	 * @param datesToExclude
 	 *            dates to be excluded
 	 * @return true, if day can be assigned a project.
 	 */
 	private boolean isDayToBeAssigned(final ProjectAssignment projectAssignment, LocalDate current,
-			Set<LocalDate> datesToExclude) {
-		Holiday holiday = getPublicHoliday(current);
+			HolidayYear holidays, Set<LocalDate> datesToExclude) {
 		return projectAssignment.getDaysOfWeek().contains(current.getDayOfWeek())
-				&& (!projectAssignment.isSkipHolidays() || null == holiday)
+				&& (!projectAssignment.isSkipHolidays() || !holidays.isHoliday(current.toEpochDay()))
 				&& (!projectAssignment.isSkipEvents() || null == datesToExclude || !datesToExclude.contains(current));
 	}
 
 	/**
-	 * Executes the given query statement against influx.
+	 * Returns the latency statistics of all query templates.
+	 * 
+	 * @return query templates
+	 */
+	public List<QueryTemplate> getQueryStatistics() {
+		return queries().getTemplates();
+	}
+
+	/**
+	 * Returns the query templates of the current schema.
+	 * 
+	 * @return query templates
+	 */
+	private InfluxQueries queries() {
+		return queries;
+	}
+
+	/**
+	 * Reloads the user properties and swaps the schema snapshot together with
+	 * the line protocol encoder and the query templates built from it. Batches
+	 * and queries that already hold the previous encoder or templates complete
+	 * with them. The database and retention policy of the writer are kept until
+	 * restart.
+	 */
+	public void reloadSchema() {
+		InfluxSchema schema = InfluxSchema.reload();
+		encoder = new LineProtocolEncoder(schema);
+		queries = new InfluxQueries(schema);
+		LOGGER.info("Reloaded the influx schema");
+	}
+
+	/**
+	 * Executes the given query template against influx.
 	 * 
-	 * @param queryStr
-	 *            query
+	 * @param template
+	 *            query template
+	 * @param params
+	 *            parameter values
 	 * @return result row
 	 */
-	private List<List<Object>> executeQuery(String queryStr) {
+	private List<List<Object>> executeQuery(QueryTemplate template, Object... params) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
 				.createNewActiveSpan(this.getClass().getSimpleName() + ".executeQuery");
+		s_this.setTag(JaegerUtil.T_QUERY, template.getName());
 
+		String queryStr = template.bind(params);
 		s_this.log(queryStr);
 
+		long start = System.nanoTime();
 		try {
 			// Logic
-			Query query = new Query(queryStr,
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY));
+			Query query = new Query(queryStr, InfluxSchema.get().getDatabase());
 
-			QueryResult qResult = influx.query(query);
+			QueryResult qResult = influx.query(query, TimeUnit.MILLISECONDS);
 			List<Result> results = qResult.getResults();
 
 			if (results.size() != 1) {
@@ -1089,42 +2272,77 @@ public class InfluxService {
 			Series series = result.getSeries().get(0);
 			return series.getValues();
 		} finally {
+			template.record(System.nanoTime() - start);
 			// Monitoring
 			s_this.deactivate();
 		}
 	}
 
 	/**
-	 * Executes the given query statement against influx.
+	 * Executes several statements in a single request with times in epoch milli
+	 * seconds. The latency is recorded on the given template.
 	 * 
-	 * @param queryStr
-	 *            query
-	 * @return result row
+	 * @param template
+	 *            template the statements have been bound from
+	 * @param statements
+	 *            statements separated by semicolons
+	 * @return one result per statement
 	 */
-	private List<Series> executeMultiSeriesQuery(String queryStr) {
+	private List<Result> executeStatements(QueryTemplate template, String statements) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
-				.createNewActiveSpan(this.getClass().getSimpleName() + ".executeMultiSeriesQuery");
-
-		s_this.log(queryStr);
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".executeStatements");
+		s_this.setTag(JaegerUtil.T_QUERY, template.getName());
+		s_this.log(statements);
 
+		long start = System.nanoTime();
 		try {
 			// Logic
-			Query query = new Query(queryStr,
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_DATABASE_KEY));
-
-			QueryResult qResult = influx.query(query);
-			List<Result> results = qResult.getResults();
-
-			if (results.size() != 1) {
-				return null;
+			QueryResult qResult = influx.query(new Query(statements, InfluxSchema.get().getDatabase()),
+					TimeUnit.MILLISECONDS);
+			if (null != qResult.getError()) {
+				throw new IllegalStateException("Query " + template.getName() + " failed: " + qResult.getError());
 			}
-			Result result = results.get(0);
-			if (null == result.getSeries() || result.getSeries().size() < 1) {
-				return null;
+			List<Result> results = null == qResult.getResults() ? Collections.emptyList() : qResult.getResults();
+			for (Result result : results) {
+				if (null != result.getError()) {
+					throw new IllegalStateException("Query " + template.getName() + " failed: " + result.getError());
+				}
 			}
-			return result.getSeries();
+			return results;
+		} finally {
+			template.record(System.nanoTime() - start);
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Executes the given query template against influx with chunked responses
+	 * and passes the rows to the given handler as they arrive.
+	 * 
+	 * @param template
+	 *            query template
+	 * @param handler
+	 *            row handler
+	 * @param params
+	 *            parameter values
+	 */
+	private void streamQuery(QueryTemplate template, ChunkedQuery.RowHandler handler, Object... params) {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance()
+				.createNewActiveSpan(this.getClass().getSimpleName() + ".streamQuery");
+		s_this.setTag(JaegerUtil.T_QUERY, template.getName());
+
+		String queryStr = template.bind(params);
+		s_this.log(queryStr);
+
+		long start = System.nanoTime();
+		try {
+			// Logic
+			chunkedQuery.execute(new Query(queryStr, InfluxSchema.get().getDatabase()), handler);
 		} finally {
+			template.record(System.nanoTime() - start);
 			// Monitoring
 			s_this.deactivate();
 		}
@@ -1142,20 +2360,50 @@ public class InfluxService {
 	}
 
 	/**
-	 * Writes batch points to influx.
+	 * Creates an empty batch using the configured encoding.
+	 * 
+	 * @return new batch
+	 */
+	private InfluxBatch newBatch() {
+		InfluxSchema schema = InfluxSchema.get();
+		InfluxBatch batch;
+		if (useLineProtocolEncoder) {
+			batch = new LineProtocolBatch(encoder);
+		} else {
+			batch = new PointBatch();
+		}
+		MonthlyRollups currentRollups = rollups;
+		if (null != currentRollups) {
+			batch = new RollupBatch(batch, currentRollups, this::applyIndexUpdate);
+		}
+		DayGridIndex grid = projectGrid;
+		LaneIndex lanes = laneIndex;
+		if (null != grid && null != lanes) {
+			return new DayGridBatch(batch, grid, lanes, schema.getNonProjectEvents(), this::applyIndexUpdate);
+		}
+		return batch;
+	}
+
+	/**
+	 * Hands a batch over to the asynchronous write pipeline.
 	 * 
-	 * @param batchPoints
+	 * @param batch
 	 *            points to write.
+	 * @return future that completes once the points have been written.
 	 */
-	private void writeToInflux(BatchPoints batchPoints) {
+	private CompletableFuture<Void> writeToInflux(InfluxBatch batch) {
 		// Monitoring
 		final ActiveSpan s_this = JaegerUtil.getInstance()
 				.createNewActiveSpan(this.getClass().getSimpleName() + ".writeToInflux");
 
-		s_this.setTag(JaegerUtil.T_POINTS_TO_WRITE, batchPoints.getPoints().size());
+		s_this.setTag(JaegerUtil.T_POINTS_TO_WRITE, batch.size());
 
 		try {
-			influx.write(batchPoints);
+			synchronized (writeOrderLock) {
+				CompletableFuture<Void> written = batch.writeTo(writer);
+				pendingWrites = CompletableFuture.allOf(pendingWrites, written.exceptionally(throwable -> null));
+				return written;
+			}
 		} finally {
 			// Monitoring
 			s_this.deactivate();
@@ -0,0 +1,637 @@
+package rocks.nt.project.financials.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentracing.ActiveSpan;
+
+/**
+ * Asynchronous write pipeline for influxDB. Points handed in by many callers
+ * are queued and merged into batches that are bounded by size and time.
+ * Without a spool a full queue blocks the caller until the background writer
+ * catches up. Points may be passed as line protocol records or as
+ * {@link BatchPoints}.
+ *
+ * If a {@link WriteAheadSpool} is given, every write is spooled to disk before
+ * it is queued. Callers never block on a full queue: further writes are only
+ * spooled and the writer reads them back from the spool once the queue has
+ * been drained. Flushes that fail on I/O or server errors are retried with
+ * increasing back-off until influxDB is available again, writes rejected by
+ * influxDB are moved to the dead-letter file of the spool, and writes left over
+ * from a previous run are replayed first.
+ */
+public class InfluxWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InfluxWriter.class);
+
+	/**
+	 * Time to wait for the writer thread to drain the queue on shutdown.
+	 */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+
+	/**
+	 * Initial delay before a failed flush is retried.
+	 */
+	private static final long INITIAL_RETRY_MILLIS = 100L;
+
+	/**
+	 * Maximum delay between retries of a failed flush.
+	 */
+	private static final long MAX_RETRY_MILLIS = 30000L;
+
+	/**
+	 * Errors influxDB answers with a 400 or 413 status if it rejects the written
+	 * points themselves. influxdb-java does not expose the status code, so
+	 * rejected writes are recognized by these specific messages. Dropped points,
+	 * such as points beyond the retention policy or exceeding the series limits,
+	 * are reported as partial write. Everything else, including missing
+	 * databases and failed authorization, is retried.
+	 */
+	private static final String[] CLIENT_ERRORS = { "unable to parse", "field type conflict", "partial write",
+			"request entity too large" };
+
+	/**
+	 * InfluxDB connection.
+	 */
+	private final InfluxDB influx;
+
+	/**
+	 * Target database.
+	 */
+	private final String database;
+
+	/**
+	 * Target retention policy.
+	 */
+	private final String retentionPolicy;
+
+	/**
+	 * Maximum number of points per flush.
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * Maximum time to wait for further writes before flushing.
+	 */
+	private final long flushIntervalMillis;
+
+	/**
+	 * Write-ahead spool or null if writes are not spooled.
+	 */
+	private final WriteAheadSpool spool;
+
+	/**
+	 * Keeps spooling and queueing in the same order.
+	 */
+	private final Object enqueueLock = new Object();
+
+	/**
+	 * Indicates whether writes are only spooled because the queue has been full.
+	 * Guarded by {@link #enqueueLock}.
+	 */
+	private boolean spilling;
+
+	/**
+	 * Sequence number of the first write that has only been spooled. Guarded by
+	 * {@link #enqueueLock}.
+	 */
+	private long spilledFromSequence;
+
+	/**
+	 * Futures of the writes that have only been spooled by sequence number.
+	 */
+	private final Map<Long, CompletableFuture<Void>> spilledFutures = new ConcurrentHashMap<>();
+
+	/**
+	 * Writes waiting to be flushed.
+	 */
+	private final BlockingQueue<PendingWrite> queue;
+
+	/**
+	 * Background thread flushing the queue.
+	 */
+	private final Thread writerThread;
+
+	/**
+	 * Indicates whether new writes are accepted.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param influx
+	 *            influxDB connection
+	 * @param database
+	 *            target database
+	 * @param retentionPolicy
+	 *            target retention policy
+	 * @param queueCapacity
+	 *            maximum number of pending writes before callers are blocked
+	 * @param maxBatchSize
+	 *            maximum number of points per flush
+	 * @param flushIntervalMillis
+	 *            maximum time to wait for further writes before flushing
+	 * @param spool
+	 *            write-ahead spool, null to write without spooling
+	 */
+	public InfluxWriter(InfluxDB influx, String database, String retentionPolicy, int queueCapacity,
+			int maxBatchSize, long flushIntervalMillis, WriteAheadSpool spool) {
+		this.influx = influx;
+		this.database = database;
+		this.retentionPolicy = retentionPolicy;
+		this.maxBatchSize = maxBatchSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.spool = spool;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+		writerThread = new Thread(this::writeLoop, "influx-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Enqueues the given points for writing. Blocks if the queue is full and
+	 * writes are not spooled.
+	 *
+	 * @param batchPoints
+	 *            points to write
+	 * @return future that completes as soon as the points have been written
+	 */
+	public CompletableFuture<Void> write(BatchPoints batchPoints) {
+		if (batchPoints.getPoints().isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		if (null != spool) {
+			// the spool stores line protocol only
+			StringBuilder records = new StringBuilder();
+			for (Point point : batchPoints.getPoints()) {
+				records.append(point.lineProtocol()).append('\n');
+			}
+			return enqueue(new PendingWrite(records.toString(), null, batchPoints.getPoints().size()));
+		}
+		return enqueue(new PendingWrite(null, batchPoints.getPoints(), batchPoints.getPoints().size()));
+	}
+
+	/**
+	 * Enqueues the given line protocol records for writing. Blocks if the queue
+	 * is full and writes are not spooled.
+	 *
+	 * @param records
+	 *            newline separated line protocol records
+	 * @param numPoints
+	 *            number of records
+	 * @return future that completes as soon as the records have been written
+	 */
+	public CompletableFuture<Void> write(String records, int numPoints) {
+		if (numPoints == 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return enqueue(new PendingWrite(records, null, numPoints));
+	}
+
+	/**
+	 * Puts the given write into the queue. Spooled writes that do not fit into
+	 * the queue are left in the spool for the writer to read back.
+	 *
+	 * @param pendingWrite
+	 *            write to enqueue
+	 * @return future of the write
+	 */
+	private CompletableFuture<Void> enqueue(PendingWrite pendingWrite) {
+		if (!running) {
+			pendingWrite.future.completeExceptionally(new IllegalStateException("Influx writer has been shut down."));
+			return pendingWrite.future;
+		}
+		try {
+			if (null == spool) {
+				queue.put(pendingWrite);
+			} else {
+				synchronized (enqueueLock) {
+					long sequence = spool.getNextSequence();
+					boolean spill = spilling || queue.remainingCapacity() == 0;
+					if (spill) {
+						// registered before appending so that the writer finds it
+						spilledFutures.put(sequence, pendingWrite.future);
+					}
+					try {
+						pendingWrite.sequence = spool.append(pendingWrite.records, pendingWrite.size);
+					} catch (IOException e) {
+						spilledFutures.remove(sequence);
+						throw e;
+					}
+					if (spill) {
+						if (!spilling) {
+							LOGGER.warn("Write queue full. Further writes are read back from the write-ahead spool.");
+							spilling = true;
+							spilledFromSequence = sequence;
+						}
+					} else {
+						queue.add(pendingWrite);
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.error("Failed spooling " + pendingWrite.size + " points.", e);
+			pendingWrite.future.completeExceptionally(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pendingWrite.future.completeExceptionally(e);
+		}
+		return pendingWrite.future;
+	}
+
+	/**
+	 * @return number of writes waiting to be flushed
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops accepting writes and waits until the pending writes have been
+	 * flushed. The spool is closed once the writer has stopped.
+	 */
+	public void shutdown() {
+		running = false;
+		try {
+			writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (null != spool) {
+			if (writerThread.isAlive()) {
+				LOGGER.warn("Influx writer still running. Leaving the write-ahead spool open.");
+			} else {
+				spool.close();
+			}
+		}
+	}
+
+	/**
+	 * Collects pending writes into batches and flushes them until shut down.
+	 */
+	private void writeLoop() {
+		List<PendingWrite> batch = new ArrayList<>();
+		boolean resolved = true;
+		if (null != spool) {
+			resolved = replaySpool(batch);
+		}
+		while (resolved && (running || !queue.isEmpty() || (null != spool && isSpilling()))) {
+			try {
+				if (null != spool && queue.isEmpty() && isSpilling()) {
+					resolved = flushSpilled(batch);
+					continue;
+				}
+				PendingWrite first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+				if (null == first) {
+					continue;
+				}
+				batch.add(first);
+				int numPoints = first.size;
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+				while (numPoints < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (null == next) {
+						break;
+					}
+					batch.add(next);
+					numPoints += next.size;
+				}
+				resolved = flushAndComplete(batch, numPoints);
+			} catch (InterruptedException e) {
+				running = false;
+			} finally {
+				batch.clear();
+			}
+		}
+		// writes left over are written again on the next start
+		IllegalStateException remaining = new IllegalStateException(
+				"Influx writer has been shut down. The write remains in the write-ahead spool.");
+		for (PendingWrite pendingWrite = queue.poll(); null != pendingWrite; pendingWrite = queue.poll()) {
+			pendingWrite.future.completeExceptionally(remaining);
+		}
+		for (CompletableFuture<Void> future : spilledFutures.values()) {
+			future.completeExceptionally(remaining);
+		}
+	}
+
+	/**
+	 * @return true if writes are only spooled
+	 */
+	private boolean isSpilling() {
+		synchronized (enqueueLock) {
+			return spilling;
+		}
+	}
+
+	/**
+	 * Reads the next writes that have only been spooled back from the spool and
+	 * flushes them as one batch. Stops spilling once the writer has caught up
+	 * with the spool.
+	 * 
+	 * @param batch
+	 *            empty list to collect the writes in
+	 * @return false if the writes remain in the spool because the writer has
+	 *         been shut down
+	 */
+	private boolean flushSpilled(List<PendingWrite> batch) {
+		long fromSequence;
+		synchronized (enqueueLock) {
+			fromSequence = spilledFromSequence;
+		}
+		int[] numPoints = new int[1];
+		long lastSequence;
+		try {
+			lastSequence = spool.read(fromSequence, maxBatchSize, (sequence, records, size) -> {
+				CompletableFuture<Void> future = spilledFutures.remove(sequence);
+				PendingWrite pendingWrite = new PendingWrite(records, null, size,
+						null == future ? new CompletableFuture<>() : future);
+				pendingWrite.sequence = sequence;
+				batch.add(pendingWrite);
+				numPoints[0] += size;
+			});
+		} catch (IOException e) {
+			LOGGER.error("Failed reading writes back from the write-ahead spool.", e);
+			sleep(flushIntervalMillis);
+			return true;
+		}
+		if (!batch.isEmpty() && !flushAndComplete(batch, numPoints[0])) {
+			return false;
+		}
+		synchronized (enqueueLock) {
+			if (lastSequence >= spool.getNextSequence() - 1) {
+				LOGGER.info("Write-ahead spool caught up. Queueing writes again.");
+				spilling = false;
+			} else {
+				spilledFromSequence = lastSequence + 1;
+			}
+		}
+		if (batch.isEmpty()) {
+			// the last write is still being appended
+			sleep(flushIntervalMillis);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the records left over in the spool by a previous run.
+	 * 
+	 * @param batch
+	 *            empty list to collect the records in
+	 * @return false if records remain in the spool because the writer has been
+	 *         shut down
+	 */
+	private boolean replaySpool(List<PendingWrite> batch) {
+		int[] numPoints = new int[1];
+		boolean[] resolved = { true };
+		try {
+			spool.replay((sequence, records, size) -> {
+				if (!resolved[0]) {
+					// keep the remaining records for the next start
+					return;
+				}
+				if (!batch.isEmpty() && numPoints[0] + size > maxBatchSize) {
+					resolved[0] = flushAndComplete(batch, numPoints[0]);
+					batch.clear();
+					numPoints[0] = 0;
+					if (!resolved[0]) {
+						return;
+					}
+				}
+				PendingWrite pendingWrite = new PendingWrite(records, null, size);
+				pendingWrite.sequence = sequence;
+				batch.add(pendingWrite);
+				numPoints[0] += size;
+			});
+			if (resolved[0] && !batch.isEmpty()) {
+				resolved[0] = flushAndComplete(batch, numPoints[0]);
+			}
+		} catch (IOException e) {
+			LOGGER.error("Failed replaying write-ahead spool.", e);
+		} finally {
+			batch.clear();
+		}
+		return resolved[0];
+	}
+
+	/**
+	 * Flushes the given pending writes and completes their futures. Spooled
+	 * writes failing on I/O or server errors are retried until they succeed or
+	 * the writer is shut down. Writes rejected by influxDB are not retried: a
+	 * merged batch is split up to isolate the rejected writes, which are moved
+	 * to the dead-letter file of the spool and acknowledged.
+	 * 
+	 * @param batch
+	 *            pending writes
+	 * @param numPoints
+	 *            overall number of points
+	 * @return false if spooled writes remain in the spool until the next start
+	 */
+	private boolean flushAndComplete(List<PendingWrite> batch, int numPoints) {
+		RuntimeException error = flush(batch, numPoints);
+		long retryMillis = INITIAL_RETRY_MILLIS;
+		while (null != spool && null != error && isRetryable(error) && running) {
+			sleep(retryMillis);
+			retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+			error = flush(batch, numPoints);
+		}
+		if (null != error && !isRetryable(error) && batch.size() > 1) {
+			return flushIndividually(batch);
+		}
+
+		boolean resolved = true;
+		if (null != spool) {
+			if (null != error && !isRetryable(error)) {
+				resolved = deadLetter(batch, error);
+			} else if (null != error) {
+				resolved = false;
+			}
+			if (resolved) {
+				try {
+					spool.acknowledge(batch.get(batch.size() - 1).sequence);
+				} catch (IOException e) {
+					LOGGER.warn("Failed acknowledging spooled writes. They will be written again on restart.", e);
+				}
+			} else {
+				LOGGER.warn(numPoints + " points remain in the write-ahead spool until the next start.");
+			}
+		}
+		for (PendingWrite pendingWrite : batch) {
+			if (null == error) {
+				pendingWrite.future.complete(null);
+			} else {
+				pendingWrite.future.completeExceptionally(error);
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Flushes the given pending writes one by one in their order.
+	 * 
+	 * @param batch
+	 *            pending writes
+	 * @return false if spooled writes remain in the spool until the next start
+	 */
+	private boolean flushIndividually(List<PendingWrite> batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			PendingWrite pendingWrite = batch.get(i);
+			if (!flushAndComplete(Collections.singletonList(pendingWrite), pendingWrite.size)) {
+				IllegalStateException remaining = new IllegalStateException(
+						"Influx writer has been shut down. The write remains in the write-ahead spool.");
+				for (PendingWrite notFlushed : batch.subList(i + 1, batch.size())) {
+					notFlushed.future.completeExceptionally(remaining);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves rejected writes to the dead-letter file of the spool.
+	 * 
+	 * @param batch
+	 *            rejected writes
+	 * @param error
+	 *            error influxDB has rejected the writes with
+	 * @return true if the writes have been moved
+	 */
+	private boolean deadLetter(List<PendingWrite> batch, RuntimeException error) {
+		StringBuilder records = new StringBuilder();
+		for (PendingWrite pendingWrite : batch) {
+			records.append(pendingWrite.records);
+		}
+		try {
+			spool.deadLetter(records.toString(), error.getMessage());
+			LOGGER.error("Moved writes rejected by influx to the dead-letter file: " + error.getMessage());
+			return true;
+		} catch (IOException e) {
+			LOGGER.error("Failed moving rejected writes to the dead-letter file.", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether a failed write is worth retrying. I/O errors and server
+	 * errors are retried, writes rejected by influxDB are not.
+	 * 
+	 * @param error
+	 *            write error
+	 * @return true if the write should be retried
+	 */
+	static boolean isRetryable(RuntimeException error) {
+		for (Throwable cause = error; null != cause; cause = cause.getCause()) {
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		String message = String.valueOf(error.getMessage()).toLowerCase(Locale.ROOT);
+		for (String clientError : CLIENT_ERRORS) {
+			if (message.contains(clientError)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sleeps the writer thread. Stops the writer if interrupted.
+	 * 
+	 * @param millis
+	 *            time to sleep
+	 */
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			running = false;
+		}
+	}
+
+	/**
+	 * Writes the given pending writes as a single batch.
+	 *
+	 * @param batch
+	 *            pending writes
+	 * @param numPoints
+	 *            overall number of points
+	 * @return null on success, otherwise the error
+	 */
+	private RuntimeException flush(List<PendingWrite> batch, int numPoints) {
+		// Monitoring
+		final ActiveSpan s_this = JaegerUtil.getInstance().createNewActiveSpan("InfluxWriter.flush");
+		s_this.setTag(JaegerUtil.T_POINTS_TO_WRITE, numPoints);
+
+		try {
+			// Logic
+			StringBuilder records = new StringBuilder();
+			BatchPoints batchPoints = BatchPoints.database(database).retentionPolicy(retentionPolicy)
+					.consistency(ConsistencyLevel.ALL).build();
+			for (PendingWrite pendingWrite : batch) {
+				if (null != pendingWrite.records) {
+					records.append(pendingWrite.records);
+				} else {
+					for (Point point : pendingWrite.points) {
+						batchPoints.point(point);
+					}
+				}
+			}
+			if (records.length() > 0) {
+				influx.write(database, retentionPolicy, ConsistencyLevel.ALL, records.toString());
+			}
+			if (!batchPoints.getPoints().isEmpty()) {
+				influx.write(batchPoints);
+			}
+			return null;
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed writing " + numPoints + " points to influx.", e);
+			s_this.log("Error: " + e.getMessage());
+			return e;
+		} finally {
+			// Monitoring
+			s_this.deactivate();
+		}
+	}
+
+	/**
+	 * Points of a single caller waiting to be written. Either records or points
+	 * are set.
+	 */
+	private static class PendingWrite {
+		private final String records;
+		private final List<Point> points;
+		private final int size;
+		private final CompletableFuture<Void> future;
+		private long sequence;
+
+		private PendingWrite(String records, List<Point> points, int size) {
+			this(records, points, size, new CompletableFuture<>());
+		}
+
+		private PendingWrite(String records, List<Point> points, int size, CompletableFuture<Void> future) {
+			this.records = records;
+			this.points = points;
+			this.size = size;
+			this.future = future;
+		}
+	}
+}
@@ -14,6 +14,9 @@ public class JaegerUtil {
 	public static final String T_FROM = "from";
 	public static final String T_TO = "to";
 	public static final String T_POINTS_TO_WRITE = "number of points";
+	public static final String T_EXPANSION_MILLIS = "expansion ms";
+	public static final String T_EXPANSION_MAX_MILLIS = "expansion max ms";
+	public static final String T_EXPANSION_MEAN_MILLIS = "expansion mean ms";
 	public static final String T_YEAR_MONTH = "year-month";
 	public static final String T_EXPENSES = "expenses";
 	public static final String T_COSTS = "costs";
@@ -22,6 +25,8 @@ public class JaegerUtil {
 	public static final String T_UTILIZATION = "utilization";
 	public static final String T_RETRUN_ON_SALES = "return on sales";
 	public static final String T_USER_NAME = "user";
+	public static final String T_QUERY = "query";
+	public static final String T_COUNT = "count";
 
 	private static JaegerUtil instance;
 
@@ -0,0 +1,122 @@
+package rocks.nt.project.financials.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Interval index of the lanes of unassigned projects. Each lane keeps its
+ * occupied days as disjoint, merged intervals of epoch days sorted by their
+ * first day, so checking a lane for a free period is a logarithmic lookup.
+ */
+public class LaneIndex {
+
+	/**
+	 * Occupied intervals by lane, mapping the first to the last epoch day of
+	 * each interval.
+	 */
+	private final Map<Integer, TreeMap<Long, Long>> lanes = new HashMap<>();
+
+	/**
+	 * Marks the given days of a lane as occupied.
+	 *
+	 * @param lane
+	 *            lane index
+	 * @param fromDay
+	 *            first epoch day
+	 * @param toDay
+	 *            last epoch day
+	 * @return true if all days of the period were free before
+	 */
+	public synchronized boolean occupy(int lane, long fromDay, long toDay) {
+		boolean free = isFree(lane, fromDay, toDay);
+		TreeMap<Long, Long> intervals = lanes.computeIfAbsent(lane, l -> new TreeMap<>());
+		long first = fromDay;
+		long last = toDay;
+		Map.Entry<Long, Long> previous = intervals.floorEntry(fromDay);
+		if (null != previous && previous.getValue() >= fromDay - 1) {
+			first = previous.getKey();
+			last = Math.max(last, previous.getValue());
+			intervals.remove(previous.getKey());
+		}
+		Map.Entry<Long, Long> next = intervals.ceilingEntry(first);
+		while (null != next && next.getKey() <= last + 1) {
+			last = Math.max(last, next.getValue());
+			intervals.remove(next.getKey());
+			next = intervals.ceilingEntry(first);
+		}
+		intervals.put(first, last);
+		return free;
+	}
+
+	/**
+	 * Marks the given days of a lane as free.
+	 *
+	 * @param lane
+	 *            lane index
+	 * @param fromDay
+	 *            first epoch day
+	 * @param toDay
+	 *            last epoch day
+	 */
+	public synchronized void release(int lane, long fromDay, long toDay) {
+		TreeMap<Long, Long> intervals = lanes.get(lane);
+		if (null == intervals) {
+			return;
+		}
+		Map.Entry<Long, Long> interval = intervals.floorEntry(toDay);
+		while (null != interval && interval.getValue() >= fromDay) {
+			intervals.remove(interval.getKey());
+			if (interval.getKey() < fromDay) {
+				intervals.put(interval.getKey(), fromDay - 1);
+			}
+			if (interval.getValue() > toDay) {
+				intervals.put(toDay + 1, interval.getValue());
+			}
+			interval = intervals.lowerEntry(interval.getKey());
+		}
+		if (intervals.isEmpty()) {
+			lanes.remove(lane);
+		}
+	}
+
+	/**
+	 * Checks whether the given days of a lane are free.
+	 *
+	 * @param lane
+	 *            lane index
+	 * @param fromDay
+	 *            first epoch day
+	 * @param toDay
+	 *            last epoch day
+	 * @return true if no day of the period is occupied
+	 */
+	public synchronized boolean isFree(int lane, long fromDay, long toDay) {
+		TreeMap<Long, Long> intervals = lanes.get(lane);
+		if (null == intervals) {
+			return true;
+		}
+		// intervals are disjoint, so only the last one starting in the period can overlap
+		Map.Entry<Long, Long> interval = intervals.floorEntry(toDay);
+		return null == interval || interval.getValue() < fromDay;
+	}
+
+	/**
+	 * Finds the lowest lane that is free in the given period and occupies it, so
+	 * that concurrent callers get different lanes.
+	 *
+	 * @param fromDay
+	 *            first epoch day
+	 * @param toDay
+	 *            last epoch day
+	 * @return claimed lane index, starting at 1
+	 */
+	public synchronized int claim(long fromDay, long toDay) {
+		int lane = 1;
+		while (!isFree(lane, fromDay, toDay)) {
+			lane++;
+		}
+		occupy(lane, fromDay, toDay);
+		return lane;
+	}
+}
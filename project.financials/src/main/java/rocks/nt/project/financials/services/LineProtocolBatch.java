@@ -0,0 +1,112 @@
+package rocks.nt.project.financials.services;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.influxdb.dto.Point;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Batch that encodes its points straight into a line protocol buffer. Buffers
+ * are reused per thread to avoid reallocating them for every batch.
+ */
+public class LineProtocolBatch implements InfluxBatch {
+
+	/**
+	 * Buffers exceeding this capacity are not kept for reuse.
+	 */
+	private static final int MAX_REUSED_CAPACITY = 1 << 20;
+
+	/**
+	 * Buffer that is free for reuse by the current thread.
+	 */
+	private static final ThreadLocal<StringBuilder> FREE_BUFFER = new ThreadLocal<>();
+
+	/**
+	 * Encoder to use.
+	 */
+	private final LineProtocolEncoder encoder;
+
+	/**
+	 * Line protocol buffer.
+	 */
+	private StringBuilder buffer;
+
+	/**
+	 * Number of encoded points.
+	 */
+	private int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param encoder
+	 *            encoder to use
+	 */
+	public LineProtocolBatch(LineProtocolEncoder encoder) {
+		this.encoder = encoder;
+		buffer = FREE_BUFFER.get();
+		if (null == buffer) {
+			buffer = new StringBuilder(4096);
+		} else {
+			FREE_BUFFER.remove();
+		}
+	}
+
+	@Override
+	public void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime,
+			Boolean workingDay) {
+		encoder.encodeProjectPoint(buffer, projectAssignment, yearMonth, nanoTime, workingDay);
+		size++;
+	}
+
+	@Override
+	public void addUnassignedProjectPoint(int index, String yearMonth, String project, String color, String notes,
+			long nanoTime) {
+		encoder.encodeUnassignedProjectPoint(buffer, index, yearMonth, project, color, notes, nanoTime);
+		size++;
+	}
+
+	@Override
+	public void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime) {
+		encoder.encodeAssignmentRangePoint(buffer, projectAssignment, nanoTime);
+		size++;
+	}
+
+	@Override
+	public void addCalendarPoint(String type, String value, long nanoTime) {
+		encoder.encodeCalendarPoint(buffer, type, value, nanoTime);
+		size++;
+	}
+
+	@Override
+	public void addPoint(Point point) {
+		buffer.append(point.lineProtocol()).append('\n');
+		size++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public CompletableFuture<Void> writeTo(InfluxWriter writer) {
+		String records = buffer.toString();
+		int numPoints = size;
+		release();
+		return writer.write(records, numPoints);
+	}
+
+	/**
+	 * Returns the buffer for reuse by the current thread.
+	 */
+	private void release() {
+		if (buffer.capacity() <= MAX_REUSED_CAPACITY) {
+			buffer.setLength(0);
+			FREE_BUFFER.set(buffer);
+		}
+		buffer = null;
+		size = 0;
+	}
+}
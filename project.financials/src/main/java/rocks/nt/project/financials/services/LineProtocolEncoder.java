@@ -0,0 +1,336 @@
+package rocks.nt.project.financials.services;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Encodes project, unassigned project and calendar points directly into
+ * influxDB line protocol. Measurement, tag and field keys are escaped once on
+ * construction so that encoding a point only appends to the given buffer.
+ */
+public class LineProtocolEncoder {
+
+	/**
+	 * Measurement of calendar entries.
+	 */
+	static final String CALENDAR_MEASUREMENT = "calendar";
+
+	/**
+	 * Tag key of calendar entries.
+	 */
+	static final String CALENDAR_TYPE_TAG = "type";
+
+	/**
+	 * Field key of calendar entries.
+	 */
+	static final String CALENDAR_VALUE_FIELD = "value";
+
+	private final String projectsMeasurement;
+	private final String unassignedProjectsMeasurement;
+	private final String employeeTag;
+	private final String yearMonthTag;
+	private final String indexTag;
+	private final String projectField;
+	private final String statusField;
+	private final String colorField;
+	private final String rateField;
+	private final String expensesField;
+	private final String notesField;
+	private final String workingDayField;
+	private final String assignmentsMeasurement;
+	private final String fromDayField;
+	private final String toDayField;
+	private final String daysOfWeekField;
+	private final String skipHolidaysField;
+	private final String skipEventsField;
+
+	/**
+	 * Indicates whether the employee tag sorts before the year-month tag.
+	 */
+	private final boolean employeeTagFirst;
+
+	/**
+	 * Indicates whether the index tag sorts before the year-month tag.
+	 */
+	private final boolean indexTagFirst;
+
+	/**
+	 * Constructor. Escapes the names of the given schema.
+	 * 
+	 * @param schema
+	 *            schema providing measurement, tag and field keys
+	 */
+	public LineProtocolEncoder(InfluxSchema schema) {
+		projectsMeasurement = escapeMeasurement(schema.getProjectsMeasurement());
+		unassignedProjectsMeasurement = escapeMeasurement(schema.getUnassignedProjectsMeasurement());
+		employeeTag = escapeKey(schema.getEmployeeTag());
+		yearMonthTag = escapeKey(schema.getYearMonthTag());
+		indexTag = escapeKey(schema.getIndexTag());
+		projectField = escapeKey(schema.getProjectField());
+		statusField = escapeKey(schema.getStatusField());
+		colorField = escapeKey(schema.getColorField());
+		rateField = escapeKey(schema.getRateField());
+		expensesField = escapeKey(schema.getDailyExpensesField());
+		notesField = escapeKey(schema.getNotesField());
+		workingDayField = escapeKey(schema.getWorkingDayField());
+		assignmentsMeasurement = escapeMeasurement(schema.getAssignmentsMeasurement());
+		fromDayField = escapeKey(schema.getFromDayField());
+		toDayField = escapeKey(schema.getToDayField());
+		daysOfWeekField = escapeKey(schema.getDaysOfWeekField());
+		skipHolidaysField = escapeKey(schema.getSkipHolidaysField());
+		skipEventsField = escapeKey(schema.getSkipEventsField());
+		employeeTagFirst = employeeTag.compareTo(yearMonthTag) < 0;
+		indexTagFirst = indexTag.compareTo(yearMonthTag) < 0;
+	}
+
+	/**
+	 * Appends a project point.
+	 * 
+	 * @param out
+	 *            buffer to append to
+	 * @param projectAssignment
+	 *            project assignment providing employee and field values
+	 * @param yearMonth
+	 *            year-month tag value
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 * @param workingDay
+	 *            working day flag. If null the field is skipped.
+	 */
+	public void encodeProjectPoint(StringBuilder out, ProjectAssignment projectAssignment, String yearMonth,
+			long nanoTime, Boolean workingDay) {
+		checkTagValue(employeeTag, projectAssignment.getEmployee());
+		checkTagValue(yearMonthTag, yearMonth);
+		out.append(projectsMeasurement);
+		if (employeeTagFirst) {
+			appendTag(out, employeeTag, projectAssignment.getEmployee());
+			appendTag(out, yearMonthTag, yearMonth);
+		} else {
+			appendTag(out, yearMonthTag, yearMonth);
+			appendTag(out, employeeTag, projectAssignment.getEmployee());
+		}
+		char separator = ' ';
+		if (null != projectAssignment.getProject()) {
+			appendField(out, separator, projectField, projectAssignment.getProject());
+			separator = ',';
+		}
+		if (null != projectAssignment.getStatus()) {
+			appendField(out, separator, statusField, projectAssignment.getStatus());
+			separator = ',';
+		}
+		if (null != projectAssignment.getColor()) {
+			appendField(out, separator, colorField, projectAssignment.getColor());
+			separator = ',';
+		}
+		if (null != projectAssignment.getRate()) {
+			appendField(out, separator, rateField, projectAssignment.getRate().doubleValue());
+			separator = ',';
+		}
+		if (null != projectAssignment.getExpenses()) {
+			appendField(out, separator, expensesField, projectAssignment.getExpenses().doubleValue());
+			separator = ',';
+		}
+		if (null != projectAssignment.getNotes()) {
+			appendField(out, separator, notesField, projectAssignment.getNotes());
+			separator = ',';
+		}
+		if (null != workingDay) {
+			out.append(separator).append(workingDayField).append('=').append(workingDay.booleanValue());
+		}
+		appendTime(out, nanoTime);
+	}
+
+	/**
+	 * Appends an unassigned project point.
+	 * 
+	 * @param out
+	 *            buffer to append to
+	 * @param index
+	 *            lane index
+	 * @param yearMonth
+	 *            year-month tag value
+	 * @param project
+	 *            project name
+	 * @param color
+	 *            color string in hex representation
+	 * @param notes
+	 *            notes string
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 */
+	public void encodeUnassignedProjectPoint(StringBuilder out, int index, String yearMonth, String project,
+			String color, String notes, long nanoTime) {
+		checkTagValue(yearMonthTag, yearMonth);
+		out.append(unassignedProjectsMeasurement);
+		if (indexTagFirst) {
+			out.append(',').append(indexTag).append('=').append(index);
+			appendTag(out, yearMonthTag, yearMonth);
+		} else {
+			appendTag(out, yearMonthTag, yearMonth);
+			out.append(',').append(indexTag).append('=').append(index);
+		}
+		appendField(out, ' ', colorField, color);
+		appendField(out, ',', projectField, project);
+		appendField(out, ',', notesField, notes);
+		appendTime(out, nanoTime);
+	}
+
+	/**
+	 * Appends a range encoded project assignment. From and to dates are stored
+	 * as epoch days, the days of week as bit mask.
+	 * 
+	 * @param out
+	 *            buffer to append to
+	 * @param projectAssignment
+	 *            project assignment to encode
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 */
+	public void encodeAssignmentRangePoint(StringBuilder out, ProjectAssignment projectAssignment, long nanoTime) {
+		checkTagValue(employeeTag, projectAssignment.getEmployee());
+		out.append(assignmentsMeasurement);
+		appendTag(out, employeeTag, projectAssignment.getEmployee());
+		out.append(' ').append(fromDayField).append('=').append(projectAssignment.getFrom().toEpochDay()).append('i');
+		out.append(',').append(toDayField).append('=').append(projectAssignment.getTo().toEpochDay()).append('i');
+		out.append(',').append(daysOfWeekField).append('=')
+				.append(ProjectAssignment.toDaysOfWeekMask(projectAssignment.getDaysOfWeek())).append('i');
+		out.append(',').append(skipHolidaysField).append('=').append(projectAssignment.isSkipHolidays());
+		out.append(',').append(skipEventsField).append('=').append(projectAssignment.isSkipEvents());
+		if (null != projectAssignment.getProject()) {
+			appendField(out, ',', projectField, projectAssignment.getProject());
+		}
+		if (null != projectAssignment.getStatus()) {
+			appendField(out, ',', statusField, projectAssignment.getStatus());
+		}
+		if (null != projectAssignment.getColor()) {
+			appendField(out, ',', colorField, projectAssignment.getColor());
+		}
+		if (null != projectAssignment.getRate()) {
+			appendField(out, ',', rateField, projectAssignment.getRate().doubleValue());
+		}
+		if (null != projectAssignment.getExpenses()) {
+			appendField(out, ',', expensesField, projectAssignment.getExpenses().doubleValue());
+		}
+		if (null != projectAssignment.getNotes()) {
+			appendField(out, ',', notesField, projectAssignment.getNotes());
+		}
+		appendTime(out, nanoTime);
+	}
+
+	/**
+	 * Appends a calendar point.
+	 * 
+	 * @param out
+	 *            buffer to append to
+	 * @param type
+	 *            calendar entry type (m, d or w)
+	 * @param value
+	 *            display value
+	 * @param nanoTime
+	 *            timestamp in nano seconds
+	 */
+	public void encodeCalendarPoint(StringBuilder out, String type, String value, long nanoTime) {
+		checkTagValue(CALENDAR_TYPE_TAG, type);
+		out.append(CALENDAR_MEASUREMENT);
+		appendTag(out, CALENDAR_TYPE_TAG, type);
+		appendField(out, ' ', CALENDAR_VALUE_FIELD, value);
+		appendTime(out, nanoTime);
+	}
+
+	/**
+	 * Checks that a tag value is neither null nor empty. InfluxDB rejects the
+	 * whole batch if a single line carries an empty tag value, so such points
+	 * are refused before anything is appended to the buffer.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is null or empty
+	 */
+	private static void checkTagValue(String escapedKey, String value) {
+		if (null == value || value.isEmpty()) {
+			throw new IllegalArgumentException("Missing value for tag " + escapedKey);
+		}
+	}
+
+	/**
+	 * Appends a tag with an already escaped key.
+	 */
+	private static void appendTag(StringBuilder out, String escapedKey, String value) {
+		out.append(',').append(escapedKey).append('=');
+		appendEscapedKey(out, value);
+	}
+
+	/**
+	 * Appends a string field with an already escaped key.
+	 */
+	private static void appendField(StringBuilder out, char separator, String escapedKey, String value) {
+		out.append(separator).append(escapedKey).append("=\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+
+	/**
+	 * Appends a float field with an already escaped key. The value is always
+	 * written as float literal (e.g. {@code 100.0}) so that it never depends on
+	 * how InfluxDB types a bare integer.
+	 */
+	private static void appendField(StringBuilder out, char separator, String escapedKey, double value) {
+		out.append(separator).append(escapedKey).append('=').append(value);
+	}
+
+	/**
+	 * Appends the timestamp and terminates the line.
+	 */
+	private static void appendTime(StringBuilder out, long nanoTime) {
+		out.append(' ').append(nanoTime).append('\n');
+	}
+
+	/**
+	 * Escapes a measurement name.
+	 * 
+	 * @param measurement
+	 *            measurement name
+	 * @return escaped name
+	 */
+	static String escapeMeasurement(String measurement) {
+		StringBuilder out = new StringBuilder(measurement.length() + 4);
+		for (int i = 0; i < measurement.length(); i++) {
+			char c = measurement.charAt(i);
+			if (c == ',' || c == ' ') {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Escapes a tag key, tag value or field key.
+	 * 
+	 * @param key
+	 *            key to escape
+	 * @return escaped key
+	 */
+	static String escapeKey(String key) {
+		StringBuilder out = new StringBuilder(key.length() + 4);
+		appendEscapedKey(out, key);
+		return out.toString();
+	}
+
+	/**
+	 * Appends a tag key, tag value or field key in escaped form.
+	 */
+	private static void appendEscapedKey(StringBuilder out, String key) {
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c == ',' || c == ' ' || c == '=') {
+				out.append('\\');
+			}
+			out.append(c);
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package rocks.nt.project.financials.services;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Monthly rollups of the project points per employee. The rollups hold the
+ * figures the monthly estimate aggregates from the daily points: the number of
+ * days with a rate, the number of working days, the revenue and the expenses
+ * of all points with a positive rate or on a working day.
+ *
+ * Every written point is applied as a delta. Influx merges the fields of
+ * points written to the same time, so the fields of every point are kept to
+ * subtract the previous contribution of an overwritten point. The fields are
+ * only kept for open months, i.e. months that are still expected to change.
+ * Closed months keep their rollups only. A point written to a closed month
+ * makes its rollup unknown, and the month has to be queried from influx.
+ *
+ * Points are applied when they are handed to the writer. If the write fails,
+ * the undo returned for the point restores its previous fields. If the point
+ * has been overwritten or its month closed in the meantime, the affected
+ * months become unknown instead.
+ */
+public class MonthlyRollups {
+
+	/**
+	 * Field of the number of days with a rate.
+	 */
+	static final String RATE_DAYS_FIELD = "rateDays";
+
+	/**
+	 * Field of the number of working days.
+	 */
+	static final String WORKING_DAYS_FIELD = "workingDays";
+
+	/**
+	 * Field of the revenue.
+	 */
+	static final String REVENUE_FIELD = "revenue";
+
+	/**
+	 * Field of the expenses.
+	 */
+	static final String EXPENSES_FIELD = "expenses";
+
+	/**
+	 * Field of the utilization in percent.
+	 */
+	static final String UTILIZATION_FIELD = "utilization";
+
+	/**
+	 * Rolled up figures of a month.
+	 */
+	public static final class Rollup {
+		private long points;
+		private long rateDays;
+		private long workingDays;
+		private double revenue;
+		private double expenses;
+
+		/**
+		 * Adds the contribution of a point.
+		 */
+		private void add(Fields fields, int sign) {
+			if (!fields.isCounted()) {
+				return;
+			}
+			points += sign;
+			rateDays += null != fields.rate ? sign : 0;
+			workingDays += null != fields.workingDay ? sign : 0;
+			revenue += null != fields.rate ? sign * fields.rate : 0.0;
+			expenses += null != fields.expenses ? sign * fields.expenses : 0.0;
+		}
+
+		/**
+		 * Adds the figures of another rollup.
+		 */
+		private void add(Rollup other) {
+			points += other.points;
+			rateDays += other.rateDays;
+			workingDays += other.workingDays;
+			revenue += other.revenue;
+			expenses += other.expenses;
+		}
+
+		/**
+		 * @return copy of this rollup
+		 */
+		private Rollup copy() {
+			Rollup copy = new Rollup();
+			copy.add(this);
+			return copy;
+		}
+
+		/**
+		 * @return number of points with a positive rate or on a working day
+		 */
+		public long getPoints() {
+			return points;
+		}
+
+		/**
+		 * @return number of days with a rate
+		 */
+		public long getRateDays() {
+			return rateDays;
+		}
+
+		/**
+		 * @return number of working days
+		 */
+		public long getWorkingDays() {
+			return workingDays;
+		}
+
+		/**
+		 * @return sum of the daily rates
+		 */
+		public double getRevenue() {
+			return revenue;
+		}
+
+		/**
+		 * @return sum of the daily expenses
+		 */
+		public double getExpenses() {
+			return expenses;
+		}
+
+		/**
+		 * @return utilization in percent as calculated by the estimate query, zero
+		 *         without working days
+		 */
+		public double getUtilization() {
+			return workingDays == 0 ? 0.0 : 100.0 * (rateDays - workingDays) / workingDays;
+		}
+	}
+
+	/**
+	 * Fields of a point, merged over all writes to its time.
+	 */
+	private static final class Fields {
+		private String yearMonth;
+		private Double rate;
+		private Double expenses;
+		private Boolean workingDay;
+		private long version;
+
+		/**
+		 * @return copy of the written fields
+		 */
+		private Fields copy() {
+			Fields copy = new Fields();
+			copy.yearMonth = yearMonth;
+			copy.rate = rate;
+			copy.expenses = expenses;
+			copy.workingDay = workingDay;
+			return copy;
+		}
+
+		/**
+		 * @return true if the point passes the filter of the estimate query
+		 */
+		private boolean isCounted() {
+			return (null != rate && rate > 0) || Boolean.TRUE.equals(workingDay);
+		}
+	}
+
+	/**
+	 * Fields of the points by employee and time.
+	 */
+	private final Map<String, Map<Long, Fields>> points = new HashMap<>();
+
+	/**
+	 * Rollups by year-month and employee.
+	 */
+	private final Map<String, Map<String, Rollup>> rollups = new HashMap<>();
+
+	/**
+	 * Employees by year-month whose rollups changed since the last drain.
+	 */
+	private final Map<String, Set<String>> changed = new HashMap<>();
+
+	/**
+	 * Index of the first open month, see {@link #monthIndex(String)}. The fields
+	 * of the points of earlier months are dropped.
+	 */
+	private int firstOpenMonth = Integer.MIN_VALUE;
+
+	/**
+	 * Closed months whose rollups are unknown because points have been written
+	 * to them.
+	 */
+	private final Set<String> unknownMonths = new HashSet<>();
+
+	/**
+	 * Number of applied points, used as version of the fields of a point.
+	 */
+	private long applied;
+
+	/**
+	 * Applies a project point loaded from influx. Every point must be loaded
+	 * once, with all its fields merged.
+	 *
+	 * @param employee
+	 *            employee
+	 * @param yearMonth
+	 *            year-month tag
+	 * @param nanoTime
+	 *            time of the point
+	 * @param rate
+	 *            rate or null
+	 * @param expenses
+	 *            daily expenses or null
+	 * @param workingDay
+	 *            working day flag or null
+	 */
+	public synchronized void load(String employee, String yearMonth, long nanoTime, Double rate, Double expenses,
+			Boolean workingDay) {
+		if (null == employee || null == yearMonth || monthIndex(yearMonth) >= firstOpenMonth) {
+			apply(employee, yearMonth, nanoTime, rate, expenses, workingDay);
+			return;
+		}
+		// the point is not overwritten anymore, so its fields are not kept
+		Fields fields = new Fields();
+		fields.rate = rate;
+		fields.expenses = expenses;
+		fields.workingDay = workingDay;
+		rollup(yearMonth, employee).add(fields, 1);
+		changed.computeIfAbsent(yearMonth, m -> new HashSet<>()).add(employee);
+	}
+
+	/**
+	 * Applies a project point handed to the writer.
+	 *
+	 * @param employee
+	 *            employee
+	 * @param yearMonth
+	 *            year-month tag
+	 * @param nanoTime
+	 *            time of the point
+	 * @param rate
+	 *            written rate or null
+	 * @param expenses
+	 *            written daily expenses or null
+	 * @param workingDay
+	 *            written working day flag or null
+	 * @return undo of the point in case writing it fails, null if nothing has to
+	 *         be undone
+	 */
+	public synchronized Runnable apply(String employee, String yearMonth, long nanoTime, Double rate,
+			Double expenses, Boolean workingDay) {
+		if (null == employee || null == yearMonth || (null == rate && null == expenses && null == workingDay)) {
+			return null;
+		}
+		if (monthIndex(yearMonth) < firstOpenMonth) {
+			// the previous contribution of the point is unknown
+			forget(yearMonth);
+			return null;
+		}
+		Fields fields = points.computeIfAbsent(employee, e -> new HashMap<>()).computeIfAbsent(nanoTime,
+				t -> new Fields());
+		Fields previous = null == fields.yearMonth ? null : fields.copy();
+		if (null != fields.yearMonth) {
+			rollup(fields.yearMonth, employee).add(fields, -1);
+		}
+		fields.yearMonth = yearMonth;
+		if (null != rate) {
+			fields.rate = rate;
+		}
+		if (null != expenses) {
+			fields.expenses = expenses;
+		}
+		if (null != workingDay) {
+			fields.workingDay = workingDay;
+		}
+		fields.version = ++applied;
+		rollup(yearMonth, employee).add(fields, 1);
+		changed.computeIfAbsent(yearMonth, m -> new HashSet<>()).add(employee);
+		long version = fields.version;
+		return () -> revert(employee, nanoTime, fields, version, previous);
+	}
+
+	/**
+	 * Reverts a point whose write failed.
+	 *
+	 * @param employee
+	 *            employee
+	 * @param nanoTime
+	 *            time of the point
+	 * @param written
+	 *            fields of the point after it has been applied
+	 * @param version
+	 *            version of the fields after the point has been applied
+	 * @param previous
+	 *            fields of the point before it has been applied, null if the
+	 *            point was new
+	 */
+	private synchronized void revert(String employee, long nanoTime, Fields written, long version,
+			Fields previous) {
+		Map<Long, Fields> employeePoints = points.get(employee);
+		if (null == employeePoints || employeePoints.get(nanoTime) != written || written.version != version) {
+			// overwritten or closed since, the fields in influx are not known here
+			forget(written.yearMonth);
+			if (null != previous) {
+				forget(previous.yearMonth);
+			}
+			return;
+		}
+		rollup(written.yearMonth, employee).add(written, -1);
+		changed.computeIfAbsent(written.yearMonth, m -> new HashSet<>()).add(employee);
+		if (null == previous) {
+			employeePoints.remove(nanoTime);
+			if (employeePoints.isEmpty()) {
+				points.remove(employee);
+			}
+			return;
+		}
+		written.yearMonth = previous.yearMonth;
+		written.rate = previous.rate;
+		written.expenses = previous.expenses;
+		written.workingDay = previous.workingDay;
+		written.version = ++applied;
+		rollup(written.yearMonth, employee).add(written, 1);
+		changed.computeIfAbsent(written.yearMonth, m -> new HashSet<>()).add(employee);
+	}
+
+	/**
+	 * Makes the rollup of a month unknown.
+	 */
+	private void forget(String yearMonth) {
+		rollups.remove(yearMonth);
+		changed.remove(yearMonth);
+		unknownMonths.add(yearMonth);
+	}
+
+	/**
+	 * Closes the months before the given one and drops the fields of their
+	 * points.
+	 *
+	 * @param year
+	 *            year of the first open month
+	 * @param month
+	 *            month of year of the first open month, 1 to 12
+	 */
+	public synchronized void closeMonthsBefore(int year, int month) {
+		int first = year * 12 + month - 1;
+		if (first <= firstOpenMonth) {
+			return;
+		}
+		firstOpenMonth = first;
+		for (Iterator<Map<Long, Fields>> employees = points.values().iterator(); employees.hasNext();) {
+			Map<Long, Fields> employeePoints = employees.next();
+			employeePoints.values().removeIf(fields -> monthIndex(fields.yearMonth) < first);
+			if (employeePoints.isEmpty()) {
+				employees.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sums the rollups of all employees of a month.
+	 *
+	 * @param yearMonth
+	 *            year-month tag
+	 * @return rollup of the month or null if it is unknown
+	 */
+	public synchronized Rollup getMonth(String yearMonth) {
+		if (unknownMonths.contains(yearMonth)) {
+			return null;
+		}
+		Rollup month = new Rollup();
+		Map<String, Rollup> employees = rollups.get(yearMonth);
+		if (null != employees) {
+			for (Rollup rollup : employees.values()) {
+				month.add(rollup);
+			}
+		}
+		return month;
+	}
+
+	/**
+	 * Returns copies of the rollups that changed since the last call and resets
+	 * the changes.
+	 *
+	 * @return changed rollups by year-month and employee
+	 */
+	public synchronized Map<String, Map<String, Rollup>> drainChanges() {
+		Map<String, Map<String, Rollup>> drained = new TreeMap<>();
+		for (Map.Entry<String, Set<String>> month : changed.entrySet()) {
+			Map<String, Rollup> employees = new TreeMap<>();
+			for (String employee : month.getValue()) {
+				employees.put(employee, rollup(month.getKey(), employee).copy());
+			}
+			drained.put(month.getKey(), employees);
+		}
+		changed.clear();
+		return drained;
+	}
+
+	/**
+	 * Marks drained rollups as changed again, e.g. because writing them failed.
+	 *
+	 * @param drained
+	 *            drained rollups by year-month and employee
+	 */
+	public synchronized void markChanged(Map<String, Map<String, Rollup>> drained) {
+		for (Map.Entry<String, Map<String, Rollup>> month : drained.entrySet()) {
+			if (!unknownMonths.contains(month.getKey())) {
+				changed.computeIfAbsent(month.getKey(), m -> new HashSet<>()).addAll(month.getValue().keySet());
+			}
+		}
+	}
+
+	/**
+	 * @return index of the given year-month tag, e.g. 2017-3, that increases by
+	 *         one per month
+	 */
+	private static int monthIndex(String yearMonth) {
+		int separator = yearMonth.indexOf('-');
+		return Integer.parseInt(yearMonth.substring(0, separator)) * 12
+				+ Integer.parseInt(yearMonth.substring(separator + 1)) - 1;
+	}
+
+	/**
+	 * @return rollup of the given month and employee, created if missing
+	 */
+	private Rollup rollup(String yearMonth, String employee) {
+		return rollups.computeIfAbsent(yearMonth, m -> new HashMap<>()).computeIfAbsent(employee, e -> new Rollup());
+	}
+}
@@ -0,0 +1,139 @@
+package rocks.nt.project.financials.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.influxdb.InfluxDB.ConsistencyLevel;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.influxdb.dto.Point.Builder;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Batch based on {@link Point.Builder} and {@link BatchPoints}. Fallback for
+ * the {@link LineProtocolBatch}.
+ */
+public class PointBatch implements InfluxBatch {
+
+	/**
+	 * Schema snapshot used for all points of this batch.
+	 */
+	private final InfluxSchema schema;
+
+	/**
+	 * Collected points.
+	 */
+	private final BatchPoints batchPoints;
+
+	/**
+	 * Constructor.
+	 */
+	public PointBatch() {
+		schema = InfluxSchema.get();
+		batchPoints = BatchPoints
+				.database(schema.getDatabase())
+				.retentionPolicy(schema.getRetentionPolicy())
+				.consistency(ConsistencyLevel.ALL).build();
+	}
+
+	@Override
+	public void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime,
+			Boolean workingDay) {
+		Builder pointBuilder = Point
+				.measurement(schema.getProjectsMeasurement())
+				.time(nanoTime, TimeUnit.NANOSECONDS)
+				.tag(schema.getEmployeeTag(), projectAssignment.getEmployee())
+				.tag(schema.getYearMonthTag(), yearMonth);
+		if (null != projectAssignment.getProject()) {
+			pointBuilder.addField(schema.getProjectField(), projectAssignment.getProject());
+		}
+		if (null != projectAssignment.getStatus()) {
+			pointBuilder.addField(schema.getStatusField(), projectAssignment.getStatus());
+		}
+		if (null != projectAssignment.getColor()) {
+			pointBuilder.addField(schema.getColorField(), projectAssignment.getColor());
+		}
+		if (null != projectAssignment.getRate()) {
+			pointBuilder.addField(schema.getRateField(), projectAssignment.getRate());
+		}
+		if (null != projectAssignment.getExpenses()) {
+			pointBuilder.addField(schema.getDailyExpensesField(), projectAssignment.getExpenses());
+		}
+		if (null != projectAssignment.getNotes()) {
+			pointBuilder.addField(schema.getNotesField(), projectAssignment.getNotes());
+		}
+		if (null != workingDay) {
+			pointBuilder.addField(schema.getWorkingDayField(), workingDay.booleanValue());
+		}
+		batchPoints.point(pointBuilder.build());
+	}
+
+	@Override
+	public void addUnassignedProjectPoint(int index, String yearMonth, String project, String color, String notes,
+			long nanoTime) {
+		Builder pointBuilder = Point
+				.measurement(schema.getUnassignedProjectsMeasurement())
+				.time(nanoTime, TimeUnit.NANOSECONDS)
+				.tag(schema.getIndexTag(),
+						String.valueOf(index))
+				.tag(schema.getYearMonthTag(), yearMonth)
+				.addField(schema.getColorField(), color)
+				.addField(schema.getProjectField(), project)
+				.addField(schema.getNotesField(), notes);
+		batchPoints.point(pointBuilder.build());
+	}
+
+	@Override
+	public void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime) {
+		Builder pointBuilder = Point.measurement(schema.getAssignmentsMeasurement())
+				.time(nanoTime, TimeUnit.NANOSECONDS)
+				.tag(schema.getEmployeeTag(), projectAssignment.getEmployee())
+				.addField(schema.getFromDayField(), projectAssignment.getFrom().toEpochDay())
+				.addField(schema.getToDayField(), projectAssignment.getTo().toEpochDay())
+				.addField(schema.getDaysOfWeekField(),
+						(long) ProjectAssignment.toDaysOfWeekMask(projectAssignment.getDaysOfWeek()))
+				.addField(schema.getSkipHolidaysField(), projectAssignment.isSkipHolidays())
+				.addField(schema.getSkipEventsField(), projectAssignment.isSkipEvents());
+		if (null != projectAssignment.getProject()) {
+			pointBuilder.addField(schema.getProjectField(), projectAssignment.getProject());
+		}
+		if (null != projectAssignment.getStatus()) {
+			pointBuilder.addField(schema.getStatusField(), projectAssignment.getStatus());
+		}
+		if (null != projectAssignment.getColor()) {
+			pointBuilder.addField(schema.getColorField(), projectAssignment.getColor());
+		}
+		if (null != projectAssignment.getRate()) {
+			pointBuilder.addField(schema.getRateField(), projectAssignment.getRate());
+		}
+		if (null != projectAssignment.getExpenses()) {
+			pointBuilder.addField(schema.getDailyExpensesField(), projectAssignment.getExpenses());
+		}
+		if (null != projectAssignment.getNotes()) {
+			pointBuilder.addField(schema.getNotesField(), projectAssignment.getNotes());
+		}
+		batchPoints.point(pointBuilder.build());
+	}
+
+	@Override
+	public void addCalendarPoint(String type, String value, long nanoTime) {
+		batchPoints.point(Point.measurement("calendar").time(nanoTime, TimeUnit.NANOSECONDS).tag("type", type)
+				.addField("value", value).build());
+	}
+
+	@Override
+	public void addPoint(Point point) {
+		batchPoints.point(point);
+	}
+
+	@Override
+	public int size() {
+		return batchPoints.getPoints().size();
+	}
+
+	@Override
+	public CompletableFuture<Void> writeTo(InfluxWriter writer) {
+		return writer.write(batchPoints);
+	}
+}
@@ -33,8 +33,26 @@ public class PropertiesService {
 	public static final String INFLUX_PW_KEY = "influx.pw";
 	public static final String INFLUX_DATABASE_KEY = "influx.database";
 	public static final String INFLUX_RETENTION_POLICY_KEY = "influx.retentionPolicy";
+	public static final String INFLUX_WRITE_QUEUE_CAPACITY_KEY = "influx.write.queueCapacity";
+	public static final String INFLUX_WRITE_BATCH_SIZE_KEY = "influx.write.batchSize";
+	public static final String INFLUX_WRITE_FLUSH_INTERVAL_KEY = "influx.write.flushIntervalMillis";
+	public static final String INFLUX_WRITE_ENCODER_KEY = "influx.write.encoder";
+	public static final String INFLUX_QUERY_CHUNK_SIZE_KEY = "influx.query.chunkSize";
+	public static final String INFLUX_QUERY_FIRST_CHUNK_TIMEOUT_KEY = "influx.query.firstChunkTimeoutMillis";
+	public static final String INFLUX_SPOOL_ENABLED_KEY = "influx.spool.enabled";
+	public static final String INFLUX_SPOOL_SEGMENT_BYTES_KEY = "influx.spool.segmentBytes";
+	public static final String INFLUX_ASSIGN_PARALLELISM_KEY = "influx.assign.parallelism";
+	public static final String INFLUX_STORAGE_MODE_KEY = "influx.storage.mode";
+	public static final String INFLUX_STORAGE_MATERIALIZE_DAYS_KEY = "influx.storage.materializeDays";
+	public static final String INFLUX_INDEX_DAY_GRID_KEY = "influx.index.dayGrid";
+	public static final String INFLUX_ROLLUPS_ENABLED_KEY = "influx.rollups.enabled";
+	public static final String INFLUX_ROLLUPS_FLUSH_SECONDS_KEY = "influx.rollups.flushSeconds";
+	public static final String INFLUX_ROLLUPS_OPEN_MONTHS_KEY = "influx.rollups.openMonths";
+	public static final String INFLUX_CATALOG_TTL_SECONDS_KEY = "influx.catalog.ttlSeconds";
 	public static final String INFLUX_M_PROJECTS_KEY = "influx.measurement.projects";
 	public static final String INFLUX_M_UNASSIGNED_PROJECTS_KEY = "influx.measurement.unassignedProjects";
+	public static final String INFLUX_M_ASSIGNMENTS_KEY = "influx.measurement.assignments";
+	public static final String INFLUX_M_ROLLUPS_KEY = "influx.measurement.rollups";
 	public static final String INFLUX_T_EMPLOYEE_KEY = "influx.tag.employee";
 	public static final String INFLUX_T_YEAR_MONTH_KEY = "influx.tag.yearMonth";
 	public static final String INFLUX_T_INDEX_KEY = "influx.tag.uaproject.index";
@@ -45,6 +63,11 @@ public class PropertiesService {
 	public static final String INFLUX_F_DAILY_EXPENSES_KEY = "influx.field.dailyExpenses";
 	public static final String INFLUX_F_NOTES_KEY = "influx.field.notes";
 	public static final String INFLUX_F_WORKINGDAY_KEY = "influx.field.workingDay";
+	public static final String INFLUX_F_FROM_DAY_KEY = "influx.field.fromDay";
+	public static final String INFLUX_F_TO_DAY_KEY = "influx.field.toDay";
+	public static final String INFLUX_F_DAYS_OF_WEEK_KEY = "influx.field.daysOfWeek";
+	public static final String INFLUX_F_SKIP_HOLIDAYS_KEY = "influx.field.skipHolidays";
+	public static final String INFLUX_F_SKIP_EVENTS_KEY = "influx.field.skipEvents";
 	public static final String INFLUX_V_PROJECT_WE_KEY = "influx.value.weekend";
 	public static final String INFLUX_V_PROJECT_NA_KEY = "influx.value.notAvailable";
 	public static final String INFLUX_V_PROJECT_REMOVED_KEY = "influx.value.projectRemoved";
@@ -73,6 +96,18 @@ public class PropertiesService {
 	public static final String GRAFANA_COLOR_NA_KEY = "grafana.value.color.notAvailable";
 	public static final String GRAFANA_COLOR_UNASSIGNED_KEY = "grafana.value.color.unassigned";
 	public static final String GRAFANA_COLOR_DEFAULT_KEY = "grafana.value.color.default";
+	public static final String HOLIDAYS_STATE_KEY = "holidays.state";
+	public static final String HOLIDAYS_REMOTE_CHECK_KEY = "holidays.remote.crossCheck";
+	public static final String HOLIDAYS_REMOTE_OVERRIDE_KEY = "holidays.remote.override";
+	public static final String HOLIDAYS_CACHE_MAX_AGE_DAYS_KEY = "holidays.cache.maxAgeDays";
+	public static final String CALENDAR_HORIZON_MONTHS_KEY = "calendar.horizonMonths";
+	public static final String CALENDAR_INTERVAL_MINUTES_KEY = "calendar.extendIntervalMinutes";
+	public static final String EXECUTORS_VIRTUAL_THREADS_KEY = "executors.virtualThreads";
+	public static final String EXECUTORS_IO_THREADS_KEY = "executors.io.threads";
+	public static final String EXECUTORS_QUEUE_CAPACITY_KEY = "executors.queueCapacity";
+	public static final String COSTS_MEAN_WINDOW_MONTHS_KEY = "costs.meanWindowMonths";
+	public static final String ASSIGNMENTS_CHUNK_SIZE_KEY = "assignments.chunkSize";
+	public static final String REST_WRITE_TIMEOUT_SECONDS_KEY = "rest.writeTimeoutSeconds";
 
 	private static final String PROPERTY_PATH = "/WEB-INF/properties.conf";
 
@@ -86,7 +121,7 @@ public class PropertiesService {
 	}
 
 	private final Properties defaultProperties = new Properties();
-	private final Properties userProperties = new Properties();
+	private volatile Properties userProperties = new Properties();
 
 	public static void main(String[] args) {
 		PropertiesService.getInstance();
@@ -104,7 +139,7 @@ public class PropertiesService {
 			throw new RuntimeException(e);
 		}
 
-		loadUserProperties();
+		loadUserProperties(userProperties);
 		LOGGER.info("Using following properties:");
 		LOGGER.info("-------------------------------------------------------");
 		for (Object keyObj : defaultProperties.keySet()) {
@@ -114,11 +149,20 @@ public class PropertiesService {
 		LOGGER.info("-------------------------------------------------------");
 	}
 
-	private void loadUserProperties() {
+	/**
+	 * Reloads the user properties from the APM_PROJECTS_HOME directory.
+	 */
+	public void reloadUserProperties() {
+		Properties properties = new Properties();
+		loadUserProperties(properties);
+		userProperties = properties;
+	}
+
+	private void loadUserProperties(Properties properties) {
 		String path = System.getenv(APM_PROJECTS_HOME) + File.separator + "properties.conf";
 		if (null != path) {
 			try {
-				userProperties.load(new FileReader(path));
+				properties.load(new FileReader(path));
 			} catch (IOException e) {
 				LOGGER.info("Couldn't load user properties from " + path + ". Using default properties instead.");
 			}
@@ -0,0 +1,322 @@
+package rocks.nt.project.financials.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-built InfluxQL statement with typed parameter slots. The literal parts
+ * are assembled and escaped once, binding only appends the escaped parameter
+ * values. Each template records the latency of its executions.
+ */
+public final class QueryTemplate {
+
+	/**
+	 * Kinds of parameters.
+	 */
+	private enum Parameter {
+		/**
+		 * Single quoted string literal.
+		 */
+		STRING,
+
+		/**
+		 * Number, e.g. a timestamp.
+		 */
+		NUMBER,
+
+		/**
+		 * Collection of strings bound as anchored regular expression matching any
+		 * of them.
+		 */
+		STRING_SET
+	}
+
+	/**
+	 * Template name used for statistics.
+	 */
+	private final String name;
+
+	/**
+	 * Literal parts. There is one more segment than parameters.
+	 */
+	private final String[] segments;
+
+	/**
+	 * Parameter kinds.
+	 */
+	private final Parameter[] parameters;
+
+	/**
+	 * Length of all literal parts.
+	 */
+	private final int literalLength;
+
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+
+	/**
+	 * Use {@link Builder} for construction.
+	 */
+	private QueryTemplate(String name, List<String> segments, List<Parameter> parameters) {
+		this.name = name;
+		this.segments = segments.toArray(new String[segments.size()]);
+		this.parameters = parameters.toArray(new Parameter[parameters.size()]);
+		int length = 0;
+		for (String segment : segments) {
+			length += segment.length();
+		}
+		this.literalLength = length;
+	}
+
+	/**
+	 * Creates a builder for a new template.
+	 *
+	 * @param name
+	 *            template name used for statistics
+	 * @return builder
+	 */
+	public static Builder builder(String name) {
+		return new Builder(name);
+	}
+
+	/**
+	 * Binds the given parameter values.
+	 *
+	 * @param values
+	 *            one value per parameter slot in the order of the slots
+	 * @return query statement
+	 */
+	public String bind(Object... values) {
+		if (values.length != parameters.length) {
+			throw new IllegalArgumentException(
+					"Query " + name + " expects " + parameters.length + " parameters but got " + values.length);
+		}
+		StringBuilder query = new StringBuilder(literalLength + 32 * values.length);
+		for (int i = 0; i < parameters.length; i++) {
+			query.append(segments[i]);
+			switch (parameters[i]) {
+			case STRING:
+				appendString(query, (String) values[i]);
+				break;
+			case NUMBER:
+				query.append(((Number) values[i]).toString());
+				break;
+			case STRING_SET:
+				appendStringSet(query, (Collection<?>) values[i]);
+				break;
+			default:
+				throw new IllegalStateException("Unknown parameter kind " + parameters[i]);
+			}
+		}
+		query.append(segments[parameters.length]);
+		return query.toString();
+	}
+
+	/**
+	 * Binds several sets of parameter values into a single multi-statement
+	 * query.
+	 *
+	 * @param valueSets
+	 *            parameter values of each statement
+	 * @return statements separated by semicolons
+	 */
+	public String bindEach(List<Object[]> valueSets) {
+		StringBuilder query = new StringBuilder();
+		for (Object[] values : valueSets) {
+			if (query.length() > 0) {
+				query.append("; ");
+			}
+			query.append(bind(values));
+		}
+		return query.toString();
+	}
+
+	/**
+	 * Records an execution of this template.
+	 *
+	 * @param nanos
+	 *            execution time in nano seconds
+	 */
+	public void record(long nanos) {
+		executions.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * @return the template name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of recorded executions
+	 */
+	public long getExecutions() {
+		return executions.sum();
+	}
+
+	/**
+	 * @return mean execution time in milli seconds
+	 */
+	public double getMeanMillis() {
+		long count = executions.sum();
+		return count == 0 ? 0.0 : totalNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * @return maximum execution time in milli seconds
+	 */
+	public double getMaxMillis() {
+		return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Appends a single quoted string literal.
+	 */
+	private static void appendString(StringBuilder query, String value) {
+		query.append('\'');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\'' || c == '\\') {
+				query.append('\\');
+			}
+			query.append(c);
+		}
+		query.append('\'');
+	}
+
+	/**
+	 * Appends a regular expression literal matching exactly one of the given
+	 * values.
+	 */
+	private static void appendStringSet(StringBuilder query, Collection<?> values) {
+		query.append("/^(?:");
+		boolean first = true;
+		for (Object value : values) {
+			if (!first) {
+				query.append('|');
+			}
+			first = false;
+			String str = value.toString();
+			for (int i = 0; i < str.length(); i++) {
+				char c = str.charAt(i);
+				if ("\\/^$.|?*+()[]{}".indexOf(c) >= 0) {
+					query.append('\\');
+				}
+				query.append(c);
+			}
+		}
+		query.append(")$/");
+	}
+
+	/**
+	 * Builder of query templates.
+	 */
+	public static final class Builder {
+
+		private final String name;
+		private final List<String> segments = new ArrayList<>();
+		private final List<Parameter> parameters = new ArrayList<>();
+		private StringBuilder current = new StringBuilder();
+
+		private Builder(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Appends literal query text.
+		 *
+		 * @param text
+		 *            query text
+		 * @return this builder
+		 */
+		public Builder text(String text) {
+			current.append(text);
+			return this;
+		}
+
+		/**
+		 * Appends a double quoted identifier such as a measurement, tag or field
+		 * key.
+		 *
+		 * @param identifier
+		 *            identifier
+		 * @return this builder
+		 */
+		public Builder identifier(String identifier) {
+			current.append('"');
+			for (int i = 0; i < identifier.length(); i++) {
+				char c = identifier.charAt(i);
+				if (c == '"' || c == '\\') {
+					current.append('\\');
+				}
+				current.append(c);
+			}
+			current.append('"');
+			return this;
+		}
+
+		/**
+		 * Appends a single quoted string literal known when building the template.
+		 *
+		 * @param value
+		 *            string value
+		 * @return this builder
+		 */
+		public Builder literal(String value) {
+			appendString(current, value);
+			return this;
+		}
+
+		/**
+		 * Appends a string parameter slot.
+		 *
+		 * @return this builder
+		 */
+		public Builder stringParameter() {
+			return parameter(Parameter.STRING);
+		}
+
+		/**
+		 * Appends a number parameter slot.
+		 *
+		 * @return this builder
+		 */
+		public Builder numberParameter() {
+			return parameter(Parameter.NUMBER);
+		}
+
+		/**
+		 * Appends a parameter slot for a collection of strings to be used with
+		 * the =~ operator.
+		 *
+		 * @return this builder
+		 */
+		public Builder stringSetParameter() {
+			return parameter(Parameter.STRING_SET);
+		}
+
+		/**
+		 * @return the template
+		 */
+		public QueryTemplate build() {
+			List<String> allSegments = new ArrayList<>(segments);
+			allSegments.add(current.toString());
+			return new QueryTemplate(name, allSegments, parameters);
+		}
+
+		private Builder parameter(Parameter parameter) {
+			segments.add(current.toString());
+			current = new StringBuilder();
+			parameters.add(parameter);
+			return this;
+		}
+	}
+}
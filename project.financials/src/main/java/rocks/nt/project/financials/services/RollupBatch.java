@@ -0,0 +1,126 @@
+package rocks.nt.project.financials.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.influxdb.dto.Point;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Batch that records the project points added to a wrapped batch and applies
+ * them to the monthly rollups as soon as the batch is handed to the writer, so
+ * estimates see the points before they are flushed. Batches must be handed to
+ * the writer in the order of the writes. If the write fails, the updates are
+ * undone. The updates and undos are handed to an executor, which may defer
+ * them while the rollups are being loaded.
+ */
+public class RollupBatch implements InfluxBatch {
+
+	/**
+	 * Wrapped batch.
+	 */
+	private final InfluxBatch delegate;
+
+	/**
+	 * Monthly rollups to update.
+	 */
+	private final MonthlyRollups rollups;
+
+	/**
+	 * Applies the rollup updates.
+	 */
+	private final Executor updateExecutor;
+
+	/**
+	 * Rollup updates to apply when written, each returning its undo or null.
+	 */
+	private final List<Supplier<Runnable>> updates = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param delegate
+	 *            batch to wrap
+	 * @param rollups
+	 *            monthly rollups to update
+	 * @param updateExecutor
+	 *            applies the rollup updates
+	 */
+	public RollupBatch(InfluxBatch delegate, MonthlyRollups rollups, Executor updateExecutor) {
+		this.delegate = delegate;
+		this.rollups = rollups;
+		this.updateExecutor = updateExecutor;
+	}
+
+	@Override
+	public void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime,
+			Boolean workingDay) {
+		delegate.addProjectPoint(projectAssignment, yearMonth, nanoTime, workingDay);
+		String employee = projectAssignment.getEmployee();
+		Double rate = projectAssignment.getRate();
+		Double expenses = projectAssignment.getExpenses();
+		updates.add(() -> rollups.apply(employee, yearMonth, nanoTime, rate, expenses, workingDay));
+	}
+
+	@Override
+	public void addUnassignedProjectPoint(int index, String yearMonth, String project, String color, String notes,
+			long nanoTime) {
+		delegate.addUnassignedProjectPoint(index, yearMonth, project, color, notes, nanoTime);
+	}
+
+	@Override
+	public void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime) {
+		delegate.addAssignmentRangePoint(projectAssignment, nanoTime);
+	}
+
+	@Override
+	public void addCalendarPoint(String type, String value, long nanoTime) {
+		delegate.addCalendarPoint(type, value, nanoTime);
+	}
+
+	@Override
+	public void addPoint(Point point) {
+		delegate.addPoint(point);
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public CompletableFuture<Void> writeTo(InfluxWriter writer) {
+		List<Supplier<Runnable>> written = new ArrayList<>(updates);
+		updates.clear();
+		List<Runnable> undos = new ArrayList<>();
+		updateExecutor.execute(() -> {
+			for (Supplier<Runnable> update : written) {
+				Runnable undo = update.get();
+				if (null != undo) {
+					undos.add(undo);
+				}
+			}
+		});
+		Runnable rollback = () -> updateExecutor.execute(() -> {
+			for (int i = undos.size() - 1; i >= 0; i--) {
+				undos.get(i).run();
+			}
+		});
+		CompletableFuture<Void> future;
+		try {
+			future = delegate.writeTo(writer);
+		} catch (RuntimeException e) {
+			rollback.run();
+			throw e;
+		}
+		return future.whenComplete((result, throwable) -> {
+			if (null != throwable) {
+				rollback.run();
+			}
+		});
+	}
+}
@@ -0,0 +1,44 @@
+package rocks.nt.project.financials.services;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the services in the background while the servlet context starts, so
+ * that the first request does not pay for connecting to influxDB and loading
+ * the startup state. Flushes pending writes and then stops the executors when
+ * the servlet context is destroyed.
+ */
+@WebListener
+public class ServiceLifecycleListener implements ServletContextListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ServiceLifecycleListener.class);
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		// does not block an I/O thread while the startup state is loaded on the
+		// same executor
+		CompletableFuture
+				.supplyAsync(InfluxService::getInstance,
+						ExecutorRegistry.getInstance().get(ExecutorRegistry.INFLUX_IO))
+				.thenCompose(InfluxService::whenReady)
+				.thenRun(() -> LOGGER.info("Services started."))
+				.exceptionally(throwable -> {
+					LOGGER.error("Failed starting the services.", throwable);
+					return null;
+				});
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		// the pending writes may still complete callbacks on the executors
+		InfluxService.shutdown();
+		ExecutorRegistry.getInstance().shutdown();
+	}
+}
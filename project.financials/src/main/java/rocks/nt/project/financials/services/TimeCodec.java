@@ -0,0 +1,295 @@
+package rocks.nt.project.financials.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Conversions between epoch days and influx timestamps using plain
+ * arithmetic. UTC offsets of the system time zone are looked up in per-year
+ * tables that are filled once, so conversions do not allocate.
+ */
+public final class TimeCodec {
+
+	private static final long SECONDS_PER_DAY = 86400L;
+	private static final long SECONDS_PER_HOUR = 3600L;
+	private static final long MILLIS_PER_SECOND = 1000L;
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	/**
+	 * First year with a cached offset table.
+	 */
+	private static final int FIRST_CACHED_YEAR = 1900;
+
+	/**
+	 * Number of years with a cached offset table.
+	 */
+	private static final int CACHED_YEARS = 500;
+
+	/**
+	 * System time zone.
+	 */
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+
+	/**
+	 * Rules of the system time zone.
+	 */
+	private static final ZoneRules ZONE_RULES = ZONE.getRules();
+
+	/**
+	 * Offset tables indexed by year.
+	 */
+	private static final AtomicReferenceArray<YearTable> YEAR_TABLES = new AtomicReferenceArray<>(CACHED_YEARS);
+
+	/**
+	 * Static helper.
+	 */
+	private TimeCodec() {
+	}
+
+	/**
+	 * Converts a local date and hour of the system time zone to an epoch
+	 * timestamp.
+	 *
+	 * @param epochDay
+	 *            local date as epoch day
+	 * @param hour
+	 *            hour of day
+	 * @return epoch timestamp in nano seconds
+	 */
+	public static long toEpochNanos(long epochDay, int hour) {
+		return (epochDay * SECONDS_PER_DAY + hour * SECONDS_PER_HOUR - offsetSeconds(epochDay)) * NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Converts an epoch timestamp to the local date of the system time zone.
+	 *
+	 * @param epochMillis
+	 *            epoch timestamp in milli seconds
+	 * @return local date as epoch day
+	 */
+	public static long localEpochDayFromMillis(long epochMillis) {
+		long epochSecond = Math.floorDiv(epochMillis, MILLIS_PER_SECOND);
+		long epochDay = Math.floorDiv(epochSecond + offsetSeconds(Math.floorDiv(epochSecond, SECONDS_PER_DAY)),
+				SECONDS_PER_DAY);
+		// close to a daylight saving transition the estimate may be one day off
+		if (epochSecond < startOfDay(epochDay)) {
+			return epochDay - 1;
+		}
+		if (epochSecond >= startOfDay(epochDay + 1)) {
+			return epochDay + 1;
+		}
+		return epochDay;
+	}
+
+	/**
+	 * Converts an epoch timestamp to the UTC date.
+	 *
+	 * @param epochMillis
+	 *            epoch timestamp in milli seconds
+	 * @return UTC date as epoch day
+	 */
+	public static long utcEpochDayFromMillis(long epochMillis) {
+		return Math.floorDiv(epochMillis, MILLIS_PER_SECOND * SECONDS_PER_DAY);
+	}
+
+	/**
+	 * Extracts the UTC date of an RFC3339 timestamp as returned by influx, e.g.
+	 * 2017-10-23T10:00:00Z.
+	 *
+	 * @param timestamp
+	 *            timestamp string
+	 * @return UTC date as epoch day
+	 */
+	public static long utcEpochDayFromIso(CharSequence timestamp) {
+		int year = digits(timestamp, 0, 4);
+		int month = digits(timestamp, 5, 7);
+		int day = digits(timestamp, 8, 10);
+		return toEpochDay(year, month, day);
+	}
+
+	/**
+	 * Converts an RFC3339 timestamp as returned by influx, e.g.
+	 * 2017-10-23T10:00:00Z, to epoch nano seconds. Fractions of a second are
+	 * ignored.
+	 *
+	 * @param timestamp
+	 *            timestamp string
+	 * @return epoch timestamp in nano seconds
+	 */
+	public static long utcEpochNanosFromIso(CharSequence timestamp) {
+		long secondOfDay = digits(timestamp, 11, 13) * SECONDS_PER_HOUR + digits(timestamp, 14, 16) * 60L
+				+ digits(timestamp, 17, 19);
+		return (utcEpochDayFromIso(timestamp) * SECONDS_PER_DAY + secondOfDay) * NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Computes the epoch day of a date in the proleptic gregorian calendar.
+	 *
+	 * @param year
+	 *            year
+	 * @param month
+	 *            month of year, 1 to 12
+	 * @param day
+	 *            day of month
+	 * @return epoch day
+	 */
+	public static long toEpochDay(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Computes the year of an epoch day.
+	 *
+	 * @param epochDay
+	 *            epoch day
+	 * @return year
+	 */
+	public static int yearOf(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		return (int) (yearOfEra + era * 400 + (shiftedMonth >= 10 ? 1 : 0));
+	}
+
+	/**
+	 * Computes the month of an epoch day.
+	 *
+	 * @param epochDay
+	 *            epoch day
+	 * @return month of year, 1 to 12
+	 */
+	public static int monthOf(long epochDay) {
+		long shiftedMonth = (5 * marchBasedDayOfYear(epochDay) + 2) / 153;
+		return (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+	}
+
+	/**
+	 * Computes the day of month of an epoch day.
+	 *
+	 * @param epochDay
+	 *            epoch day
+	 * @return day of month, 1 to 31
+	 */
+	public static int dayOfMonth(long epochDay) {
+		long dayOfYear = marchBasedDayOfYear(epochDay);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		return (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+	}
+
+	/**
+	 * Computes the ISO-8601 week of an epoch day. Weeks start on Monday, the
+	 * first week of a year is the one containing its first Thursday.
+	 *
+	 * @param epochDay
+	 *            epoch day
+	 * @return week of the week based year, 1 to 53
+	 */
+	public static int isoWeekOf(long epochDay) {
+		// the Thursday of the week decides the year the week belongs to
+		long thursday = epochDay - Math.floorMod(epochDay + 3, 7) + 3;
+		return (int) ((thursday - toEpochDay(yearOf(thursday), 1, 1)) / 7 + 1);
+	}
+
+	/**
+	 * Computes the day of year of an epoch day in a year starting on March 1st,
+	 * which puts the leap day at its end.
+	 */
+	private static long marchBasedDayOfYear(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+	}
+
+	/**
+	 * Returns the UTC offset of the system time zone at noon of the given day.
+	 * Daylight saving transitions take place at night, so the offset applies to
+	 * the whole business day.
+	 */
+	private static int offsetSeconds(long epochDay) {
+		YearTable table = yearTable(epochDay);
+		if (null == table) {
+			return ZONE_RULES.getOffset(LocalDate.ofEpochDay(epochDay).atTime(LocalTime.NOON)).getTotalSeconds();
+		}
+		return table.noonOffsets[(int) (epochDay - table.firstEpochDay)];
+	}
+
+	/**
+	 * Returns the epoch second at which the given local day starts in the system
+	 * time zone.
+	 */
+	private static long startOfDay(long epochDay) {
+		YearTable table = yearTable(epochDay);
+		if (null == table) {
+			return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE).toEpochSecond();
+		}
+		return table.dayStarts[(int) (epochDay - table.firstEpochDay)];
+	}
+
+	/**
+	 * Returns the table of the year of the given day, computing it on first use.
+	 *
+	 * @return table or null if the year is not cached
+	 */
+	private static YearTable yearTable(long epochDay) {
+		int year = yearOf(epochDay);
+		int idx = year - FIRST_CACHED_YEAR;
+		if (idx < 0 || idx >= CACHED_YEARS) {
+			return null;
+		}
+		YearTable table = YEAR_TABLES.get(idx);
+		if (null == table) {
+			table = new YearTable(year);
+			YEAR_TABLES.set(idx, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Offsets and day starts of all days of a year in the system time zone.
+	 */
+	private static final class YearTable {
+		private final long firstEpochDay;
+		private final int[] noonOffsets;
+		private final long[] dayStarts;
+
+		private YearTable(int year) {
+			LocalDate first = LocalDate.of(year, 1, 1);
+			firstEpochDay = first.toEpochDay();
+			noonOffsets = new int[first.lengthOfYear()];
+			dayStarts = new long[first.lengthOfYear()];
+			for (int i = 0; i < noonOffsets.length; i++) {
+				LocalDate date = first.plusDays(i);
+				noonOffsets[i] = ZONE_RULES.getOffset(date.atTime(LocalTime.NOON)).getTotalSeconds();
+				dayStarts[i] = date.atStartOfDay(ZONE).toEpochSecond();
+			}
+		}
+	}
+
+	/**
+	 * Parses the decimal digits in the given range.
+	 */
+	private static int digits(CharSequence text, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("Not a timestamp: " + text);
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+}
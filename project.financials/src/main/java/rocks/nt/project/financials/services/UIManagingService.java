@@ -7,7 +7,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -29,7 +28,7 @@ public class UIManagingService {
 	private static final int HEARTBEAT_THRESHOLD = 3;
 	private final Set<ProjectFinancialsUI> activeUIs = new HashSet<>();
 
-	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final ScheduledExecutorService executor = ExecutorRegistry.getInstance().scheduler("ui-heartbeat");
 
 	private final Map<UI, HeartbeatCount> lastHeartBeats = new HashMap<>();
 
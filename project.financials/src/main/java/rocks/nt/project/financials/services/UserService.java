@@ -73,7 +73,8 @@ public class UserService {
 	public String rememberUser(User user) {
 		String randomId = new BigInteger(130, random).toString(32);
 		rememberedUsers.put(randomId, user);
-		CompletableFuture.runAsync(this::updateRememberedUsersStorage);
+		CompletableFuture.runAsync(this::updateRememberedUsersStorage,
+				ExecutorRegistry.getInstance().get(ExecutorRegistry.PERSISTENCE));
 		updateRememberedUsersStorage();
 		return randomId;
 	}
@@ -84,7 +85,8 @@ public class UserService {
 
 	public void removeRememberedUser(String id) {
 		rememberedUsers.remove(id);
-		CompletableFuture.runAsync(this::updateRememberedUsersStorage);
+		CompletableFuture.runAsync(this::updateRememberedUsersStorage,
+				ExecutorRegistry.getInstance().get(ExecutorRegistry.PERSISTENCE));
 	}
 
 	public synchronized void updateRememberedUsersStorage() {
@@ -0,0 +1,435 @@
+package rocks.nt.project.financials.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only write-ahead spool for influx writes. Encoded records are appended
+ * to segment files before they are sent to influxDB and acknowledged once they
+ * have been written. Segments whose records have all been acknowledged are
+ * deleted. Records that had not been acknowledged before a restart are
+ * replayed in order.
+ *
+ * A record consists of its sequence number, the number of points, the length
+ * of the line protocol text and the UTF-8 encoded text itself. Records
+ * rejected by influxDB are appended to a separate dead-letter file.
+ */
+public class WriteAheadSpool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadSpool.class);
+
+	/**
+	 * File name prefix of segments. The prefix is followed by the sequence
+	 * number of the first record.
+	 */
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	/**
+	 * File name suffix of segments.
+	 */
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * File holding the last acknowledged sequence number.
+	 */
+	private static final String ACK_FILE = "ack";
+
+	/**
+	 * File collecting the records rejected by influxDB.
+	 */
+	private static final String DEAD_LETTER_FILE = "dead-letter.log";
+
+	/**
+	 * Sequence number, number of points and text length.
+	 */
+	private static final int RECORD_HEADER_BYTES = 16;
+
+	/**
+	 * Handler of replayed records.
+	 */
+	public interface RecordHandler {
+
+		/**
+		 * Handles a replayed record.
+		 *
+		 * @param sequence
+		 *            sequence number of the record
+		 * @param records
+		 *            newline separated line protocol records
+		 * @param numPoints
+		 *            number of points
+		 */
+		void handle(long sequence, String records, int numPoints);
+	}
+
+	/**
+	 * Spool directory.
+	 */
+	private final Path directory;
+
+	/**
+	 * Size after which a new segment is started.
+	 */
+	private final long segmentBytes;
+
+	/**
+	 * Segment files by the sequence number of their first record.
+	 */
+	private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+	/**
+	 * Last sequence number written before this spool has been opened. Records up
+	 * to this sequence number are replayed.
+	 */
+	private final long replayUntilSequence;
+
+	/**
+	 * Segment records are appended to.
+	 */
+	private FileChannel segment;
+
+	/**
+	 * Sequence number of the next appended record.
+	 */
+	private long nextSequence;
+
+	/**
+	 * Last acknowledged sequence number.
+	 */
+	private volatile long acknowledgedSequence;
+
+	/**
+	 * Constructor. Opens the spool in the given directory and starts a new
+	 * segment.
+	 *
+	 * @param directory
+	 *            spool directory
+	 * @param segmentBytes
+	 *            size after which a new segment is started
+	 * @throws IOException
+	 *             if the spool cannot be opened
+	 */
+	public WriteAheadSpool(Path directory, long segmentBytes) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		Files.createDirectories(directory);
+
+		acknowledgedSequence = readAcknowledgedSequence();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.put(Long.parseLong(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+			}
+		}
+
+		long lastSequence = acknowledgedSequence;
+		if (!segments.isEmpty()) {
+			Map.Entry<Long, Path> last = segments.lastEntry();
+			lastSequence = Math.max(lastSequence, repairSegment(last.getValue(), last.getKey() - 1));
+		}
+		replayUntilSequence = lastSequence;
+		nextSequence = lastSequence + 1;
+		compact();
+		openSegment();
+
+		if (replayUntilSequence > acknowledgedSequence) {
+			LOGGER.info("Write-ahead spool contains " + (replayUntilSequence - acknowledgedSequence)
+					+ " unacknowledged writes.");
+		}
+	}
+
+	/**
+	 * Appends the given records and forces them to disk.
+	 *
+	 * @param records
+	 *            newline separated line protocol records
+	 * @param numPoints
+	 *            number of points
+	 * @return sequence number of the appended record
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public synchronized long append(String records, int numPoints) throws IOException {
+		if (segment.size() >= segmentBytes) {
+			segment.close();
+			openSegment();
+		}
+		byte[] data = records.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + data.length);
+		buffer.putLong(nextSequence).putInt(numPoints).putInt(data.length).put(data);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			segment.write(buffer);
+		}
+		segment.force(false);
+		return nextSequence++;
+	}
+
+	/**
+	 * @return sequence number of the next appended record
+	 */
+	public synchronized long getNextSequence() {
+		return nextSequence;
+	}
+
+	/**
+	 * Passes the records starting at the given sequence number to the given
+	 * handler in the order they have been appended. Stops at the end of the
+	 * spool or as soon as the given number of points has been reached.
+	 *
+	 * @param fromSequence
+	 *            sequence number of the first record
+	 * @param maxPoints
+	 *            number of points after which reading stops
+	 * @param handler
+	 *            record handler
+	 * @return sequence number of the last passed record, the one preceding
+	 *         fromSequence if none has been passed
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public long read(long fromSequence, int maxPoints, RecordHandler handler) throws IOException {
+		List<Path> toRead;
+		synchronized (this) {
+			Long firstSegment = segments.floorKey(fromSequence);
+			toRead = new ArrayList<>(
+					(null == firstSegment ? segments : segments.tailMap(firstSegment, true)).values());
+		}
+		long lastSequence = fromSequence - 1;
+		int numPoints = 0;
+		for (Path file : toRead) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+				while (numPoints < maxPoints && readFully(channel, header)) {
+					header.flip();
+					long sequence = header.getLong();
+					int size = header.getInt();
+					int length = header.getInt();
+					header.clear();
+					if (length < 0) {
+						return lastSequence;
+					}
+					if (sequence < fromSequence) {
+						channel.position(channel.position() + length);
+						continue;
+					}
+					ByteBuffer data = ByteBuffer.allocate(length);
+					if (!readFully(channel, data)) {
+						// record is still being appended
+						return lastSequence;
+					}
+					handler.handle(sequence, new String(data.array(), StandardCharsets.UTF_8), size);
+					lastSequence = sequence;
+					numPoints += size;
+				}
+			}
+			if (numPoints >= maxPoints) {
+				break;
+			}
+		}
+		return lastSequence;
+	}
+
+	/**
+	 * Appends records rejected by influxDB to the dead-letter file, preceded by
+	 * a comment line with the time and the reason.
+	 *
+	 * @param records
+	 *            newline separated line protocol records
+	 * @param reason
+	 *            error influxDB has rejected the records with
+	 * @throws IOException
+	 *             if the records cannot be written
+	 */
+	public synchronized void deadLetter(String records, String reason) throws IOException {
+		String comment = "# " + Instant.now() + " " + String.valueOf(reason).replace('\n', ' ') + "\n";
+		try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			ByteBuffer buffer = ByteBuffer.wrap((comment + records).getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Marks all records up to the given sequence number as written and deletes
+	 * segments that are no longer needed.
+	 *
+	 * @param sequence
+	 *            sequence number of the last written record
+	 * @throws IOException
+	 *             if the acknowledgement cannot be persisted
+	 */
+	public void acknowledge(long sequence) throws IOException {
+		if (sequence <= acknowledgedSequence) {
+			return;
+		}
+		Path tmpFile = directory.resolve(ACK_FILE + ".tmp");
+		Files.write(tmpFile, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+		Files.move(tmpFile, directory.resolve(ACK_FILE), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		acknowledgedSequence = sequence;
+		compact();
+	}
+
+	/**
+	 * Passes all records that had not been acknowledged when the spool was
+	 * opened to the given handler in the order they have been appended.
+	 *
+	 * @param handler
+	 *            record handler
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public void replay(RecordHandler handler) throws IOException {
+		List<Path> toReplay;
+		synchronized (this) {
+			toReplay = new ArrayList<>(segments.headMap(replayUntilSequence, true).values());
+		}
+		for (Path file : toReplay) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+				while (readFully(channel, header)) {
+					header.flip();
+					long sequence = header.getLong();
+					int numPoints = header.getInt();
+					int length = header.getInt();
+					header.clear();
+					if (length < 0) {
+						break;
+					}
+					ByteBuffer data = ByteBuffer.allocate(length);
+					if (!readFully(channel, data) || sequence > replayUntilSequence) {
+						break;
+					}
+					if (sequence > acknowledgedSequence) {
+						handler.handle(sequence, new String(data.array(), StandardCharsets.UTF_8), numPoints);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the current segment.
+	 */
+	public synchronized void close() {
+		try {
+			segment.close();
+		} catch (IOException e) {
+			LOGGER.warn("Failed closing write-ahead spool segment.", e);
+		}
+	}
+
+	/**
+	 * Starts a new segment beginning with the next sequence number.
+	 */
+	private void openSegment() throws IOException {
+		Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+		segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		segments.put(nextSequence, file);
+	}
+
+	/**
+	 * Deletes all segments except the current one whose records have all been
+	 * acknowledged. A segment is fully acknowledged if the following segment
+	 * starts right after the acknowledged sequence number or earlier.
+	 */
+	private synchronized void compact() {
+		Long previous = null;
+		for (Long firstSequence : new ArrayList<>(segments.keySet())) {
+			if (null != previous && firstSequence - 1 <= acknowledgedSequence) {
+				Path file = segments.remove(previous);
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					LOGGER.warn("Failed deleting write-ahead spool segment " + file + ".", e);
+				}
+			}
+			previous = firstSequence;
+		}
+	}
+
+	/**
+	 * Reads the sequence numbers of the given segment and cuts off a record that
+	 * has only been written partially. The scan also stops at a torn header with
+	 * a negative length and at a sequence number that does not increase, e.g.
+	 * in a zero-filled tail left by a crash.
+	 *
+	 * @param file
+	 *            segment file
+	 * @param lastSequence
+	 *            sequence number preceding the segment
+	 * @return sequence number of the last complete record
+	 */
+	private long repairSegment(Path file, long lastSequence) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+			long validSize = 0;
+			while (readFully(channel, header)) {
+				header.flip();
+				long sequence = header.getLong();
+				header.getInt();
+				int length = header.getInt();
+				header.clear();
+				if (length < 0 || sequence <= lastSequence
+						|| validSize + RECORD_HEADER_BYTES + length > channel.size()) {
+					break;
+				}
+				channel.position(validSize + RECORD_HEADER_BYTES + length);
+				validSize = channel.position();
+				lastSequence = sequence;
+			}
+			if (validSize < channel.size()) {
+				LOGGER.warn("Truncating incomplete record in write-ahead spool segment " + file + ".");
+				channel.truncate(validSize);
+			}
+		}
+		return lastSequence;
+	}
+
+	/**
+	 * @return the persisted acknowledged sequence number or 0 if nothing has
+	 *         been acknowledged yet
+	 */
+	private long readAcknowledgedSequence() throws IOException {
+		Path file = directory.resolve(ACK_FILE);
+		if (!Files.exists(file)) {
+			return 0L;
+		}
+		return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+	}
+
+	/**
+	 * Fills the given buffer from the channel.
+	 *
+	 * @return false if the end of the channel has been reached before
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
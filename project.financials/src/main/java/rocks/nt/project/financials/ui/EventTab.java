@@ -5,11 +5,11 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.vaadin.data.HasValue.ValueChangeListener;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.server.ErrorMessage;
-import com.vaadin.server.Page;
 import com.vaadin.server.UserError;
 import com.vaadin.ui.Alignment;
 import com.vaadin.ui.Button;
@@ -18,8 +18,10 @@ import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.DateField;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.TabSheet;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ValoTheme;
 
@@ -27,8 +29,8 @@ import io.opentracing.ActiveSpan;
 import rocks.nt.project.financials.data.ProjectAssignment;
 import rocks.nt.project.financials.data.ProjectAssignment.EventBuilder;
 import rocks.nt.project.financials.services.InfluxService;
+import rocks.nt.project.financials.services.InfluxSchema;
 import rocks.nt.project.financials.services.JaegerUtil;
-import rocks.nt.project.financials.services.PropertiesService;
 
 /**
  * UI Tab element for event management.
@@ -271,19 +273,19 @@ public class EventTab {
 		final ActiveSpan s_thisSpan = JaegerUtil.getInstance().createNewActiveSpan("Assign Event");
 		try {
 			String event = eventComboBox.getValue();
-			String color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_DEFAULT_KEY);
+			String color = InfluxSchema.get().getDefaultColor();
 			if (event.equals(VACATION)) {
-				event = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_NA_KEY);
-				color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_NA_KEY);
+				event = InfluxSchema.get().getNotAvailableValue();
+				color = InfluxSchema.get().getNotAvailableColor();
 			} else if (event.equals(TRAINING)) {
-				event = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_TRAINING_KEY);
-				color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_TRAINING_KEY);
+				event = InfluxSchema.get().getTrainingValue();
+				color = InfluxSchema.get().getTrainingColor();
 			} else if (event.equals(CONFERENCE)) {
-				event = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_CONFERENCE_KEY);
-				color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_CONFERENCE_KEY);
+				event = InfluxSchema.get().getConferenceValue();
+				color = InfluxSchema.get().getConferenceColor();
 			} else if (event.equals(OTHER)) {
-				event = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_OTHER_KEY);
-				color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_OTHER_KEY);
+				event = InfluxSchema.get().getOtherValue();
+				color = InfluxSchema.get().getOtherColor();
 			}
 			Set<String> employees = getAffectedEmployees();
 			ProjectAssignment[] projectAssignments = new ProjectAssignment[employees.size()];
@@ -295,11 +297,17 @@ public class EventTab {
 				projectAssignments[i] = builder.build();
 				i++;
 			}
-			InfluxService.getInstance().assignProjects(projectAssignments);
+			CompletableFuture<Void> assignment = InfluxService.getInstance().assignProjects(projectAssignments);
+			final UI ui = UI.getCurrent();
+			assignment.exceptionally(throwable -> {
+				ui.access(() -> Notification.show("Failed entering the event for " + employees + "!",
+						Notification.Type.ERROR_MESSAGE));
+				return null;
+			});
 
 			if (!reloadPageCheckBox.getValue().isEmpty()) {
-				Page.getCurrent().getJavaScript().execute(
-						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;");
+				assignment.thenRun(() -> ui.access(() -> ui.getPage().getJavaScript().execute(
+						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;")));
 			}
 			s_thisSpan.setTag(JaegerUtil.T_EMPLOYEE, employees.toString());
 			s_thisSpan.setTag(JaegerUtil.T_EVENT, event);
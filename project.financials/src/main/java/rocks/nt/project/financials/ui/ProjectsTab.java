@@ -13,7 +13,6 @@ import java.util.concurrent.CompletableFuture;
 import com.vaadin.data.HasValue.ValueChangeListener;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.server.ErrorMessage;
-import com.vaadin.server.Page;
 import com.vaadin.server.UserError;
 import com.vaadin.ui.Alignment;
 import com.vaadin.ui.Button;
@@ -24,8 +23,10 @@ import com.vaadin.ui.DateField;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.GridLayout;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.TabSheet;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ValoTheme;
 
@@ -33,8 +34,8 @@ import io.opentracing.ActiveSpan;
 import rocks.nt.project.financials.data.ProjectAssignment;
 import rocks.nt.project.financials.data.ProjectAssignment.ProjectAssignmentBuilder;
 import rocks.nt.project.financials.services.InfluxService;
+import rocks.nt.project.financials.services.InfluxSchema;
 import rocks.nt.project.financials.services.JaegerUtil;
-import rocks.nt.project.financials.services.PropertiesService;
 
 /**
  * UI Tab element for project planning.
@@ -53,9 +54,9 @@ public class ProjectsTab {
 	 * Booking states.
 	 */
 	private static final String[] BOOKING_STATES = {
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_REQUEST_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_SOFT_KEY),
-			PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_HARD_KEY) };
+			InfluxSchema.get().getRequestValue(),
+			InfluxSchema.get().getSoftBookedValue(),
+			InfluxSchema.get().getHardBookedValue() };
 
 	/**
 	 * Assign button
@@ -204,20 +205,16 @@ public class ProjectsTab {
 
 			// Booking status
 			bookingStatusComboBox = new ComboBox<String>("Booking Status", Arrays.asList(BOOKING_STATES));
-			bookingStatusComboBox.setValue(
-					PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_REQUEST_KEY));
+			bookingStatusComboBox.setValue(InfluxSchema.get().getRequestValue());
 			bookingStatusComboBox.setEmptySelectionAllowed(false);
 			bookingStatusComboBox.setTextInputAllowed(false);
 			bookingStatusComboBox.setIcon(VaadinIcons.CLIPBOARD_CHECK);
 			bookingStatusComboBox.setItemIconGenerator(item -> {
-				if (item.equals(PropertiesService.getInstance()
-						.getProperty(PropertiesService.INFLUX_BOOKING_STATUS_REQUEST_KEY))) {
+				if (item.equals(InfluxSchema.get().getRequestValue())) {
 					return VaadinIcons.QUESTION_CIRCLE_O;
-				} else if (item.equals(PropertiesService.getInstance()
-						.getProperty(PropertiesService.INFLUX_BOOKING_STATUS_SOFT_KEY))) {
+				} else if (item.equals(InfluxSchema.get().getSoftBookedValue())) {
 					return VaadinIcons.QUESTION_CIRCLE;
-				} else if (item.equals(PropertiesService.getInstance()
-						.getProperty(PropertiesService.INFLUX_BOOKING_STATUS_HARD_KEY))) {
+				} else if (item.equals(InfluxSchema.get().getHardBookedValue())) {
 					return VaadinIcons.EXCLAMATION_CIRCLE;
 				}
 				return null;
@@ -375,22 +372,17 @@ public class ProjectsTab {
 			s_assignProject.setTag("From:", fromDateField.getValue().toString());
 			s_assignProject.setTag("To:", toDateField.getValue().toString());
 
-			InfluxService.getInstance().assignProjects(projectAssignment);
-			CompletableFuture.runAsync(new Runnable() {
-
-				@Override
-				public void run() {
-					ActiveSpan asyncSpan = JaegerUtil.getTracer().buildSpan("async-createWeekEndsAndPublicHolidays")
-							.asChildOf(s_assignProject).startActive();
-					InfluxService.getInstance().createWeekEndsAndPublicHolidays(employeeComboBox.getValue(),
-							fromDateField.getValue(), toDateField.getValue());
-					asyncSpan.deactivate();
-				}
+			CompletableFuture<Void> assignment = InfluxService.getInstance().assignProjects(projectAssignment);
+			final UI ui = UI.getCurrent();
+			assignment.exceptionally(throwable -> {
+				ui.access(() -> Notification.show("Failed assigning " + projectAssignment.getProject() + " to "
+						+ projectAssignment.getEmployee() + "!", Notification.Type.ERROR_MESSAGE));
+				return null;
 			});
 
 			if (reloadPageCheckBox.getValue()) {
-				Page.getCurrent().getJavaScript().execute(
-						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;");
+				assignment.thenRun(() -> ui.access(() -> ui.getPage().getJavaScript().execute(
+						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;")));
 			}
 		} catch (Throwable throwable) {
 			s_assignProject.log("Error: " + throwable.getMessage());
@@ -404,7 +396,7 @@ public class ProjectsTab {
 		double expenses = getExpenses();
 		String project = projectComboBox.getValue();
 		String bookingStatus = bookingStatusComboBox.getValue();
-		String color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_DEFAULT_KEY);
+		String color = InfluxSchema.get().getDefaultColor();
 		String notes = notesField.getValue().trim();
 		if (expenses > 0.0) {
 			if (!notes.isEmpty()) {
@@ -413,20 +405,17 @@ public class ProjectsTab {
 			notes += "Expected Daily Expenses: €" + String.valueOf(expenses);
 		}
 		if (project.equals(NO_PROJECT)) {
-			project = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY);
+			project = InfluxSchema.get().getProjectRemovedValue();
 			dailyRate = 0.0;
 			expenses = 0.0;
-			bookingStatus = PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_V_PROJECT_REMOVED_KEY);
+			bookingStatus = InfluxSchema.get().getProjectRemovedValue();
 			notes = "";
-		} else if (bookingStatus.equals(
-				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_REQUEST_KEY))) {
-			color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_STATUS_REQUEST_KEY);
-		} else if (bookingStatus.equals(
-				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_SOFT_KEY))) {
-			color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_STATUS_SOFT_KEY);
-		} else if (bookingStatus.equals(
-				PropertiesService.getInstance().getProperty(PropertiesService.INFLUX_BOOKING_STATUS_HARD_KEY))) {
-			color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_STATUS_HARD_KEY);
+		} else if (bookingStatus.equals(InfluxSchema.get().getRequestValue())) {
+			color = InfluxSchema.get().getRequestColor();
+		} else if (bookingStatus.equals(InfluxSchema.get().getSoftBookedValue())) {
+			color = InfluxSchema.get().getSoftBookedColor();
+		} else if (bookingStatus.equals(InfluxSchema.get().getHardBookedValue())) {
+			color = InfluxSchema.get().getHardBookedColor();
 		}
 
 		ProjectAssignmentBuilder builder = new ProjectAssignmentBuilder();
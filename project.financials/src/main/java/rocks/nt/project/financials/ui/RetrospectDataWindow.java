@@ -14,12 +14,13 @@ import com.vaadin.ui.Button;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.Window;
 import com.vaadin.ui.themes.ValoTheme;
 
 import rocks.nt.project.financials.data.MonthReportDataPoint;
-import rocks.nt.project.financials.data.MonthReportDataPoint.Type;
 import rocks.nt.project.financials.services.InfluxService;
 
 /**
@@ -189,18 +190,15 @@ public class RetrospectDataWindow extends Window {
 	 * Submits data.
 	 */
 	private void enterData() {
-		MonthReportDataPoint dataPoint = new MonthReportDataPoint();
-		dataPoint.setYearMonth(yearPicker.getValue() + "-" + monthPicker.getValue().getValue());
-		dataPoint.setExpenses(getMoneyValue(expensesField));
-		dataPoint.setCosts(getMoneyValue(overallCostsField));
-		dataPoint.setRevenue(getMoneyValue(revenueField));
-		double profit = dataPoint.getRevenue() - dataPoint.getCosts();
-		double returnOnSales = dataPoint.getRevenue() == 0.0 ? Double.MIN_VALUE : profit / dataPoint.getRevenue();
-		dataPoint.setProfit(profit);
-		dataPoint.setUtilization(getPercentageValue(utilizationField));
-		dataPoint.setRetrunOnSales(returnOnSales);
-		dataPoint.setType(Type.ACTUAL);
-		InfluxService.getInstance().enterMonthReportData(dataPoint);
+		MonthReportDataPoint dataPoint = MonthReportDataPoint.getActual(
+				yearPicker.getValue() + "-" + monthPicker.getValue().getValue(), getMoneyValue(expensesField),
+				getMoneyValue(overallCostsField), getMoneyValue(revenueField), getPercentageValue(utilizationField));
+		final UI ui = UI.getCurrent();
+		InfluxService.getInstance().enterMonthReportData(dataPoint).exceptionally(throwable -> {
+			ui.access(() -> Notification.show("Failed entering the report data of " + dataPoint.getYearMonth() + "!",
+					Notification.Type.ERROR_MESSAGE));
+			return null;
+		});
 		close();
 	}
 
@@ -4,11 +4,11 @@ import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.vaadin.data.HasValue.ValueChangeListener;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.server.ErrorMessage;
-import com.vaadin.server.Page;
 import com.vaadin.server.UserError;
 import com.vaadin.ui.Alignment;
 import com.vaadin.ui.Button;
@@ -17,15 +17,17 @@ import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.DateField;
 import com.vaadin.ui.FormLayout;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.TabSheet;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ValoTheme;
 
 import io.opentracing.ActiveSpan;
 import rocks.nt.project.financials.services.InfluxService;
+import rocks.nt.project.financials.services.InfluxSchema;
 import rocks.nt.project.financials.services.JaegerUtil;
-import rocks.nt.project.financials.services.PropertiesService;
 
 public class UnassignedProjectsTab {
 
@@ -220,18 +222,26 @@ public class UnassignedProjectsTab {
 
 		try {
 			String project = projectComboBox.getValue();
-			String color = PropertiesService.getInstance().getProperty(PropertiesService.GRAFANA_COLOR_UNASSIGNED_KEY);
-
-			InfluxService.getInstance().createUnassignedProject(project, fromDateField.getValue(),
-					toDateField.getValue(), notesField.getValue().trim(), color);
+			String color = InfluxSchema.get().getUnassignedColor();
+
+			CompletableFuture<Void> creation = InfluxService.getInstance().createUnassignedProject(project,
+					fromDateField.getValue(), toDateField.getValue(), notesField.getValue().trim(), color);
+			final UI ui = UI.getCurrent();
+			creation.exceptionally(throwable -> {
+				ui.access(() -> Notification.show("Failed creating the unassigned project " + project + "!",
+						Notification.Type.ERROR_MESSAGE));
+				return null;
+			});
 
 			if (!reloadPageCheckBox.getValue().isEmpty()) {
-				Page.getCurrent().getJavaScript().execute(
-						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;");
+				creation.thenRun(() -> ui.access(() -> ui.getPage().getJavaScript().execute(
+						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;")));
 			} else {
-				knownProjects.clear();
-				knownProjects.addAll(InfluxService.getInstance().getKnownUnassignedProjects());
-				setEnabledStateForDeleteButton();
+				creation.thenRun(() -> ui.access(() -> {
+					knownProjects.clear();
+					knownProjects.addAll(InfluxService.getInstance().getKnownUnassignedProjects());
+					setEnabledStateForDeleteButton();
+				}));
 			}
 		} catch (Throwable throwable) {
 			s_thisSpan.log("Error: " + throwable.getMessage());
@@ -261,12 +271,18 @@ public class UnassignedProjectsTab {
 		try {
 			String project = projectComboBox.getValue();
 
-			InfluxService.getInstance().deleteUnassignedProject(project, fromDateField.getValue(),
-					toDateField.getValue(), null);
+			CompletableFuture<Void> deletion = InfluxService.getInstance().deleteUnassignedProject(project,
+					fromDateField.getValue(), toDateField.getValue(), null);
+			final UI ui = UI.getCurrent();
+			deletion.exceptionally(throwable -> {
+				ui.access(() -> Notification.show("Failed deleting the unassigned project " + project + "!",
+						Notification.Type.ERROR_MESSAGE));
+				return null;
+			});
 
 			if (!reloadPageCheckBox.getValue().isEmpty()) {
-				Page.getCurrent().getJavaScript().execute(
-						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;");
+				deletion.thenRun(() -> ui.access(() -> ui.getPage().getJavaScript().execute(
+						"var grafanaFrame = document.getElementsByClassName(\"v-browserframe\")[0].children[0]; grafanaFrame.src = grafanaFrame.src;")));
 			}
 		} catch (Throwable throwable) {
 			s_thisSpan.log("Error: " + throwable.getMessage());
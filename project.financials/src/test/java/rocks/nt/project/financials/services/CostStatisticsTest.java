@@ -0,0 +1,84 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the means of the {@link CostStatistics}.
+ */
+public class CostStatisticsTest {
+
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Without a window all reported months are averaged, including the
+	 * estimated month and later ones.
+	 */
+	@Test
+	public void averagesAllMonthsWithoutWindow() {
+		CostStatistics statistics = statistics();
+		assertEquals(200.0, statistics.getMean("2018-1", 0), DELTA);
+		assertEquals(200.0, statistics.getMean("2018-2", -1), DELTA);
+		assertEquals(200.0, statistics.getMean("2019-1", 0), DELTA);
+	}
+
+	/**
+	 * A window only includes the latest months before the estimated month.
+	 */
+	@Test
+	public void averagesWindowBeforeMonth() {
+		CostStatistics statistics = statistics();
+		assertEquals(250.0, statistics.getMean("2018-4", 2), DELTA);
+		assertEquals(150.0, statistics.getMean("2018-3", 2), DELTA);
+		assertEquals(100.0, statistics.getMean("2018-2", 2), DELTA);
+	}
+
+	/**
+	 * Without months before the estimated month the mean is zero.
+	 */
+	@Test
+	public void isZeroWithoutEarlierMonths() {
+		CostStatistics statistics = statistics();
+		assertEquals(0.0, statistics.getMean("2018-1", 2), DELTA);
+		assertEquals(0.0, statistics.getMean("2017-6", 2), DELTA);
+		assertEquals(0.0, new CostStatistics().getMean("2018-1", 0), DELTA);
+		assertEquals(0.0, new CostStatistics().getMean("2018-1", 2), DELTA);
+	}
+
+	/**
+	 * A window as large as the reported months includes only the months before
+	 * the estimated month, all of them after the latest month.
+	 */
+	@Test
+	public void limitsLargeWindowsToEarlierMonths() {
+		CostStatistics statistics = statistics();
+		assertEquals(200.0, statistics.getMean("2018-4", 3), DELTA);
+		assertEquals(200.0, statistics.getMean("2018-4", 12), DELTA);
+		assertEquals(150.0, statistics.getMean("2018-3", 3), DELTA);
+		assertEquals(150.0, statistics.getMean("2018-3", 12), DELTA);
+	}
+
+	/**
+	 * Reporting a month again replaces its costs.
+	 */
+	@Test
+	public void replacesReportedMonths() {
+		CostStatistics statistics = statistics();
+		statistics.put("2018-3", 600.0);
+		assertEquals(3, statistics.getMonths());
+		assertEquals(300.0, statistics.getMean("2018-4", 0), DELTA);
+		assertEquals(400.0, statistics.getMean("2018-4", 2), DELTA);
+	}
+
+	/**
+	 * @return statistics of January to March 2018 with costs of 100, 200 and 300
+	 */
+	private static CostStatistics statistics() {
+		CostStatistics statistics = new CostStatistics();
+		statistics.put("2018-2", 200.0);
+		statistics.put("2018-1", 100.0);
+		statistics.put("2018-3", 300.0);
+		return statistics;
+	}
+}
@@ -0,0 +1,150 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.influxdb.dto.Point;
+import org.junit.Test;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Tests that the {@link DayGridBatch} updates the indexes when a batch is
+ * handed to the writer and undoes the updates of failed writes.
+ */
+public class DayGridBatchTest {
+
+	private static final int PROJECT_HOUR = 12;
+
+	private static final LocalDate DAY = LocalDate.of(2018, 1, 15);
+
+	private final DayGridIndex grid = new DayGridIndex(PROJECT_HOUR);
+
+	private final LaneIndex lanes = new LaneIndex();
+
+	/**
+	 * Reads see a point as soon as its batch is handed to the writer.
+	 */
+	@Test
+	public void readsPointsBeforeTheyAreWritten() {
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		writeProject("P1", write);
+		assertEquals(Collections.singleton("P1"), grid.getProjects("jdoe", DAY, DAY));
+		write.complete(null);
+		assertEquals(Collections.singleton("P1"), grid.getProjects("jdoe", DAY, DAY));
+	}
+
+	/**
+	 * A failed write restores the previous project of the day.
+	 */
+	@Test
+	public void undoesFailedWrites() {
+		writeProject("P1", CompletableFuture.completedFuture(null));
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		CompletableFuture<Void> written = writeProject("P2", write);
+		assertEquals(Collections.singleton("P2"), grid.getProjects("jdoe", DAY, DAY));
+		write.completeExceptionally(new IllegalStateException("rejected"));
+		assertTrue(written.isCompletedExceptionally());
+		assertEquals(Collections.singleton("P1"), grid.getProjects("jdoe", DAY, DAY));
+	}
+
+	/**
+	 * A failed write does not undo a later write to the same day.
+	 */
+	@Test
+	public void keepsLaterWritesOnFailure() {
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		writeProject("P1", write);
+		writeProject("P2", new CompletableFuture<>());
+		write.completeExceptionally(new IllegalStateException("rejected"));
+		assertEquals(Collections.singleton("P2"), grid.getProjects("jdoe", DAY, DAY));
+	}
+
+	/**
+	 * A failed write frees the lane days it occupied, but not the days claimed
+	 * before.
+	 */
+	@Test
+	public void releasesOnlyLaneDaysItOccupied() {
+		long claimed = DAY.toEpochDay();
+		lanes.occupy(1, claimed, claimed);
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		DayGridBatch batch = new DayGridBatch(new PendingBatch(write), grid, lanes, Collections.emptySet(),
+				Runnable::run);
+		batch.addUnassignedProjectPoint(1, "2018-1", "P1", "#EAD1DC", "", nanoTime(DAY));
+		batch.addUnassignedProjectPoint(1, "2018-1", "P1", "#EAD1DC", "", nanoTime(DAY.plusDays(1)));
+		batch.writeTo(null);
+		assertFalse(lanes.isFree(1, claimed + 1, claimed + 1));
+		write.completeExceptionally(new IllegalStateException("rejected"));
+		assertFalse(lanes.isFree(1, claimed, claimed));
+		assertTrue(lanes.isFree(1, claimed + 1, claimed + 1));
+	}
+
+	private CompletableFuture<Void> writeProject(String project, CompletableFuture<Void> write) {
+		DayGridBatch batch = new DayGridBatch(new PendingBatch(write), grid, lanes, Collections.emptySet(),
+				Runnable::run);
+		batch.addProjectPoint(new ProjectAssignment.ProjectAssignmentBuilder().employee("jdoe").project(project)
+				.build(), "2018-1", nanoTime(DAY), null);
+		return batch.writeTo(null);
+	}
+
+	private static long nanoTime(LocalDate day) {
+		return TimeCodec.toEpochNanos(day.toEpochDay(), PROJECT_HOUR);
+	}
+
+	/**
+	 * Batch whose write completes with the given future.
+	 */
+	static final class PendingBatch implements InfluxBatch {
+
+		private final CompletableFuture<Void> write;
+
+		private int size;
+
+		PendingBatch(CompletableFuture<Void> write) {
+			this.write = write;
+		}
+
+		@Override
+		public void addProjectPoint(ProjectAssignment projectAssignment, String yearMonth, long nanoTime,
+				Boolean workingDay) {
+			size++;
+		}
+
+		@Override
+		public void addUnassignedProjectPoint(int index, String yearMonth, String project, String color,
+				String notes, long nanoTime) {
+			size++;
+		}
+
+		@Override
+		public void addAssignmentRangePoint(ProjectAssignment projectAssignment, long nanoTime) {
+			size++;
+		}
+
+		@Override
+		public void addCalendarPoint(String type, String value, long nanoTime) {
+			size++;
+		}
+
+		@Override
+		public void addPoint(Point point) {
+			size++;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public CompletableFuture<Void> writeTo(InfluxWriter writer) {
+			return write;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import rocks.nt.project.financials.data.Holiday;
+
+/**
+ * Tests loading holiday years concurrently and fetching the remote holidays.
+ */
+public class HolidayServiceTest {
+
+	private static final int THREADS = 16;
+	private static final int FIRST_YEAR = 2000;
+	private static final int YEARS = 20;
+
+	/**
+	 * Many threads request overlapping years. Every year must be calculated
+	 * once, and prefetching must only add the years adjacent to the requested
+	 * ones.
+	 */
+	@Test
+	public void loadsEveryYearOnceUnderConcurrentAccess() throws Exception {
+		CountingCalculator calculator = new CountingCalculator();
+		ExecutorService backgroundExecutor = Executors.newFixedThreadPool(2);
+		HolidayService holidayService = new HolidayService(calculator, backgroundExecutor);
+
+		ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+		CyclicBarrier start = new CyclicBarrier(THREADS);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			results.add(callers.submit(() -> {
+				start.await();
+				for (int i = 0; i < YEARS; i++) {
+					int year = FIRST_YEAR + (offset + i) % YEARS;
+					assertEquals(year, holidayService.getHolidayYear(year).getYear());
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get(30, TimeUnit.SECONDS);
+		}
+		callers.shutdown();
+		backgroundExecutor.shutdown();
+		assertTrue(backgroundExecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		for (Map.Entry<Integer, AtomicInteger> calculations : calculator.calculations.entrySet()) {
+			assertEquals("calculations of " + calculations.getKey(), 1, calculations.getValue().get());
+		}
+		// requested years and the two adjacent ones prefetched at most
+		assertTrue(holidayService.getLoadedYears() >= YEARS);
+		assertTrue(holidayService.getLoadedYears() <= YEARS + 2);
+		assertEquals(holidayService.getLoadedYears(), calculator.calculations.size());
+	}
+
+	/**
+	 * Many threads request overlapping years. The remote holidays of every year
+	 * must be fetched once.
+	 */
+	@Test
+	public void fetchesEveryYearOnceUnderConcurrentAccess() throws Exception {
+		CountingSource remoteSource = new CountingSource(0);
+		ExecutorService backgroundExecutor = Executors.newFixedThreadPool(2);
+		HolidayService holidayService = new HolidayService(new CountingCalculator(), backgroundExecutor,
+				remoteSource);
+
+		ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+		CyclicBarrier start = new CyclicBarrier(THREADS);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			results.add(callers.submit(() -> {
+				start.await();
+				for (int i = 0; i < YEARS; i++) {
+					holidayService.isHoliday(LocalDate.of(FIRST_YEAR + (offset + i) % YEARS, 1, 1));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get(30, TimeUnit.SECONDS);
+		}
+		callers.shutdown();
+		// the requested years and the two adjacent ones schedule their fetches
+		long deadline = System.currentTimeMillis() + 30000L;
+		while (remoteSource.fetches.size() < YEARS + 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		backgroundExecutor.shutdown();
+		assertTrue(backgroundExecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		for (Map.Entry<Integer, AtomicInteger> fetches : remoteSource.fetches.entrySet()) {
+			assertEquals("fetches of " + fetches.getKey(), 1, fetches.getValue().get());
+		}
+		assertEquals(holidayService.getLoadedYears(), remoteSource.fetches.size());
+		assertTrue(holidayService.isHoliday(LocalDate.of(FIRST_YEAR, 12, 31)));
+	}
+
+	/**
+	 * A failed fetch keeps the calculated holidays and is repeated on the next
+	 * request of the year. A successful fetch is not repeated.
+	 */
+	@Test
+	public void fetchesAgainAfterFailure() throws Exception {
+		CountingSource remoteSource = new CountingSource(1);
+		ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+		HolidayService holidayService = new HolidayService(new CountingCalculator(), backgroundExecutor,
+				remoteSource);
+		LocalDate newYearsEve = LocalDate.of(FIRST_YEAR, 12, 31);
+
+		// the fetch is queued before the adjacent years are prefetched
+		assertFalse(holidayService.isHoliday(newYearsEve));
+		awaitBackgroundTasks(backgroundExecutor);
+		assertEquals(1, remoteSource.fetches.get(FIRST_YEAR).get());
+		assertFalse(holidayService.isHoliday(newYearsEve));
+		awaitBackgroundTasks(backgroundExecutor);
+		assertTrue(holidayService.isHoliday(newYearsEve));
+		awaitBackgroundTasks(backgroundExecutor);
+		assertEquals(2, remoteSource.fetches.get(FIRST_YEAR).get());
+
+		backgroundExecutor.shutdown();
+		assertTrue(backgroundExecutor.awaitTermination(30, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Waits until the tasks queued so far on a single threaded executor have run.
+	 */
+	private static void awaitBackgroundTasks(ExecutorService backgroundExecutor) throws Exception {
+		backgroundExecutor.submit(() -> {
+		}).get(30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Remote source counting the fetches per year. It returns the calculated
+	 * holidays and New Year's Eve, after failing the given number of fetches
+	 * per year.
+	 */
+	private static class CountingSource implements HolidayService.RemoteSource {
+		private final Map<Integer, AtomicInteger> fetches = new ConcurrentHashMap<>();
+		private final HolidayCalculator calculator = new HolidayCalculator(HolidayCalculator.BADEN_WUERTTEMBERG);
+		private final int failures;
+
+		CountingSource(int failures) {
+			this.failures = failures;
+		}
+
+		@Override
+		public Map<LocalDate, Holiday> fetch(int year) throws IOException {
+			if (fetches.computeIfAbsent(year, y -> new AtomicInteger()).incrementAndGet() <= failures) {
+				throw new IOException("unavailable");
+			}
+			Map<LocalDate, Holiday> holidays = new HashMap<>(calculator.calculate(year));
+			LocalDate newYearsEve = LocalDate.of(year, 12, 31);
+			holidays.put(newYearsEve, new Holiday("Silvester", newYearsEve));
+			return holidays;
+		}
+	}
+
+	/**
+	 * Calculator counting the calculations per year.
+	 */
+	private static class CountingCalculator extends HolidayCalculator {
+		private final Map<Integer, AtomicInteger> calculations = new ConcurrentHashMap<>();
+
+		CountingCalculator() {
+			super(HolidayCalculator.BADEN_WUERTTEMBERG);
+		}
+
+		@Override
+		public Map<LocalDate, Holiday> calculate(int year) {
+			calculations.computeIfAbsent(year, y -> new AtomicInteger()).incrementAndGet();
+			return super.calculate(year);
+		}
+	}
+}
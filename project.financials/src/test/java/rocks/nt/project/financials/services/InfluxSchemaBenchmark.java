@@ -0,0 +1,145 @@
+package rocks.nt.project.financials.services;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Compares the cost of resolving the schema names of a project point through
+ * the two level {@link PropertiesService} lookup with the typed accessors of
+ * an {@link InfluxSchema} snapshot, and the cost of generating a whole point
+ * both ways. Run the main method with the test classpath from the project
+ * directory, e.g. from the IDE.
+ */
+public class InfluxSchemaBenchmark {
+
+	private static final int POINTS = 100000;
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int MEASURED_ROUNDS = 10;
+
+	/**
+	 * Keys resolved per project point before the schema snapshot.
+	 */
+	private static final String[] PROJECT_POINT_KEYS = { PropertiesService.INFLUX_M_PROJECTS_KEY,
+			PropertiesService.INFLUX_T_EMPLOYEE_KEY, PropertiesService.INFLUX_T_YEAR_MONTH_KEY,
+			PropertiesService.INFLUX_F_PROJECT_KEY, PropertiesService.INFLUX_F_STATUS_KEY,
+			PropertiesService.INFLUX_F_COLOR_KEY, PropertiesService.INFLUX_F_RATE_KEY,
+			PropertiesService.INFLUX_F_DAILY_EXPENSES_KEY, PropertiesService.INFLUX_F_NOTES_KEY,
+			PropertiesService.INFLUX_F_WORKINGDAY_KEY };
+
+	/**
+	 * Runs the comparison.
+	 *
+	 * @param args
+	 *            not used
+	 */
+	public static void main(String[] args) throws IOException {
+		Properties defaultProperties = new Properties();
+		try (Reader reader = new FileReader(LineProtocolEncoderTest.PROPERTIES)) {
+			defaultProperties.load(reader);
+		}
+		Properties userProperties = new Properties();
+		// read per point like InfluxSchema.get()
+		AtomicReference<InfluxSchema> snapshot = new AtomicReference<>(
+				new InfluxSchema(defaultProperties::getProperty));
+
+		measure("names, PropertiesService", () -> {
+			long sum = 0;
+			for (int i = 0; i < POINTS; i++) {
+				for (String key : PROJECT_POINT_KEYS) {
+					sum += getProperty(userProperties, defaultProperties, key).length();
+				}
+			}
+			return sum;
+		});
+		measure("names, InfluxSchema", () -> {
+			long sum = 0;
+			for (int i = 0; i < POINTS; i++) {
+				InfluxSchema current = snapshot.get();
+				sum += current.getProjectsMeasurement().length() + current.getEmployeeTag().length()
+						+ current.getYearMonthTag().length() + current.getProjectField().length()
+						+ current.getStatusField().length() + current.getColorField().length()
+						+ current.getRateField().length() + current.getDailyExpensesField().length()
+						+ current.getNotesField().length() + current.getWorkingDayField().length();
+			}
+			return sum;
+		});
+
+		StringBuilder out = new StringBuilder(256);
+		measure("points, PropertiesService", () -> {
+			long sum = 0;
+			for (int i = 0; i < POINTS; i++) {
+				out.setLength(0);
+				out.append(getProperty(userProperties, defaultProperties, PropertiesService.INFLUX_M_PROJECTS_KEY))
+						.append(',')
+						.append(getProperty(userProperties, defaultProperties,
+								PropertiesService.INFLUX_T_YEAR_MONTH_KEY))
+						.append("=2018-01,")
+						.append(getProperty(userProperties, defaultProperties, PropertiesService.INFLUX_T_EMPLOYEE_KEY))
+						.append("=jdoe ")
+						.append(getProperty(userProperties, defaultProperties, PropertiesService.INFLUX_F_PROJECT_KEY))
+						.append("=\"P1\",")
+						.append(getProperty(userProperties, defaultProperties, PropertiesService.INFLUX_F_RATE_KEY))
+						.append('=').append(1000.0).append(',')
+						.append(getProperty(userProperties, defaultProperties,
+								PropertiesService.INFLUX_F_WORKINGDAY_KEY))
+						.append("=true ").append(i).append('\n');
+				sum += out.length();
+			}
+			return sum;
+		});
+		LineProtocolEncoder encoder = new LineProtocolEncoder(snapshot.get());
+		ProjectAssignment projectAssignment = new ProjectAssignment.ProjectAssignmentBuilder().employee("jdoe")
+				.project("P1").rate(1000).build();
+		measure("points, InfluxSchema", () -> {
+			long sum = 0;
+			for (int i = 0; i < POINTS; i++) {
+				out.setLength(0);
+				encoder.encodeProjectPoint(out, projectAssignment, "2018-01", i, Boolean.TRUE);
+				sum += out.length();
+			}
+			return sum;
+		});
+	}
+
+	/**
+	 * Looks a key up the way {@link PropertiesService#getProperty(String)} does.
+	 */
+	private static String getProperty(Properties userProperties, Properties defaultProperties, String key) {
+		String result = userProperties.getProperty(key);
+		if (null == result) {
+			return defaultProperties.getProperty(key);
+		} else {
+			return result;
+		}
+	}
+
+	/**
+	 * Runs all points repeatedly and prints the throughput.
+	 */
+	private static void measure(String name, Round round) {
+		long checksum = 0;
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			checksum += round.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			checksum += round.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-30s %12.0f points/s (checksum %d)", name,
+				POINTS * MEASURED_ROUNDS / (elapsed / 1e9), checksum));
+	}
+
+	/**
+	 * One round over all points returning a checksum that keeps the JIT from
+	 * eliminating the work.
+	 */
+	private interface Round {
+		long run();
+	}
+}
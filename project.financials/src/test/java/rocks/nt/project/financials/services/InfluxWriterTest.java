@@ -0,0 +1,41 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the classification of failed writes by the {@link InfluxWriter}.
+ */
+public class InfluxWriterTest {
+
+	/**
+	 * Writes rejected for their points are not retried.
+	 */
+	@Test
+	public void doesNotRetryRejectedPoints() {
+		assertFalse(InfluxWriter.isRetryable(new RuntimeException(
+				"{\"error\":\"unable to parse 'project,employee= x=1': missing tag value\"}")));
+		assertFalse(InfluxWriter.isRetryable(new RuntimeException(
+				"{\"error\":\"field type conflict: input field \\\"rate\\\" on measurement \\\"project\\\"\"}")));
+		assertFalse(InfluxWriter.isRetryable(
+				new RuntimeException("{\"error\":\"partial write: points beyond retention policy dropped=1\"}")));
+	}
+
+	/**
+	 * Server, transport and configuration errors are retried, even if their
+	 * message contains a generic word like invalid.
+	 */
+	@Test
+	public void retriesServerAndTransportErrors() {
+		assertTrue(InfluxWriter.isRetryable(new UncheckedIOException(new IOException("unable to parse"))));
+		assertTrue(InfluxWriter.isRetryable(new RuntimeException("{\"error\":\"timeout\"}")));
+		assertTrue(InfluxWriter.isRetryable(new RuntimeException("<html>502 Bad Gateway: invalid response</html>")));
+		assertTrue(InfluxWriter.isRetryable(new RuntimeException("{\"error\":\"database not found: \\\"test\\\"\"}")));
+		assertTrue(InfluxWriter.isRetryable(new RuntimeException(null, null)));
+	}
+}
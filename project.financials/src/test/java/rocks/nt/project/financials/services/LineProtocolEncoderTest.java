@@ -0,0 +1,78 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Tests the line protocol produced by the {@link LineProtocolEncoder}.
+ */
+public class LineProtocolEncoderTest {
+
+	/**
+	 * Default properties of the web application.
+	 */
+	static final String PROPERTIES = "src/main/webapp/WEB-INF/properties.conf";
+
+	private static final long NANO_TIME = 1514764800000000000L;
+
+	/**
+	 * Rate and expenses are floats, even if their values are integral. Days and
+	 * the days of week mask are integers.
+	 */
+	@Test
+	public void writesFloatAndIntegerFieldsExplicitly() throws Exception {
+		LineProtocolEncoder encoder = new LineProtocolEncoder(loadSchema());
+		StringBuilder out = new StringBuilder();
+		encoder.encodeProjectPoint(out, new ProjectAssignment.ProjectAssignmentBuilder().employee("John Doe")
+				.project("P1").rate(1000).expenses(12.5).build(), "2018-01", NANO_TIME, Boolean.TRUE);
+		assertEquals("project,YM=2018-01,employee=John\\ Doe project=\"P1\",rate=1000.0,expenses=12.5,"
+				+ "workingDay=true " + NANO_TIME + "\n", out.toString());
+	}
+
+	/**
+	 * An empty tag value would get the whole batch rejected, so it is refused
+	 * before anything is encoded.
+	 */
+	@Test
+	public void rejectsEmptyTagValues() throws Exception {
+		LineProtocolEncoder encoder = new LineProtocolEncoder(loadSchema());
+		StringBuilder out = new StringBuilder();
+		try {
+			encoder.encodeProjectPoint(out,
+					new ProjectAssignment.ProjectAssignmentBuilder().employee("").project("P1").build(), "2018-01",
+					NANO_TIME, null);
+			fail("empty employee accepted");
+		} catch (IllegalArgumentException expected) {
+			// expected
+		}
+		try {
+			encoder.encodeUnassignedProjectPoint(out, 0, null, "P1", "#EAD1DC", "", NANO_TIME);
+			fail("missing year-month accepted");
+		} catch (IllegalArgumentException expected) {
+			// expected
+		}
+		assertEquals(0, out.length());
+	}
+
+	/**
+	 * Loads the schema from the default properties.
+	 *
+	 * @return schema of the default properties
+	 */
+	static InfluxSchema loadSchema() throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = new FileReader(PROPERTIES)) {
+			properties.load(reader);
+		}
+		return new InfluxSchema(properties::getProperty);
+	}
+}
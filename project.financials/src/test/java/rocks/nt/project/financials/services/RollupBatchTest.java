@@ -0,0 +1,55 @@
+package rocks.nt.project.financials.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import rocks.nt.project.financials.data.ProjectAssignment;
+
+/**
+ * Tests that the {@link RollupBatch} updates the rollups when a batch is
+ * handed to the writer and undoes the updates of failed writes.
+ */
+public class RollupBatchTest {
+
+	private static final long NANO_TIME = 1516017600000000000L;
+
+	private final MonthlyRollups rollups = new MonthlyRollups();
+
+	/**
+	 * A failed write restores the previous fields of the point.
+	 */
+	@Test
+	public void undoesFailedWrites() {
+		writeRate(1000.0, CompletableFuture.completedFuture(null));
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		writeRate(1200.0, write);
+		assertEquals(1200.0, rollups.getMonth("2018-1").getRevenue(), 0.0);
+		write.completeExceptionally(new IllegalStateException("rejected"));
+		assertEquals(1000.0, rollups.getMonth("2018-1").getRevenue(), 0.0);
+		assertEquals(1L, rollups.getMonth("2018-1").getRateDays());
+	}
+
+	/**
+	 * If the point has been written again, the fields in influx are not known
+	 * and the month has to be queried.
+	 */
+	@Test
+	public void forgetsMonthsOfOverwrittenPoints() {
+		CompletableFuture<Void> write = new CompletableFuture<>();
+		writeRate(1000.0, write);
+		writeRate(1200.0, new CompletableFuture<>());
+		write.completeExceptionally(new IllegalStateException("rejected"));
+		assertNull(rollups.getMonth("2018-1"));
+	}
+
+	private void writeRate(double rate, CompletableFuture<Void> write) {
+		RollupBatch batch = new RollupBatch(new DayGridBatchTest.PendingBatch(write), rollups, Runnable::run);
+		batch.addProjectPoint(new ProjectAssignment.ProjectAssignmentBuilder().employee("jdoe").project("P1")
+				.rate(rate).build(), "2018-1", NANO_TIME, null);
+		batch.writeTo(null);
+	}
+}
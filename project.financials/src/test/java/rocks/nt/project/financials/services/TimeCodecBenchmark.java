@@ -0,0 +1,189 @@
+package rocks.nt.project.financials.services;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the row decoding throughput of {@link TimeCodec} with the
+ * {@link DateTimeFormatter} and {@link Calendar} conversions it replaces and
+ * checks that both produce the same results. Run the main method with the
+ * test classpath, e.g. from the IDE.
+ */
+public class TimeCodecBenchmark {
+
+	private static final int ROWS = 100000;
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int MEASURED_ROUNDS = 10;
+	private static final int PROJECT_HOUR = 12;
+	private static final String[] MONTH_NAMES = new String[12];
+
+	static {
+		for (Month month : Month.values()) {
+			MONTH_NAMES[month.ordinal()] = month.getDisplayName(TextStyle.FULL, Locale.GERMANY);
+		}
+	}
+
+	/**
+	 * Runs the comparison.
+	 *
+	 * @param args
+	 *            not used
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		String[] timestamps = new String[ROWS];
+		long[] epochDays = new long[ROWS];
+		long[] epochMillis = new long[ROWS];
+		for (int i = 0; i < ROWS; i++) {
+			epochDays[i] = LocalDate.of(2010, 1, 1).toEpochDay() + random.nextInt(20 * 365);
+			timestamps[i] = LocalDate.ofEpochDay(epochDays[i]) + "T" + (random.nextBoolean() ? "10" : "12")
+					+ ":00:00Z";
+			epochMillis[i] = TimeCodec.toEpochNanos(epochDays[i], random.nextInt(24)) / 1000000L;
+		}
+
+		verify(timestamps, epochDays, epochMillis);
+
+		measure("ISO rows, DateTimeFormatter", () -> {
+			long sum = 0;
+			for (String timestamp : timestamps) {
+				sum += LocalDate.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME).toEpochDay();
+			}
+			return sum;
+		});
+		measure("ISO rows, TimeCodec", () -> {
+			long sum = 0;
+			for (String timestamp : timestamps) {
+				sum += TimeCodec.utcEpochDayFromIso(timestamp);
+			}
+			return sum;
+		});
+		measure("epoch rows, Calendar", () -> {
+			long sum = 0;
+			for (long millis : epochMillis) {
+				Calendar date = Calendar.getInstance();
+				date.setTimeInMillis(millis);
+				sum += date.getTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+			}
+			return sum;
+		});
+		measure("epoch rows, TimeCodec", () -> {
+			long sum = 0;
+			for (long millis : epochMillis) {
+				sum += TimeCodec.localEpochDayFromMillis(millis);
+			}
+			return sum;
+		});
+		measure("nano times, Calendar", () -> {
+			long sum = 0;
+			for (long epochDay : epochDays) {
+				LocalDate current = LocalDate.ofEpochDay(epochDay);
+				Calendar date = Calendar.getInstance();
+				date.set(current.getYear(), current.getMonthValue() - 1, current.getDayOfMonth(), PROJECT_HOUR, 0, 0);
+				sum += (date.getTimeInMillis() / 1000L) * 1000000000L;
+			}
+			return sum;
+		});
+		measure("nano times, TimeCodec", () -> {
+			long sum = 0;
+			for (long epochDay : epochDays) {
+				sum += TimeCodec.toEpochNanos(epochDay, PROJECT_HOUR);
+			}
+			return sum;
+		});
+		measure("calendar fields, Calendar", () -> {
+			long sum = 0;
+			for (long epochDay : epochDays) {
+				LocalDate current = LocalDate.ofEpochDay(epochDay);
+				Calendar date = germanCalendar(current);
+				sum += date.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.GERMANY).length()
+						+ date.get(Calendar.DAY_OF_MONTH) + date.get(Calendar.WEEK_OF_YEAR);
+			}
+			return sum;
+		});
+		measure("calendar fields, TimeCodec", () -> {
+			long sum = 0;
+			for (long epochDay : epochDays) {
+				sum += MONTH_NAMES[TimeCodec.monthOf(epochDay) - 1].length() + TimeCodec.dayOfMonth(epochDay)
+						+ TimeCodec.isoWeekOf(epochDay);
+			}
+			return sum;
+		});
+	}
+
+	/**
+	 * Calendar as used for the calendar entries before the codec.
+	 */
+	private static Calendar germanCalendar(LocalDate current) {
+		Calendar date = Calendar.getInstance(Locale.GERMANY);
+		date.setFirstDayOfWeek(Calendar.MONDAY);
+		date.set(current.getYear(), current.getMonthValue() - 1, current.getDayOfMonth(), 10, 0, 0);
+		return date;
+	}
+
+	/**
+	 * Checks that the codec yields the same dates and timestamps as the replaced
+	 * conversions.
+	 */
+	private static void verify(String[] timestamps, long[] epochDays, long[] epochMillis) {
+		for (int i = 0; i < ROWS; i++) {
+			long expectedDay = LocalDate.parse(timestamps[i], DateTimeFormatter.ISO_DATE_TIME).toEpochDay();
+			check(expectedDay == TimeCodec.utcEpochDayFromIso(timestamps[i]), timestamps[i]);
+
+			Calendar date = Calendar.getInstance();
+			date.setTimeInMillis(epochMillis[i]);
+			long expectedLocalDay = date.getTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+					.toEpochDay();
+			check(expectedLocalDay == TimeCodec.localEpochDayFromMillis(epochMillis[i]),
+					String.valueOf(epochMillis[i]));
+
+			LocalDate current = LocalDate.ofEpochDay(epochDays[i]);
+			date = Calendar.getInstance();
+			date.set(current.getYear(), current.getMonthValue() - 1, current.getDayOfMonth(), PROJECT_HOUR, 0, 0);
+			check((date.getTimeInMillis() / 1000L) * 1000000000L == TimeCodec.toEpochNanos(epochDays[i],
+					PROJECT_HOUR), current.toString());
+
+			date = germanCalendar(current);
+			check(date.getDisplayName(Calendar.MONTH, Calendar.LONG, Locale.GERMANY)
+					.equals(MONTH_NAMES[TimeCodec.monthOf(epochDays[i]) - 1]), current.toString());
+			check(date.get(Calendar.DAY_OF_MONTH) == TimeCodec.dayOfMonth(epochDays[i]), current.toString());
+			check(date.get(Calendar.WEEK_OF_YEAR) == TimeCodec.isoWeekOf(epochDays[i]), current.toString());
+		}
+	}
+
+	private static void check(boolean condition, String input) {
+		if (!condition) {
+			throw new IllegalStateException("TimeCodec differs for " + input);
+		}
+	}
+
+	/**
+	 * Decodes all rows repeatedly and prints the throughput.
+	 */
+	private static void measure(String name, Round round) {
+		long checksum = 0;
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			checksum += round.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_ROUNDS; i++) {
+			checksum += round.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-30s %12.0f rows/s (checksum %d)", name,
+				ROWS * MEASURED_ROUNDS / (elapsed / 1e9), checksum));
+	}
+
+	/**
+	 * One round over all rows returning a checksum that keeps the JIT from
+	 * eliminating the work.
+	 */
+	private interface Round {
+		long run();
+	}
+}